@@ -18,6 +18,8 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 import com.sensorberg.motionlessaverage.MotionlessAverage;
+import com.sensorberg.motionlessaverage.MotionlessAverageEmitter;
+import com.sensorberg.motionlessaverage.MotionlessVectorAverage;
 
 public class MainActivity extends AppCompatActivity implements SensorEventListener {
 
@@ -33,6 +35,12 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
   private LineChart chart;
   private LineData data;
   private MotionlessAverage averageTimed = MotionlessAverage.Builder.createTimeDependentAverage(10, 100, 5, 50);
+  // redraws when the time based average moves, at most once per frame and at least four times a second
+  private MotionlessAverageEmitter redraw = new MotionlessAverageEmitter.Builder(averageTimed)
+          .delta(0.1f)
+          .minIntervalMs(16)
+          .maxIntervalMs(250)
+          .build();
   private MotionlessAverage averageConstantFilter = MotionlessAverage.Builder.createConstantFilterAverage(50);
   private MovingAverage movingAverage = new MovingAverage(150);
 
@@ -68,7 +76,8 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
 
     float now = ((float) (SystemClock.elapsedRealtime() - createdAt)) / 1000f;
     float movingAverage = this.movingAverage.average(value);
-    float averageTimed = this.averageTimed.average(value);
+    boolean changed = redraw.average(value);
+    float averageTimed = redraw.value();
     float averageConstantFilter = this.averageConstantFilter.average(value);
 
     Log.d("motionlessaverage", "Value: " + value + "; Moving average: " + movingAverage + "; Timed dependent filter: " + averageTimed);
@@ -76,7 +85,9 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     add(1, "Moving avg", now, movingAverage);
     add(2, "Time based filter avg", now, averageTimed);
     add(3, "Constant filter avg", now, averageConstantFilter);
-    notifyDataSetChanged();
+    if (changed) {
+      notifyDataSetChanged();
+    }
   }
 
   private void add(int offset, String name, float time, float value) {
@@ -118,11 +129,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
 
   @Override
   public void onSensorChanged(SensorEvent event) {
-    float[] values = event.values;
-    value = (float) Math.sqrt(
-            Math.pow(values[0], 2) +
-                    Math.pow(values[1], 2) +
-                    Math.pow(values[2], 2));
+    value = MotionlessVectorAverage.Helper.magnitude(event.values);
     update();
   }
 
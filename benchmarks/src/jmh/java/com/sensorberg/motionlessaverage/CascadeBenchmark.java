@@ -0,0 +1,84 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CascadeBenchmark {
+
+  private static final float[][] LEVELS = {{1.1f, 3}, {2, 10}, {5, 50}, {10, 200}};
+
+  private TimestampedAverage[] filters;
+  private MotionlessCascadeAverage cascade;
+  private float[] values;
+  private long[] gaps;
+  private long now;
+  private int index;
+
+  @Setup public void setup() {
+    filters = new TimestampedAverage[LEVELS.length];
+    MotionlessCascadeAverage.Builder builder = new MotionlessCascadeAverage.Builder(100, 1000);
+    for (int k = 0; k < LEVELS.length; k++) {
+      filters[k] = TimestampedAverage.Builder.createTimeDependentAverage(LEVELS[k][0], LEVELS[k][1], 100, 1000);
+      builder.level(LEVELS[k][0], LEVELS[k][1]);
+    }
+    cascade = builder.build();
+    values = Samples.values();
+    gaps = Samples.gapsNanos();
+    now = System.nanoTime();
+  }
+
+  /**
+   * Four separate time dependent averages of the same value
+   */
+  @Benchmark public float separateFilters() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    float sum = 0;
+    for (TimestampedAverage filter : filters) {
+      sum += filter.average(values[i], now);
+    }
+    return sum;
+  }
+
+  /**
+   * The same four levels in one cascade
+   */
+  @Benchmark public float cascade() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    cascade.average(values[i], now);
+    return cascade.difference(0, 3);
+  }
+
+  /**
+   * Four separate averages, each reading the clock
+   */
+  @Benchmark public float separateFiltersClock() {
+    float value = values[index++ & MASK];
+    float sum = 0;
+    for (TimestampedAverage filter : filters) {
+      sum += filter.average(value);
+    }
+    return sum;
+  }
+
+  /**
+   * The cascade reading the clock once
+   */
+  @Benchmark public float cascadeClock() {
+    cascade.average(values[index++ & MASK]);
+    return cascade.difference(0, 3);
+  }
+}
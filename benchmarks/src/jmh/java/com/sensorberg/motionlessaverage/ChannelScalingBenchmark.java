@@ -0,0 +1,117 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+import static com.sensorberg.motionlessaverage.Samples.SIZE;
+
+/**
+ * Updates channels in random order, as beacons are seen by a gateway.
+ * Compares one filter object per channel against the primitive array banks,
+ * and a boxed HashMap of filters against the primitive long keyed table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChannelScalingBenchmark {
+
+  @Param({"1", "1000", "100000", "1000000"})
+  private int channels;
+
+  private MotionlessAverage[] constantFilters;
+  private MotionlessAverage[] kalmanFilters;
+  private MotionlessAverageBank constantBank;
+  private MotionlessAverageBank kalmanBank;
+  private MotionlessAverageBank offHeapKalmanBank;
+  private HashMap<Long, MotionlessAverage> kalmanMap;
+  private LongMotionlessAverageTable kalmanTable;
+
+  private int[] indexes;
+  private float[] values;
+  private float[] out;
+  private int index;
+
+  @Setup public void setup() {
+    constantFilters = new MotionlessAverage[channels];
+    kalmanFilters = new MotionlessAverage[channels];
+    for (int i = 0; i < channels; i++) {
+      constantFilters[i] = MotionlessAverage.Builder.createConstantFilterAverage(10);
+      kalmanFilters[i] = MotionlessAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    }
+    constantBank = MotionlessAverageBank.Builder.createConstantFilterBank(channels, 10);
+    kalmanBank = MotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(channels, 0.01f, 3f);
+    offHeapKalmanBank = OffHeapMotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(channels, 0.01f, 3f);
+    kalmanMap = new HashMap<>();
+    kalmanTable = LongMotionlessAverageTable.Builder.createSimplifiedKalmanFilterTable(channels, 0.01f, 3f);
+    for (int i = 0; i < channels; i++) {
+      kalmanMap.put(key(i), kalmanFilters[i]);
+      kalmanTable.average(key(i), 0f);
+    }
+    indexes = Samples.channels(channels);
+    values = Samples.values();
+    out = new float[SIZE];
+  }
+
+  @Benchmark public float constantFilterObjects() {
+    int i = index++ & MASK;
+    return constantFilters[indexes[i]].average(values[i]);
+  }
+
+  @Benchmark public float constantFilterBank() {
+    int i = index++ & MASK;
+    return constantBank.average(indexes[i], values[i]);
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE) public float[] constantFilterBankBatch() {
+    constantBank.average(indexes, values, out);
+    return out;
+  }
+
+  @Benchmark public float kalmanFilterObjects() {
+    int i = index++ & MASK;
+    return kalmanFilters[indexes[i]].average(values[i]);
+  }
+
+  @Benchmark public float kalmanFilterBank() {
+    int i = index++ & MASK;
+    return kalmanBank.average(indexes[i], values[i]);
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE) public float[] kalmanFilterBankBatch() {
+    kalmanBank.average(indexes, values, out);
+    return out;
+  }
+
+  @Benchmark public float kalmanFilterOffHeapBank() {
+    int i = index++ & MASK;
+    return offHeapKalmanBank.average(indexes[i], values[i]);
+  }
+
+  @Benchmark public float kalmanFilterHashMap() {
+    int i = index++ & MASK;
+    return kalmanMap.get(key(indexes[i])).average(values[i]);
+  }
+
+  @Benchmark public float kalmanFilterTable() {
+    int i = index++ & MASK;
+    return kalmanTable.average(key(indexes[i]), values[i]);
+  }
+
+  /**
+   * MAC address like keys, sharing the vendor prefix
+   */
+  private static long key(int channel) {
+    return 0xAC233F000000L | channel;
+  }
+}
@@ -0,0 +1,54 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Beacons coming and going: every operation removes the oldest of 1000 live keys and averages into a new one.
+ * Compares creating the Kalman filters of new keys against reusing them from a pool, run with -prof gc for allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChurnBenchmark {
+
+  private static final int LIVE_KEYS = 1000;
+
+  private LongMotionlessAverageRegistry registry;
+  private LongMotionlessAverageRegistry pooledRegistry;
+  private float[] values;
+  private long next;
+  private long pooledNext;
+  private int index;
+
+  @Setup public void setup() {
+    MotionlessAverageFactory factory = MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    registry = new LongMotionlessAverageRegistry(factory, 1);
+    pooledRegistry = new LongMotionlessAverageRegistry(factory, 1, new MotionlessAveragePool(LIVE_KEYS));
+    values = Samples.values();
+    for (; next < LIVE_KEYS; next++) {
+      registry.average(next, 0f);
+      pooledRegistry.average(next, 0f);
+    }
+    pooledNext = next;
+  }
+
+  @Benchmark public float create() {
+    registry.remove(next - LIVE_KEYS);
+    return registry.average(next++, values[index++ & MASK]);
+  }
+
+  @Benchmark public float pooled() {
+    pooledRegistry.remove(pooledNext - LIVE_KEYS);
+    return pooledRegistry.average(pooledNext++, values[index++ & MASK]);
+  }
+}
@@ -0,0 +1,55 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConstantFilterBenchmark {
+
+  private MotionlessAverage filter;
+  private MotionlessStatistics statistics;
+  private MotionlessAverageEmitter emitter;
+  private float[] values;
+  private int index;
+
+  @Setup public void setup() {
+    filter = MotionlessAverage.Builder.createConstantFilterAverage(10);
+    statistics = MotionlessStatistics.Builder.createConstantFilterStatistics(10);
+    emitter = new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(10))
+        .delta(1)
+        .minIntervalMs(16)
+        .maxIntervalMs(250)
+        .build();
+    values = Samples.values();
+  }
+
+  @Benchmark public float average() {
+    return filter.average(values[index++ & MASK]);
+  }
+
+  /**
+   * Mean and variance in one update
+   */
+  @Benchmark public float statistics() {
+    statistics.average(values[index++ & MASK]);
+    return statistics.variance();
+  }
+
+  /**
+   * Average and decide whether to report it
+   */
+  @Benchmark public boolean emitter() {
+    return emitter.average(values[index++ & MASK]);
+  }
+}
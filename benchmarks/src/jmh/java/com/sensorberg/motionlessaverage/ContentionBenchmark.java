@@ -0,0 +1,74 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Many scanner threads feeding the same filter.
+ * Compares the lock free filters against a sequential filter behind a synchronized block.
+ * Change the number of threads with -Pjmh.threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class ContentionBenchmark {
+
+  private MotionlessAverage constantFilter;
+  private MotionlessAverage timedFilter;
+  private MotionlessAverage concurrentConstantFilter;
+  private MotionlessAverage concurrentTimedFilter;
+
+  @State(Scope.Thread)
+  public static class Input {
+    private float[] values;
+    private int index;
+
+    @Setup public void setup() {
+      values = Samples.values();
+    }
+
+    float next() {
+      return values[index++ & MASK];
+    }
+  }
+
+  @Setup public void setup() {
+    constantFilter = MotionlessAverage.Builder.createConstantFilterAverage(10);
+    timedFilter = MotionlessAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    concurrentConstantFilter = MotionlessAverage.Builder.createConcurrentConstantFilterAverage(10);
+    concurrentTimedFilter = MotionlessAverage.Builder.createConcurrentTimeDependentAverage(2, 20, 100, 1000);
+  }
+
+  @Benchmark public float synchronizedConstantFilter(Input input) {
+    float value = input.next();
+    synchronized (constantFilter) {
+      return constantFilter.average(value);
+    }
+  }
+
+  @Benchmark public float concurrentConstantFilter(Input input) {
+    return concurrentConstantFilter.average(input.next());
+  }
+
+  @Benchmark public float synchronizedTimedFilter(Input input) {
+    float value = input.next();
+    synchronized (timedFilter) {
+      return timedFilter.average(value);
+    }
+  }
+
+  @Benchmark public float concurrentTimedFilter(Input input) {
+    return concurrentTimedFilter.average(input.next());
+  }
+}
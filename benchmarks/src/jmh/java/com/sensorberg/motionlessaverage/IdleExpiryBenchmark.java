@@ -0,0 +1,75 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Keys coming and going: every update also moves the wheel a few steps.
+ * The sample latencies show that expiring never stalls an update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdleExpiryBenchmark {
+
+  private static final int KEYS = 100000;
+
+  private LongMotionlessAverageTable table;
+  private ExpiringMotionlessAverageTable expiringTable;
+  private ExpiringMotionlessAverageTable steadyTable;
+  private float[] values;
+  private int[] keys;
+  private int index;
+  private long now;
+  private long offset;
+
+  @Setup public void setup() {
+    table = LongMotionlessAverageTable.Builder.createTimeDependentTable(KEYS, 1.1f, 10, 100, 2000);
+    expiringTable = new ExpiringMotionlessAverageTable.Builder(
+        LongMotionlessAverageTable.Builder.createTimeDependentTable(KEYS, 1.1f, 10, 100, 2000), 1000).build();
+    steadyTable = new ExpiringMotionlessAverageTable.Builder(
+        LongMotionlessAverageTable.Builder.createTimeDependentTable(KEYS, 1.1f, 10, 100, 2000), 1000).build();
+    values = Samples.values();
+    keys = Samples.channels(KEYS);
+  }
+
+  @Benchmark public float table() {
+    int i = index++ & MASK;
+    now += 10000;
+    return table.average(keys[i], values[i], now);
+  }
+
+  /**
+   * Keys drift so old ones go idle and expire
+   */
+  @Benchmark public float expiringTable() {
+    int i = index++ & MASK;
+    now += 10000;
+    if (i == 0) {
+      offset += KEYS / 16;
+    }
+    float value = expiringTable.average(keys[i] + offset, values[i], now);
+    expiringTable.expire(now, 4);
+    return value;
+  }
+
+  /**
+   * Same keys as {@link #table()}, the cost of keeping them scheduled
+   */
+  @Benchmark public float steadyTable() {
+    int i = index++ & MASK;
+    now += 10000;
+    float value = steadyTable.average(keys[i], values[i], now);
+    steadyTable.expire(now, 4);
+    return value;
+  }
+}
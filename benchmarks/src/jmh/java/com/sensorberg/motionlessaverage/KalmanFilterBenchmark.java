@@ -0,0 +1,56 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KalmanFilterBenchmark {
+
+  private KalmanFilter filter;
+  private KalmanFilter toleranceFilter;
+  private KalmanFilterBank fullUpdate;
+  private float[] values;
+  private int index;
+
+  @Setup public void setup() {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(0.01f, 3f).motionVector(0.5f);
+    filter = builder.build();
+    toleranceFilter = builder.steadyStateTolerance(1e-4f).build();
+    fullUpdate = MotionlessAverageBank.Builder.createKalmanFilterBank(1, builder);
+    values = Samples.values();
+  }
+
+  @Benchmark public float filter() {
+    int i = index++ & MASK;
+    return filter.filter(values[i], values[(i + 1) & MASK]);
+  }
+
+  @Benchmark public float average() {
+    return filter.average(values[index++ & MASK]);
+  }
+
+  /**
+   * Fixed gain once the covariance is within 1e-4 of its steady state
+   */
+  @Benchmark public float averageSteadyStateTolerance() {
+    return toleranceFilter.average(values[index++ & MASK]);
+  }
+
+  /**
+   * Banks never take the steady state fast path
+   */
+  @Benchmark public float averageFullUpdate() {
+    return fullUpdate.average(0, values[index++ & MASK]);
+  }
+}
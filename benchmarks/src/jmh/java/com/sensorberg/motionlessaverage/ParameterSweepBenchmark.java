@@ -0,0 +1,66 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Sweeps 256 Kalman configurations over a trace of 65536 samples, reported per configuration.
+ * Compare the scores across pool sizes to check the scaling with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParameterSweepBenchmark {
+
+  private static final int SAMPLES = 1 << 16;
+  private static final int CONFIGURATIONS = 256;
+
+  @Param({"1", "2", "4"})
+  private int parallelism;
+
+  private ForkJoinPool pool;
+  private ParameterSweep sweep;
+  private List<MotionlessAverageFactory> grid;
+
+  @Setup public void setup() {
+    float[] samples = Samples.values();
+    long[] gaps = Samples.gapsNanos();
+    float[] values = new float[SAMPLES];
+    long[] timestamps = new long[SAMPLES];
+    float[] reference = new float[SAMPLES];
+    long now = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      now += gaps[i & MASK];
+      values[i] = samples[i & MASK];
+      timestamps[i] = now;
+      reference[i] = -70f;
+    }
+    pool = new ForkJoinPool(parallelism);
+    sweep = new ParameterSweep(values, timestamps, reference, 16);
+    grid = ParameterSweep.Grid.simplifiedKalman(
+        ParameterSweep.Grid.logSpace(0.001f, 1, 16), ParameterSweep.Grid.logSpace(0.1f, 10, 16));
+  }
+
+  @TearDown public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark @OperationsPerInvocation(CONFIGURATIONS)
+  public List<ParameterSweep.Result> sweep() {
+    return sweep.run(grid, pool);
+  }
+}
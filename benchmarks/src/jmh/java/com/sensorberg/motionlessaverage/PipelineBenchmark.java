@@ -0,0 +1,89 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Many gateway threads feeding ten thousand keys.
+ * Compares the sharded pipeline, retrying when a shard is full so it measures sustained throughput,
+ * against one table behind a synchronized block.
+ * Change the number of threads with -Pjmh.threads.
+ * <p>
+ * With {@code shards} 0 the pipeline gets one shard per producer thread, so running it with
+ * -Pjmh.threads=1, 2, 4 and 8 on a machine with that many cores measures how it scales with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class PipelineBenchmark {
+
+  private static final int KEYS = 10000;
+
+  // 0 for one shard per thread
+  @Param({"0", "1", "2", "4"})
+  public int shards;
+
+  private MotionlessAveragePipeline pipeline;
+  private LongMotionlessAverageTable table;
+
+  @State(Scope.Thread)
+  public static class Input {
+    private float[] values;
+    private int[] keys;
+    private int index;
+    private long now;
+
+    @Setup public void setup() {
+      values = Samples.values();
+      keys = Samples.channels(KEYS);
+    }
+  }
+
+  @Setup public void setup(BenchmarkParams params) {
+    int shards = this.shards > 0 ? this.shards : params.getThreads();
+    LongMotionlessAverageTable[] tables = new LongMotionlessAverageTable[shards];
+    for (int i = 0; i < shards; i++) {
+      tables[i] = LongMotionlessAverageTable.Builder.createTimeDependentTable(KEYS / shards, 1.1f, 10, 100, 2000);
+    }
+    pipeline = new MotionlessAveragePipeline.Builder(new MotionlessAveragePipeline.Listener() {
+      @Override public void onAverages(int shard, long[] keys, float[] averages, long[] timestampsNanos, int count) {
+      }
+    }, tables).build();
+    table = LongMotionlessAverageTable.Builder.createTimeDependentTable(KEYS, 1.1f, 10, 100, 2000);
+  }
+
+  @TearDown public void tearDown() {
+    pipeline.close();
+  }
+
+  @Benchmark public boolean pipeline(Input input) {
+    int i = input.index++ & MASK;
+    long now = input.now += 100000;
+    while (!pipeline.offer(input.keys[i], input.values[i], now)) {
+      Thread.yield();
+    }
+    return true;
+  }
+
+  @Benchmark public float synchronizedTable(Input input) {
+    int i = input.index++ & MASK;
+    long now = input.now += 100000;
+    synchronized (table) {
+      return table.average(input.keys[i], input.values[i], now);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Keyed updates from several threads to existing keys.
+ * Compares the registries against the usual ConcurrentHashMap with computeIfAbsent and a lock per filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class RegistryBenchmark {
+
+  @Param({"1000", "100000"})
+  private int keys;
+
+  private ConcurrentHashMap<Long, MotionlessAverage> map;
+  private MotionlessAverageRegistry<Long> registry;
+  private LongMotionlessAverageRegistry longRegistry;
+
+  @State(Scope.Thread)
+  public static class Input {
+    private int[] channels;
+    private float[] values;
+    private int index;
+
+    @Setup public void setup(RegistryBenchmark benchmark) {
+      channels = Samples.channels(benchmark.keys);
+      values = Samples.values();
+    }
+  }
+
+  @Setup public void setup() {
+    MotionlessAverageFactory factory = MotionlessAverageFactory.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    map = new ConcurrentHashMap<>();
+    registry = new MotionlessAverageRegistry<>(factory);
+    longRegistry = new LongMotionlessAverageRegistry(factory);
+    for (long key = 0; key < keys; key++) {
+      map.put(key, factory.create());
+      registry.average(key, 0f);
+      longRegistry.average(key, 0f);
+    }
+  }
+
+  @Benchmark public float concurrentHashMap(Input input) {
+    int i = input.index++ & MASK;
+    MotionlessAverage average = map.computeIfAbsent((long) input.channels[i],
+        key -> MotionlessAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000));
+    synchronized (average) {
+      return average.average(input.values[i]);
+    }
+  }
+
+  @Benchmark public float registry(Input input) {
+    int i = input.index++ & MASK;
+    return registry.average((long) input.channels[i], input.values[i]);
+  }
+
+  @Benchmark public float longRegistry(Input input) {
+    int i = input.index++ & MASK;
+    return longRegistry.average(input.channels[i], input.values[i]);
+  }
+}
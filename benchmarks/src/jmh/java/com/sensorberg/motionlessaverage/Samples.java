@@ -0,0 +1,55 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks.
+ * Benchmarks cycle through the arrays with {@code index & MASK},
+ * so the JIT can't constant fold the inputs and every run sees the same data.
+ */
+final class Samples {
+
+  static final int SIZE = 1 << 12;
+  static final int MASK = SIZE - 1;
+
+  private static final long SEED = 42;
+
+  private Samples() {
+  }
+
+  /**
+   * @return RSSI like values, around -70 with gaussian noise
+   */
+  static float[] values() {
+    Random random = new Random(SEED);
+    float[] values = new float[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      values[i] = -70f + (float) random.nextGaussian() * 6f;
+    }
+    return values;
+  }
+
+  /**
+   * @return irregular gaps between samples, from 10ms to 1500ms, in nanoseconds
+   */
+  static long[] gapsNanos() {
+    Random random = new Random(SEED);
+    long[] gaps = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      gaps[i] = (10 + random.nextInt(1490)) * MotionlessAverage.Builder.NANO;
+    }
+    return gaps;
+  }
+
+  /**
+   * @return uniformly distributed channel indexes, from zero to channels - 1
+   */
+  static int[] channels(int channels) {
+    Random random = new Random(SEED);
+    int[] indexes = new int[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      indexes[i] = random.nextInt(channels);
+    }
+    return indexes;
+  }
+}
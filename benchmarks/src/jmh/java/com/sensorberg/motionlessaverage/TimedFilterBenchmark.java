@@ -0,0 +1,110 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+import static com.sensorberg.motionlessaverage.Samples.SIZE;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimedFilterBenchmark {
+
+  // concrete types on both sides, an interface typed field adds a type check the comparison shouldn't measure
+  private TimedFilter filter;
+  private CoarseNanoClock coarseClock;
+  private MotionlessAverage coarseFilter;
+  private ExponentialDecayFilter exponentialDecay;
+  private float mathExpValue;
+  private long mathExpLastSeen;
+  private float[] values;
+  private long[] gaps;
+  private long[] timestamps;
+  private float[] out;
+  private long now;
+  private int index;
+
+  @Setup public void setup() {
+    filter = (TimedFilter) MotionlessAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    exponentialDecay = (ExponentialDecayFilter) TimestampedAverage.Builder.createExponentialDecayAverage(500);
+    coarseClock = NanoClock.Builder.createCoarseClock(1);
+    coarseFilter = MotionlessAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000, coarseClock);
+    values = Samples.values();
+    gaps = Samples.gapsNanos();
+    now = System.nanoTime();
+    timestamps = new long[SIZE];
+    out = new float[SIZE];
+    long timestamp = now;
+    for (int i = 0; i < SIZE; i++) {
+      timestamp += gaps[i];
+      timestamps[i] = timestamp;
+    }
+  }
+
+  @TearDown public void tearDown() {
+    coarseClock.close();
+  }
+
+  /**
+   * Averaging with explicit, irregular timestamps
+   */
+  @Benchmark public float averageForTime() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    return filter.average(values[i], now);
+  }
+
+  /**
+   * Continuous time decay with the table driven exponential, compare with averageForTime
+   */
+  @Benchmark public float exponentialDecayForTime() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    return exponentialDecay.average(values[i], now);
+  }
+
+  /**
+   * The same decay calling Math.exp on every sample, for comparison
+   */
+  @Benchmark public float mathExpDecayForTime() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    float decay = (float) Math.exp(-(now - mathExpLastSeen) / (500.0 * MotionlessAverage.Builder.NANO));
+    mathExpValue = values[i] + decay * (mathExpValue - values[i]);
+    mathExpLastSeen = now;
+    return mathExpValue;
+  }
+
+  /**
+   * Replay of recorded values, without clock reads or per sample dispatch.
+   * The timestamps restart on every invocation, the first gap is clamped to minTime.
+   */
+  @Benchmark @OperationsPerInvocation(SIZE) public float[] bulkAverageForTime() {
+    filter.average(values, timestamps, out, 0, SIZE);
+    return out;
+  }
+
+  /**
+   * Averaging through the public interface, including the clock read
+   */
+  @Benchmark public float average() {
+    return filter.average(values[index++ & MASK]);
+  }
+
+  /**
+   * Averaging through the public interface, reading a clock cached every millisecond
+   */
+  @Benchmark public float averageCoarseClock() {
+    return coarseFilter.average(values[index++ & MASK]);
+  }
+}
@@ -0,0 +1,69 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Replays a trace file of a million records over ten thousand channels, reported per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TraceReplayBenchmark {
+
+  private static final int RECORDS = 1000000;
+  private static final int CHANNELS = 10000;
+
+  private Path input;
+  private Path output;
+  private LongMotionlessAverageTable timedTable;
+  private MotionlessAverageBank kalmanBank;
+
+  @Setup public void setup() throws IOException {
+    float[] values = Samples.values();
+    long[] gaps = Samples.gapsNanos();
+    int[] channels = Samples.channels(CHANNELS);
+    ByteBuffer trace = ByteBuffer.allocate(RECORDS * TraceReplay.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    long now = 0;
+    for (int i = 0; i < RECORDS; i++) {
+      now += gaps[i & MASK] / 16;
+      trace.putLong(channels[i & MASK]).putLong(now).putFloat(values[i & MASK]);
+    }
+    input = Files.createTempFile("trace", ".bin");
+    output = Files.createTempFile("replayed", ".bin");
+    Files.write(input, trace.array());
+    timedTable = LongMotionlessAverageTable.Builder.createTimeDependentTable(CHANNELS, 1.1f, 10, 100, 2000);
+    kalmanBank = MotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(CHANNELS, 0.01f, 3f);
+  }
+
+  @TearDown public void tearDown() throws IOException {
+    Files.deleteIfExists(input);
+    Files.deleteIfExists(output);
+  }
+
+  @Benchmark @OperationsPerInvocation(RECORDS)
+  public long timedTable() throws IOException {
+    return TraceReplay.replay(input, output, timedTable);
+  }
+
+  @Benchmark @OperationsPerInvocation(RECORDS)
+  public long kalmanBank() throws IOException {
+    return TraceReplay.replay(input, output, kalmanBank);
+  }
+}
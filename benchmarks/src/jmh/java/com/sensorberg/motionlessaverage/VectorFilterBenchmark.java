@@ -0,0 +1,58 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * Three axis sensor samples: one scalar filter per axis and a magnitude through Math.pow,
+ * as in the demo app, against one vector filter and its float magnitude.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorFilterBenchmark {
+
+  private MotionlessAverage[] axes;
+  private MotionlessVectorAverage vector;
+  private float[] values;
+  private float[] sample;
+  private int index;
+
+  @Setup public void setup() {
+    axes = new MotionlessAverage[3];
+    for (int i = 0; i < axes.length; i++) {
+      axes[i] = MotionlessAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    }
+    vector = MotionlessVectorAverage.Builder.createSimplifiedKalmanFilter(3, 0.01f, 3f);
+    values = Samples.values();
+    sample = new float[3];
+  }
+
+  @Benchmark public float scalarFilters() {
+    int i = index;
+    index += 3;
+    float x = axes[0].average(values[i & MASK]);
+    float y = axes[1].average(values[(i + 1) & MASK]);
+    float z = axes[2].average(values[(i + 2) & MASK]);
+    return (float) Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2) + Math.pow(z, 2));
+  }
+
+  @Benchmark public float vectorFilter() {
+    int i = index;
+    index += 3;
+    sample[0] = values[i & MASK];
+    sample[1] = values[(i + 1) & MASK];
+    sample[2] = values[(i + 2) & MASK];
+    vector.average(sample, 0);
+    return vector.magnitude();
+  }
+}
@@ -0,0 +1,91 @@
+package com.sensorberg.motionlessaverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.sensorberg.motionlessaverage.Samples.MASK;
+
+/**
+ * The array based moving average the filters are usually compared against, see the demo app,
+ * and the library's sliding window average with its running sum.
+ * The time window aggregator tracks min, max and mean over irregularly timed samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WindowAverageBenchmark {
+
+  @Param({"10", "150", "1000"})
+  private int window;
+
+  private MovingAverage movingAverage;
+  private MotionlessAverage slidingWindowAverage;
+  private TimeWindowAggregator timeWindowAggregator;
+  private long[] gaps;
+  private long now;
+  private float[] values;
+  private int index;
+
+  @Setup public void setup() {
+    movingAverage = new MovingAverage(window);
+    slidingWindowAverage = MotionlessAverage.Builder.createSlidingWindowAverage(window);
+    // a window long enough to hold about the same number of samples
+    gaps = Samples.gapsNanos();
+    timeWindowAggregator = new TimeWindowAggregator.Builder(window * 755L).maxSamples(4 * window).build();
+    values = Samples.values();
+  }
+
+  @Benchmark public float movingAverage() {
+    return movingAverage.average(values[index++ & MASK]);
+  }
+
+  @Benchmark public float slidingWindowAverage() {
+    return slidingWindowAverage.average(values[index++ & MASK]);
+  }
+
+  @Benchmark public float timeWindowAggregator() {
+    int i = index++ & MASK;
+    now += gaps[i];
+    timeWindowAggregator.add(values[i], now);
+    return timeWindowAggregator.max();
+  }
+
+  /**
+   * Same as the app's MovingAverage: sums the whole window on every call
+   */
+  static class MovingAverage {
+
+    private final float[] data;
+    private final int arraySize;
+    private boolean arrayFull = false;
+    private int pointer = 0;
+
+    MovingAverage(int arraySize) {
+      this.arraySize = arraySize;
+      this.data = new float[arraySize];
+    }
+
+    float average(float newValue) {
+      data[pointer] = newValue;
+      pointer++;
+      if (pointer == arraySize) {
+        pointer = 0;
+        arrayFull = true;
+      }
+      float sum = 0;
+      int count = arrayFull ? arraySize : pointer;
+      for (int i = 0; i < count; i++) {
+        sum += data[i];
+      }
+      return sum / (float) count;
+    }
+  }
+}
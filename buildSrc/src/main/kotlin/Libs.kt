@@ -41,6 +41,23 @@ object Libs {
       "de.fayard.buildSrcVersions:de.fayard.buildSrcVersions.gradle.plugin:" +
       Versions.de_fayard_buildsrcversions_gradle_plugin
 
+  /**
+   * https://github.com/melix/jmh-gradle-plugin
+   */
+  const val jmh_gradle_plugin: String = "me.champeau.gradle:jmh-gradle-plugin:" +
+      Versions.jmh_gradle_plugin
+
+  /**
+   * http://openjdk.java.net/projects/code-tools/jmh/
+   */
+  const val jmh_core: String = "org.openjdk.jmh:jmh-core:" + Versions.jmh
+
+  /**
+   * http://openjdk.java.net/projects/code-tools/jmh/
+   */
+  const val jmh_generator_annprocess: String = "org.openjdk.jmh:jmh-generator-annprocess:" +
+      Versions.jmh
+
   /**
    * http://junit.org
    */
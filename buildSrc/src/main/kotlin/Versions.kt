@@ -26,6 +26,10 @@ object Versions {
 
   const val de_fayard_buildsrcversions_gradle_plugin: String = "0.5.0" // available: "0.7.0"
 
+  const val jmh_gradle_plugin: String = "0.5.0"
+
+  const val jmh: String = "1.23"
+
   const val junit: String = "4.12"
 
   /**
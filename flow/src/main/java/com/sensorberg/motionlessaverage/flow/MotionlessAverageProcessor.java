@@ -0,0 +1,240 @@
+package com.sensorberg.motionlessaverage.flow;
+
+import com.sensorberg.motionlessaverage.LongMotionlessAverageTable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Flow.Processor} averaging batches of keyed samples through a {@link LongMotionlessAverageTable}.
+ * <p>
+ * Every received batch is averaged in bulk, in place in the pending output batch, with the sample timestamps.
+ * Output batches are published when they hold {@code batchSize} samples,
+ * or when the oldest pending sample waited {@code linger}, whichever comes first.
+ * <p>
+ * Backpressure: at most {@code prefetch} batches are requested from upstream ahead of processing.
+ * When a subscriber's buffer is full, publishing blocks until it requests more,
+ * which stops processing and with it the requests to upstream.
+ * <p>
+ * The table must only be used by this processor.
+ */
+public class MotionlessAverageProcessor extends SubmissionPublisher<SampleBatch>
+    implements Flow.Processor<SampleBatch, SampleBatch> {
+
+  private final LongMotionlessAverageTable table;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final int prefetch;
+  private final ScheduledExecutorService lingerTimer;
+
+  private Flow.Subscription subscription;
+  private int processed;
+
+  // pending output batch, shared with the linger timer
+  private final Object lock = new Object();
+  private long[] keys;
+  private long[] timestamps;
+  private float[] values;
+  private int pending;
+  // incremented for every output batch, so a late linger flush can't cut the next batch short
+  private long generation;
+  private ScheduledFuture<?> lingerFlush;
+
+  MotionlessAverageProcessor(Builder builder) {
+    super(builder.executor, builder.maxBufferCapacity);
+    this.table = builder.table;
+    this.batchSize = builder.batchSize;
+    this.lingerNanos = builder.lingerNanos;
+    this.prefetch = builder.prefetch;
+    this.lingerTimer = lingerNanos > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "motionless-average-linger");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+    allocate();
+  }
+
+  @Override public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(prefetch);
+  }
+
+  @Override public void onNext(SampleBatch batch) {
+    int size = batch.size();
+    int done = 0;
+    while (done < size) {
+      synchronized (lock) {
+        int n = Math.min(size - done, batchSize - pending);
+        System.arraycopy(batch.keys(), done, keys, pending, n);
+        System.arraycopy(batch.timestampsNanos(), done, timestamps, pending, n);
+        System.arraycopy(batch.values(), done, values, pending, n);
+        table.average(keys, values, timestamps, values, pending, n);
+        if (pending == 0 && lingerTimer != null) {
+          long batchGeneration = generation;
+          lingerFlush = lingerTimer.schedule(() -> flushLingering(batchGeneration), lingerNanos, TimeUnit.NANOSECONDS);
+        }
+        pending += n;
+        done += n;
+        if (pending == batchSize || lingerTimer == null && done == size) {
+          emit();
+        }
+      }
+    }
+    // replenish in halves, so upstream keeps producing while the last requested batches are processed
+    if (++processed >= (prefetch + 1) / 2) {
+      int request = processed;
+      processed = 0;
+      subscription.request(request);
+    }
+  }
+
+  @Override public void onError(Throwable throwable) {
+    synchronized (lock) {
+      emit();
+    }
+    shutdownTimer();
+    closeExceptionally(throwable);
+  }
+
+  @Override public void onComplete() {
+    synchronized (lock) {
+      emit();
+    }
+    shutdownTimer();
+    close();
+  }
+
+  /**
+   * Publishes the pending samples now, without waiting for the batch to fill up or the linger to pass
+   */
+  public void flush() {
+    synchronized (lock) {
+      emit();
+    }
+  }
+
+  private void flushLingering(long batchGeneration) {
+    synchronized (lock) {
+      if (batchGeneration == generation) {
+        emit();
+      }
+    }
+  }
+
+  // called holding the lock
+  private void emit() {
+    if (lingerFlush != null) {
+      lingerFlush.cancel(false);
+      lingerFlush = null;
+    }
+    if (pending == 0) {
+      return;
+    }
+    SampleBatch batch = new SampleBatch(keys, timestamps, values, pending);
+    allocate();
+    submit(batch);
+  }
+
+  private void allocate() {
+    keys = new long[batchSize];
+    timestamps = new long[batchSize];
+    values = new float[batchSize];
+    pending = 0;
+    generation++;
+  }
+
+  private void shutdownTimer() {
+    if (lingerTimer != null) {
+      lingerTimer.shutdownNow();
+    }
+  }
+
+  public static class Builder {
+
+    private final LongMotionlessAverageTable table;
+    private int batchSize = 1024;
+    private long lingerNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private int prefetch = 16;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int maxBufferCapacity = Flow.defaultBufferSize();
+
+    /**
+     * @param table table averaging the samples, keyed like the samples
+     */
+    public Builder(LongMotionlessAverageTable table) {
+      if (table == null) {
+        throw new IllegalArgumentException("table must not be null");
+      }
+      this.table = table;
+    }
+
+    /**
+     * Number of samples per published batch. Defaults to 1024.
+     *
+     * @param batchSize must be greater than zero
+     */
+    public Builder batchSize(int batchSize) {
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be greater than zero");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Longest time a sample waits for its batch to fill up before it's published anyway. Defaults to 10ms.
+     * Zero publishes whatever is pending after every received batch.
+     *
+     * @param linger must not be negative
+     */
+    public Builder linger(long linger, TimeUnit unit) {
+      if (linger < 0) {
+        throw new IllegalArgumentException("linger must not be negative");
+      }
+      this.lingerNanos = unit.toNanos(linger);
+      return this;
+    }
+
+    /**
+     * Number of batches requested from upstream ahead of processing. Defaults to 16.
+     *
+     * @param prefetch must be greater than zero
+     */
+    public Builder prefetch(int prefetch) {
+      if (prefetch < 1) {
+        throw new IllegalArgumentException("prefetch must be greater than zero");
+      }
+      this.prefetch = prefetch;
+      return this;
+    }
+
+    /**
+     * Executor delivering the published batches to subscribers, and the size of each subscriber's buffer.
+     * Default to the common pool and {@link Flow#defaultBufferSize()}.
+     *
+     * @see SubmissionPublisher#SubmissionPublisher(Executor, int)
+     */
+    public Builder executor(Executor executor, int maxBufferCapacity) {
+      if (executor == null || maxBufferCapacity < 1) {
+        throw new IllegalArgumentException("executor must not be null and maxBufferCapacity greater than zero");
+      }
+      this.executor = executor;
+      this.maxBufferCapacity = maxBufferCapacity;
+      return this;
+    }
+
+    public MotionlessAverageProcessor build() {
+      return new MotionlessAverageProcessor(this);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.sensorberg.motionlessaverage.flow;
+
+/**
+ * A batch of samples in parallel primitive arrays: the key, the timestamp in nanoseconds and the value of each sample.
+ * <p>
+ * Batches are handed over between stages without copying,
+ * so the arrays must not be modified after the batch has been published.
+ */
+public final class SampleBatch {
+
+  private final long[] keys;
+  private final long[] timestampsNanos;
+  private final float[] values;
+  private final int size;
+
+  /**
+   * @param keys            key of each sample
+   * @param timestampsNanos timestamp of each sample, in nanoseconds
+   * @param values          value of each sample
+   * @param size            number of samples, from the start of the arrays
+   */
+  public SampleBatch(long[] keys, long[] timestampsNanos, float[] values, int size) {
+    if (size < 0 || size > keys.length || size > timestampsNanos.length || size > values.length) {
+      throw new IllegalArgumentException("size must be between zero and the length of the arrays");
+    }
+    this.keys = keys;
+    this.timestampsNanos = timestampsNanos;
+    this.values = values;
+    this.size = size;
+  }
+
+  public long[] keys() {
+    return keys;
+  }
+
+  public long[] timestampsNanos() {
+    return timestampsNanos;
+  }
+
+  public float[] values() {
+    return values;
+  }
+
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,222 @@
+package com.sensorberg.motionlessaverage.flow;
+
+import com.sensorberg.motionlessaverage.LongMotionlessAverageTable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageProcessorTest {
+
+  private static final long NANO = 1000000;
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_empty_batches() throws Exception {
+    new MotionlessAverageProcessor.Builder(table()).batchSize(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_negative_linger() throws Exception {
+    new MotionlessAverageProcessor.Builder(table()).linger(-1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_size_larger_than_arrays() throws Exception {
+    new SampleBatch(new long[1], new long[2], new float[2], 2);
+  }
+
+  @Test public void averages_like_the_table_and_rebatches() throws Exception {
+    MotionlessAverageProcessor processor = new MotionlessAverageProcessor.Builder(table())
+        .batchSize(7)
+        .linger(1, TimeUnit.HOURS)
+        .build();
+    Collector collector = new Collector(Long.MAX_VALUE);
+    processor.subscribe(collector);
+    Source source = new Source(batches(10, 5));
+    source.subscribe(processor);
+    collector.await();
+
+    LongMotionlessAverageTable expected = table();
+    List<SampleBatch> received = collector.batches;
+    int total = 0;
+    int index = 0;
+    for (SampleBatch batch : received) {
+      assertTrue(batch.size() <= 7);
+      total += batch.size();
+      for (int i = 0; i < batch.size(); i++, index++) {
+        SampleBatch input = source.batches.get(index / 5);
+        int j = index % 5;
+        assertEquals(input.keys()[j], batch.keys()[i]);
+        assertEquals(input.timestampsNanos()[j], batch.timestampsNanos()[i]);
+        assertEquals(expected.average(input.keys()[j], input.values()[j], input.timestampsNanos()[j]), batch.values()[i]);
+      }
+    }
+    assertEquals(50, total);
+    // 50 samples in batches of 7, the rest flushed on completion
+    assertEquals(8, received.size());
+  }
+
+  @Test public void linger_publishes_partial_batches() throws Exception {
+    MotionlessAverageProcessor processor = new MotionlessAverageProcessor.Builder(table())
+        .batchSize(1000)
+        .linger(20, TimeUnit.MILLISECONDS)
+        .build();
+    Collector collector = new Collector(Long.MAX_VALUE);
+    collector.expected = new CountDownLatch(1);
+    processor.subscribe(collector);
+    processor.onSubscribe(new Flow.Subscription() {
+      @Override public void request(long n) {
+      }
+
+      @Override public void cancel() {
+      }
+    });
+    processor.onNext(batches(1, 3).get(0));
+    assertTrue(collector.expected.await(5, TimeUnit.SECONDS));
+    assertEquals(3, collector.batches.get(0).size());
+  }
+
+  @Test public void zero_linger_publishes_after_every_batch() throws Exception {
+    MotionlessAverageProcessor processor = new MotionlessAverageProcessor.Builder(table())
+        .batchSize(4)
+        .linger(0, TimeUnit.MILLISECONDS)
+        .build();
+    Collector collector = new Collector(Long.MAX_VALUE);
+    processor.subscribe(collector);
+    new Source(batches(3, 6)).subscribe(processor);
+    collector.await();
+    int[] sizes = new int[collector.batches.size()];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = collector.batches.get(i).size();
+    }
+    assertEquals("[4, 2, 4, 2, 4, 2]", Arrays.toString(sizes));
+  }
+
+  @Test public void slow_subscriber_holds_back_upstream() throws Exception {
+    MotionlessAverageProcessor processor = new MotionlessAverageProcessor.Builder(table())
+        .batchSize(1)
+        .linger(0, TimeUnit.MILLISECONDS)
+        .prefetch(2)
+        .executor(Runnable::run, 1)
+        .build();
+    // requests one batch and nothing more
+    Collector collector = new Collector(1);
+    processor.subscribe(collector);
+    Source source = new Source(batches(100, 1));
+    Thread upstream = new Thread(() -> source.subscribe(processor));
+    upstream.setDaemon(true);
+    upstream.start();
+    Thread.sleep(200);
+    // one batch delivered, one buffered, one blocked in submit and the replenished requests
+    assertTrue("requested " + source.requested.get(), source.requested.get() <= 4);
+    assertEquals(1, collector.batches.size());
+  }
+
+  private static LongMotionlessAverageTable table() {
+    return LongMotionlessAverageTable.Builder.createTimeDependentTable(16, 1.1f, 5, 10, 1000);
+  }
+
+  private static List<SampleBatch> batches(int count, int size) {
+    List<SampleBatch> batches = new ArrayList<>();
+    for (int b = 0; b < count; b++) {
+      long[] keys = new long[size];
+      long[] timestamps = new long[size];
+      float[] values = new float[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = (b + i) % 3;
+        timestamps[i] = (b * size + i) * 50 * NANO;
+        values[i] = -70 + (b * 7 + i * 13) % 20;
+      }
+      batches.add(new SampleBatch(keys, timestamps, values, size));
+    }
+    return batches;
+  }
+
+  /**
+   * Publishes the batches as requested, on the thread calling request
+   */
+  private static class Source implements Flow.Publisher<SampleBatch> {
+
+    final List<SampleBatch> batches;
+    final AtomicLong requested = new AtomicLong();
+
+    Source(List<SampleBatch> batches) {
+      this.batches = batches;
+    }
+
+    @Override public void subscribe(Flow.Subscriber<? super SampleBatch> subscriber) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        int next;
+        boolean emitting;
+        long demand;
+
+        @Override public void request(long n) {
+          requested.addAndGet(n);
+          demand += n;
+          if (emitting) {
+            return;
+          }
+          emitting = true;
+          while (demand > 0 && next < batches.size()) {
+            demand--;
+            subscriber.onNext(batches.get(next++));
+          }
+          if (next == batches.size()) {
+            next++;
+            subscriber.onComplete();
+          }
+          emitting = false;
+        }
+
+        @Override public void cancel() {
+        }
+      });
+    }
+  }
+
+  private static class Collector implements Flow.Subscriber<SampleBatch> {
+
+    final List<SampleBatch> batches = new ArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    final long request;
+    CountDownLatch expected;
+
+    Collector(long request) {
+      this.request = request;
+    }
+
+    @Override public void onSubscribe(Flow.Subscription subscription) {
+      subscription.request(request);
+    }
+
+    @Override public void onNext(SampleBatch item) {
+      synchronized (batches) {
+        batches.add(item);
+      }
+      if (expected != null) {
+        expected.countDown();
+      }
+    }
+
+    @Override public void onError(Throwable throwable) {
+      done.countDown();
+    }
+
+    @Override public void onComplete() {
+      done.countDown();
+    }
+
+    void await() throws InterruptedException {
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+  }
+}
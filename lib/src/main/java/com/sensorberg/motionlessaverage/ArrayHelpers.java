@@ -0,0 +1,24 @@
+package com.sensorberg.motionlessaverage;
+
+class ArrayHelpers {
+
+  static int countInitialized(float[] values) {
+    int count = 0;
+    for (float value : values) {
+      if (!Float.isNaN(value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  static void checkRange(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    if (off < 0 || len < 0) {
+      throw new IndexOutOfBoundsException("off and len must not be negative");
+    }
+    int end = off + len;
+    if (end < 0 || end > values.length || end > timestampsNanos.length || end > out.length) {
+      throw new IndexOutOfBoundsException("off + len must not exceed the length of values, timestampsNanos and out");
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.sensorberg.motionlessaverage;
+
+import java.io.Closeable;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link NanoClock} caching {@link System#nanoTime()}, refreshed by a daemon thread at a fixed resolution.
+ * Readings are at most about one resolution behind the system clock, more if the ticker thread isn't scheduled.
+ * After {@link #close()} the ticker stops and readings go to the system clock directly.
+ *
+ * @see NanoClock.Builder#createCoarseClock(long)
+ */
+public class CoarseNanoClock implements NanoClock, Closeable {
+
+  final long resolution;
+  private final Thread ticker;
+  private volatile long now;
+  private volatile boolean running = true;
+
+  CoarseNanoClock(long resolution) {
+    this.resolution = resolution;
+    now = System.nanoTime();
+    ticker = new Thread(new Runnable() {
+      @Override public void run() {
+        while (running) {
+          LockSupport.parkNanos(CoarseNanoClock.this.resolution);
+          now = System.nanoTime();
+        }
+      }
+    }, "motionlessaverage-clock");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+
+  @Override public long nanoTime() {
+    return running ? now : System.nanoTime();
+  }
+
+  /**
+   * Stops the ticker thread
+   */
+  @Override public void close() {
+    running = false;
+    LockSupport.unpark(ticker);
+  }
+
+  @Override public String toString() {
+    return "CoarseNanoClock{resolutionMs=" + resolution / MotionlessAverage.Builder.NANO + "}";
+  }
+}
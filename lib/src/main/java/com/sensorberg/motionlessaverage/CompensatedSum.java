@@ -0,0 +1,31 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Running sum with Neumaier's compensated summation.
+ * The rounding error of every addition is collected separately and added back when the sum is read,
+ * so long runs of additions and subtractions don't drift away from the exact sum.
+ */
+final class CompensatedSum {
+
+  private double sum;
+  private double compensation;
+
+  void add(double value) {
+    double t = sum + value;
+    if (Math.abs(sum) >= Math.abs(value)) {
+      compensation += (sum - t) + value;
+    } else {
+      compensation += (value - t) + sum;
+    }
+    sum = t;
+  }
+
+  double sum() {
+    return sum + compensation;
+  }
+
+  void reset() {
+    sum = 0;
+    compensation = 0;
+  }
+}
@@ -0,0 +1,54 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+
+/**
+ * Thread safe {@link ConstantFilter}.
+ * The value is kept as raw float bits and updated with compare-and-set, without locking.
+ */
+class ConcurrentConstantFilter implements TimestampedAverage {
+
+  private static final AtomicIntegerFieldUpdater<ConcurrentConstantFilter> VALUE =
+      AtomicIntegerFieldUpdater.newUpdater(ConcurrentConstantFilter.class, "value");
+
+  final float filter;
+  private volatile int value = Float.floatToRawIntBits(Float.NaN);
+
+  ConcurrentConstantFilter(float filter) {
+    this.filter = filter;
+  }
+
+  @Override public float average(float newValue) {
+    for (; ; ) {
+      int current = value;
+      float prevValue = Float.intBitsToFloat(current);
+      float next;
+      if (Float.isNaN(prevValue)) {
+        next = newValue;
+      } else {
+        next = calculateAverage(prevValue, newValue, filter);
+      }
+      if (VALUE.compareAndSet(this, current, Float.floatToRawIntBits(next))) {
+        return next;
+      }
+    }
+  }
+
+  @Override public float average(float newValue, long timestampNanos) {
+    return average(newValue);
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i]);
+    }
+  }
+
+  @Override public void reset() {
+    value = Float.floatToRawIntBits(Float.NaN);
+  }
+}
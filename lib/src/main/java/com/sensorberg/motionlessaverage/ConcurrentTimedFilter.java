@@ -0,0 +1,79 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+/**
+ * Thread safe {@link TimedFilter}.
+ * Value and last seen timestamp are published together as one immutable state, swapped with compare-and-set.
+ * The 64 bit timestamp and the float don't fit in a single atomic word,
+ * so every successful update allocates one small state object instead of taking a lock.
+ */
+class ConcurrentTimedFilter implements TimestampedAverage {
+
+  private static final AtomicReferenceFieldUpdater<ConcurrentTimedFilter, State> STATE =
+      AtomicReferenceFieldUpdater.newUpdater(ConcurrentTimedFilter.class, State.class, "state");
+
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
+
+  // null until the first value is averaged
+  private volatile State state;
+
+  ConcurrentTimedFilter(float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+  }
+
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  @Override public float average(float newValue, long now) {
+    for (; ; ) {
+      State current = state;
+      float value;
+      if (current == null || Float.isNaN(current.value)) {
+        value = newValue;
+      } else {
+        long diff = calculateDiff(now, current.lastSeen, minTime, maxTime);
+        float filter = calculateY(angle, constant, diff);
+        value = calculateAverage(current.value, newValue, filter);
+      }
+      if (STATE.compareAndSet(this, current, new State(value, now))) {
+        return value;
+      }
+    }
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i], timestampsNanos[i]);
+    }
+  }
+
+  @Override public void reset() {
+    state = null;
+  }
+
+  private static class State {
+    private final float value;
+    private final long lastSeen;
+
+    private State(float value, long lastSeen) {
+      this.value = value;
+      this.lastSeen = lastSeen;
+    }
+  }
+}
@@ -1,10 +1,11 @@
 package com.sensorberg.motionlessaverage;
 
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
 import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
 
-class ConstantFilter implements MotionlessAverage {
+class ConstantFilter implements TimestampedAverage {
 
-  private final float filter;
+  final float filter;
   private float value = Float.NaN;
 
   ConstantFilter(float filter) {
@@ -19,4 +20,19 @@ class ConstantFilter implements MotionlessAverage {
     }
     return value;
   }
-}
\ No newline at end of file
+
+  @Override public float average(float newValue, long timestampNanos) {
+    return average(newValue);
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i]);
+    }
+  }
+
+  @Override public void reset() {
+    value = Float.NaN;
+  }
+}
@@ -0,0 +1,53 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.countInitialized;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+
+class ConstantFilterBank extends MotionlessAverageBank {
+
+  final float filter;
+  final float[] values;
+
+  ConstantFilterBank(int size, float filter) {
+    super(size);
+    this.filter = filter;
+    this.values = new float[size];
+    Arrays.fill(values, Float.NaN);
+  }
+
+  @Override public int initializedChannels() {
+    return countInitialized(values);
+  }
+
+  @Override public float average(int channel, float newValue) {
+    float value = values[channel];
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      value = calculateAverage(value, newValue, filter);
+    }
+    values[channel] = value;
+    markChanged(channel);
+    return value;
+  }
+
+  @Override public void average(int[] channels, float[] newValues, float[] out) {
+    checkBatch(channels, newValues, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i]);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long timestampNanos) {
+    return average(channel, newValue);
+  }
+
+  @Override public void average(int[] channels, float[] newValues, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, newValues, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i]);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateVariance;
+
+class ConstantFilterStatistics implements MotionlessStatistics {
+
+  final float filter;
+  private float value = Float.NaN;
+  private float variance = Float.NaN;
+
+  ConstantFilterStatistics(float filter) {
+    this.filter = filter;
+  }
+
+  @Override public float average(float newValue) {
+    if (Float.isNaN(value)) {
+      value = newValue;
+      variance = 0;
+    } else {
+      variance = calculateVariance(variance, value, newValue, filter);
+      value = calculateAverage(value, newValue, filter);
+    }
+    return value;
+  }
+
+  @Override public float average(float newValue, long timestampNanos) {
+    return average(newValue);
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i]);
+    }
+  }
+
+  @Override public void reset() {
+    value = Float.NaN;
+    variance = Float.NaN;
+  }
+
+  @Override public float mean() {
+    return value;
+  }
+
+  @Override public float variance() {
+    return variance;
+  }
+
+  @Override public float standardDeviation() {
+    return (float) Math.sqrt(variance);
+  }
+}
@@ -0,0 +1,25 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+
+class ConstantFilterVector extends VectorAverage {
+
+  final float filter;
+
+  ConstantFilterVector(int dimensions, float filter) {
+    super(dimensions);
+    this.filter = filter;
+  }
+
+  @Override public void average(float[] values, long timestampNanos) {
+    if (initialize(values)) {
+      return;
+    }
+    float[] state = this.state;
+    for (int i = 0; i < state.length; i++) {
+      float value = calculateAverage(state[i], values[i], filter);
+      state[i] = value;
+      values[i] = value;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+
+/**
+ * {@link LongMotionlessAverageTable} that forgets keys not updated for an idle timeout,
+ * so tables of beacons that come and go stay as small as the beacons currently seen.
+ * <p>
+ * Keys are scheduled on a hierarchical timing wheel of 64 buckets per level,
+ * the first level one tick per bucket and each next level 64 times coarser.
+ * Updates only record the time, a key stays in its bucket until the wheel reaches it
+ * and is then either expired or moved to the bucket of its new deadline.
+ * Updating and scheduling take constant time, and {@link #expire(long, int)} does a bounded amount of work per call,
+ * so expiring never sweeps the whole table. Buckets are linked lists in primitive arrays sized by the keys seen,
+ * nothing is allocated per update.
+ * <p>
+ * Keys expire at the first tick at or after their last update plus the timeout, never earlier.
+ * Timestamps must come from the same clock, as for {@link TimestampedAverage}.
+ * The wrapped table must only be used through this table. Tables are not thread safe.
+ */
+public class ExpiringMotionlessAverageTable {
+
+  final LongMotionlessAverageTable table;
+  private final Listener listener;
+  private final NanoClock clock;
+  private final IdleWheel wheel;
+  private final IdleWheel.Expired expired = new IdleWheel.Expired() {
+    @Override public void expired(long key, long lastSeenNanos) {
+      float value = table.get(key);
+      table.remove(key);
+      if (listener != null) {
+        listener.onExpired(key, value, lastSeenNanos);
+      }
+    }
+  };
+
+  ExpiringMotionlessAverageTable(LongMotionlessAverageTable table, long timeout, long tick, Listener listener, NanoClock clock) {
+    this.table = table;
+    this.listener = listener;
+    this.clock = clock;
+    // sized like the table, so both grow at the same time
+    this.wheel = new IdleWheel(timeout, tick, (int) (table.keys.length * LongHashSlots.LOAD_FACTOR) - 1);
+  }
+
+  /**
+   * Averages a new value into the average of the key, timestamped now
+   *
+   * @see LongMotionlessAverageTable#average(long, float)
+   */
+  public float average(long key, float newValue) {
+    return average(key, newValue, clock.nanoTime());
+  }
+
+  /**
+   * Averages a new value into the average of the key and keeps the key alive until {@code timestampNanos} plus the timeout
+   *
+   * @see LongMotionlessAverageTable#average(long, float, long)
+   */
+  public float average(long key, float newValue, long timestampNanos) {
+    float value = table.average(key, newValue, timestampNanos);
+    wheel.touch(key, timestampNanos);
+    return value;
+  }
+
+  /**
+   * @see LongMotionlessAverageTable#average(long[], float[], long[], float[], int, int)
+   */
+  public void average(long[] keys, float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    if (off + len > keys.length) {
+      throw new IndexOutOfBoundsException("off + len must not exceed the length of keys");
+    }
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(keys[i], values[i], timestampsNanos[i]);
+    }
+  }
+
+  /**
+   * @return the current averaged value of the key, or NaN if the key is absent
+   */
+  public float get(long key) {
+    return table.get(key);
+  }
+
+  /**
+   * @return true if the key has an average
+   */
+  public boolean contains(long key) {
+    return table.contains(key);
+  }
+
+  /**
+   * @return the number of keys
+   */
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * Removes the key and its average, without notifying the listener
+   *
+   * @return true if the key was present
+   */
+  public boolean remove(long key) {
+    wheel.remove(key);
+    return table.remove(key);
+  }
+
+  /**
+   * Expires every key idle for the timeout at {@code nowNanos}
+   *
+   * @return the number of expired keys
+   */
+  public int expire(long nowNanos) {
+    return expire(nowNanos, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Moves the wheel towards {@code nowNanos}, doing at most {@code maxSteps} steps.
+   * A step is a tick of the wheel or a key taken from a bucket, expired or rescheduled.
+   * Call it regularly with a small budget to spread the work; the wheel continues where the last call stopped.
+   *
+   * @param nowNanos the current time, in nanoseconds
+   * @param maxSteps the most work to do in this call, must be greater than zero
+   * @return the number of expired keys
+   */
+  public int expire(long nowNanos, int maxSteps) {
+    if (maxSteps < 1) {
+      throw new IllegalArgumentException("maxSteps must be greater than zero");
+    }
+    return wheel.expire(nowNanos, maxSteps, expired);
+  }
+
+  /**
+   * @return the number of keys on the wheel, removed keys not yet reached included
+   */
+  int scheduled() {
+    return wheel.scheduled();
+  }
+
+  /**
+   * Receives the keys that expired, during {@link #expire(long, int)}
+   */
+  public interface Listener {
+
+    /**
+     * @param key           the expired key
+     * @param value         the last averaged value of the key
+     * @param lastSeenNanos time of the last update of the key, in nanoseconds
+     */
+    void onExpired(long key, float value, long lastSeenNanos);
+  }
+
+  public static class Builder {
+
+    private final LongMotionlessAverageTable table;
+    private final long idleTimeoutMs;
+    private long tickMs;
+    private Listener listener;
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param table         table holding the averages, must be empty
+     * @param idleTimeoutMs time after its last update a key expires, in milliseconds. Must be greater than zero
+     */
+    public Builder(LongMotionlessAverageTable table, long idleTimeoutMs) {
+      if (table == null) {
+        throw new IllegalArgumentException("table must not be null");
+      }
+      if (table.size() != 0) {
+        throw new IllegalArgumentException("table must be empty");
+      }
+      if (idleTimeoutMs <= 0) {
+        throw new IllegalArgumentException("idleTimeoutMs must be greater than zero");
+      }
+      this.table = table;
+      this.idleTimeoutMs = idleTimeoutMs;
+      this.tickMs = Math.max(1, idleTimeoutMs / IdleWheel.WHEEL_SIZE);
+    }
+
+    /**
+     * Resolution of the wheel, keys expire at most one tick late.
+     * Defaults to 1/64 of the timeout, at least a millisecond.
+     *
+     * @param tickMs in milliseconds, must be greater than zero
+     */
+    public Builder tickMs(long tickMs) {
+      if (tickMs <= 0) {
+        throw new IllegalArgumentException("tickMs must be greater than zero");
+      }
+      this.tickMs = tickMs;
+      return this;
+    }
+
+    /**
+     * Notified of every expired key with its last averaged value
+     */
+    public Builder listener(Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Clock of {@link ExpiringMotionlessAverageTable#average(long, float)}. Defaults to {@link NanoClock.Builder#systemClock()},
+     * use the clock of the wrapped table
+     */
+    public Builder clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public ExpiringMotionlessAverageTable build() {
+      return new ExpiringMotionlessAverageTable(table, idleTimeoutMs * MotionlessAverage.Builder.NANO,
+          tickMs * MotionlessAverage.Builder.NANO, listener, clock);
+    }
+  }
+}
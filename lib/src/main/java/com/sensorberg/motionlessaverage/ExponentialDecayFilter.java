@@ -0,0 +1,68 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDecay;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDecayAverage;
+
+/**
+ * Continuous time exponential moving average: the previous value decays by {@code exp(-dt / tau)}.
+ * Unlike the linear mapping of {@link TimedFilter} the result doesn't depend on how the samples are spaced,
+ * only on how old they are.
+ */
+class ExponentialDecayFilter implements TimestampedAverage {
+
+  // 1 / tau, per nanosecond
+  final float rate;
+  final NanoClock clock;
+
+  private long lastSeen = 0;
+  private float value = Float.NaN;
+
+  ExponentialDecayFilter(float rate) {
+    this(rate, SystemNanoClock.INSTANCE);
+  }
+
+  ExponentialDecayFilter(float rate, NanoClock clock) {
+    this.rate = rate;
+    this.clock = clock;
+  }
+
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  @Override public float average(float newValue, long now) {
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      float decay = calculateDecay(Math.max(now - lastSeen, 0) * rate);
+      value = calculateDecayAverage(value, newValue, decay);
+    }
+    lastSeen = now;
+    return value;
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    float value = this.value;
+    long lastSeen = this.lastSeen;
+    for (int i = off, end = off + len; i < end; i++) {
+      long now = timestampsNanos[i];
+      if (Float.isNaN(value)) {
+        value = values[i];
+      } else {
+        float decay = calculateDecay(Math.max(now - lastSeen, 0) * rate);
+        value = calculateDecayAverage(value, values[i], decay);
+      }
+      lastSeen = now;
+      out[i] = value;
+    }
+    this.value = value;
+    this.lastSeen = lastSeen;
+  }
+
+  @Override public void reset() {
+    value = Float.NaN;
+    lastSeen = 0;
+  }
+}
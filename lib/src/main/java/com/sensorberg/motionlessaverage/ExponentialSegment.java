@@ -0,0 +1,189 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDecay;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+/**
+ * Segment of the averages that move a fraction of the way to every new value:
+ * constant filter, time dependent and exponential decay averages.
+ * <p>
+ * Each value maps the previous average {@code x} to {@code keep * x + (1 - keep) * value},
+ * where {@code keep} depends on the time since the previous value. The values after the first one of the segment
+ * compose to a single linear function, kept as a factor and an offset.
+ * Averages start over after a NaN, so the function is kept twice: for a previous average that is a number,
+ * and for one that is NaN, which gives a constant.
+ * The first value is kept aside until the segment is merged after another one,
+ * since its weight depends on the timestamp of the value before it.
+ */
+class ExponentialSegment extends MotionlessAverageSegment {
+
+  private static final int BYTES = 8 + 4 + 8 + 8 + 8 + 8 + 8;
+
+  private final float filter;
+  private final float angle;
+  private final float constant;
+  private final long minTime;
+  private final long maxTime;
+  private final float rate;
+  private final NanoClock clock;
+
+  private float firstValue;
+  private long firstTimestamp;
+  private long lastTimestamp;
+  // function of the values after the first one: factor * x + offset, or nanOffset if x is NaN
+  private double factor = 1;
+  private double offset = 0;
+  private double nanOffset = Double.NaN;
+
+  ExponentialSegment(MotionlessAverageFactory factory) {
+    super(factory);
+    NanoClock clock = SystemNanoClock.INSTANCE;
+    float filter = Float.NaN;
+    float angle = Float.NaN;
+    float constant = Float.NaN;
+    long minTime = 0;
+    long maxTime = 0;
+    float rate = Float.NaN;
+    if (factory instanceof MotionlessAverageFactory.Builder.ConstantFilterFactory) {
+      filter = ((MotionlessAverageFactory.Builder.ConstantFilterFactory) factory).filter;
+    } else if (factory instanceof MotionlessAverageFactory.Builder.TimedFilterFactory) {
+      MotionlessAverageFactory.Builder.TimedFilterFactory timed = (MotionlessAverageFactory.Builder.TimedFilterFactory) factory;
+      angle = timed.angle;
+      constant = timed.constant;
+      minTime = timed.minTime;
+      maxTime = timed.maxTime;
+      clock = timed.clock;
+    } else {
+      MotionlessAverageFactory.Builder.ExponentialDecayFactory decay = (MotionlessAverageFactory.Builder.ExponentialDecayFactory) factory;
+      rate = decay.rate;
+      clock = decay.clock;
+    }
+    this.filter = filter;
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.rate = rate;
+    this.clock = clock;
+  }
+
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  /**
+   * @return the weight of the previous average, seen at {@code last}, for a value seen at {@code now}
+   */
+  private float keep(long now, long last) {
+    if (!Float.isNaN(filter)) {
+      return 1 - 1 / filter;
+    }
+    if (!Float.isNaN(angle)) {
+      return 1 - 1 / calculateY(angle, constant, calculateDiff(now, last, minTime, maxTime));
+    }
+    return calculateDecay(Math.max(now - last, 0) * rate);
+  }
+
+  @Override void add(float newValue, long timestampNanos) {
+    if (count == 0) {
+      firstValue = newValue;
+      firstTimestamp = timestampNanos;
+    } else {
+      step(newValue, keep(timestampNanos, lastTimestamp));
+    }
+    lastTimestamp = timestampNanos;
+    count++;
+  }
+
+  /**
+   * Appends one value to the function
+   */
+  private void step(float value, float keep) {
+    if (Double.isNaN(offset)) {
+      // the average was NaN, the value starts it over
+      factor = 0;
+      offset = value;
+    } else {
+      factor *= keep;
+      offset = keep * offset + (1 - keep) * (double) value;
+    }
+    nanOffset = Double.isNaN(nanOffset) ? value : keep * nanOffset + (1 - keep) * (double) value;
+  }
+
+  @Override public void reset() {
+    super.reset();
+    factor = 1;
+    offset = 0;
+    nanOffset = Double.NaN;
+  }
+
+  @Override void copy(MotionlessAverageSegment other) {
+    ExponentialSegment that = (ExponentialSegment) other;
+    count = that.count;
+    firstValue = that.firstValue;
+    firstTimestamp = that.firstTimestamp;
+    lastTimestamp = that.lastTimestamp;
+    factor = that.factor;
+    offset = that.offset;
+    nanOffset = that.nanOffset;
+  }
+
+  @Override void append(MotionlessAverageSegment next) {
+    ExponentialSegment that = (ExponentialSegment) next;
+    step(that.firstValue, keep(that.firstTimestamp, lastTimestamp));
+    // the function of the next segment applied to the result of this one
+    double nanOffset = Double.isNaN(this.nanOffset) ? that.nanOffset : that.factor * this.nanOffset + that.offset;
+    if (Double.isNaN(offset)) {
+      factor = 0;
+      offset = that.nanOffset;
+    } else {
+      offset = that.factor * offset + that.offset;
+      factor *= that.factor;
+    }
+    this.nanOffset = nanOffset;
+    lastTimestamp = that.lastTimestamp;
+  }
+
+  @Override public float value() {
+    if (count == 0) {
+      return Float.NaN;
+    }
+    return (float) (Float.isNaN(firstValue) ? nanOffset : factor * firstValue + offset);
+  }
+
+  @Override public TimestampedAverage createAverage() {
+    TimestampedAverage average = factory.create();
+    if (count > 0) {
+      // the first value of an average is taken as it is
+      average.average(value(), lastTimestamp);
+    }
+    return average;
+  }
+
+  @Override public int bytes() {
+    return BYTES;
+  }
+
+  @Override public void write(ByteBuffer out) {
+    super.write(out);
+    out.putFloat(firstValue);
+    out.putLong(firstTimestamp);
+    out.putLong(lastTimestamp);
+    out.putDouble(factor);
+    out.putDouble(offset);
+    out.putDouble(nanOffset);
+  }
+
+  @Override public void read(ByteBuffer in) {
+    super.read(in);
+    firstValue = in.getFloat();
+    firstTimestamp = in.getLong();
+    lastTimestamp = in.getLong();
+    factor = in.getDouble();
+    offset = in.getDouble();
+    nanOffset = in.getDouble();
+  }
+}
@@ -0,0 +1,9 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * A value read when the metrics are reported, see {@link MotionlessAverageMetrics#registerGauge(String, Gauge)}
+ */
+public interface Gauge {
+
+  long value();
+}
@@ -0,0 +1,228 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel of long keys, finding the keys not touched for a timeout.
+ * <p>
+ * The wheel has {@value #WHEEL_SIZE} buckets per level, the first level one tick per bucket
+ * and each next level {@value #WHEEL_SIZE} times coarser.
+ * Touching a key only records the time, a key stays in its bucket until the wheel reaches it
+ * and is then either expired or moved to the bucket of its new deadline.
+ * Buckets are linked lists in primitive arrays sized by the keys seen, nothing is allocated per touch.
+ * <p>
+ * Used by {@link ExpiringMotionlessAverageTable} and {@link LongMotionlessAverageRegistry},
+ * which remove the expired keys from their own maps. Wheels are not thread safe.
+ */
+final class IdleWheel {
+
+  static final int WHEEL_BITS = 6;
+  static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+  private static final long REMOVED = Long.MIN_VALUE;
+  private static final int NONE = -1;
+
+  final long timeout;
+  final long tick;
+  private final LongTimestampMap lastSeen;
+
+  private final int levels;
+  // each bucket is a linked list of nodes, the nodes live in parallel arrays and are reused through a free list
+  private final int[] buckets;
+  private long[] nodeKeys = new long[16];
+  private int[] nodeNext = new int[16];
+  private int freeNode = NONE;
+  private int usedNodes;
+  private int scheduled;
+
+  private boolean started;
+  private long origin;
+  // last tick processed, keys are scheduled relative to it
+  private long current;
+  // next level of the current tick to take a bucket from, -1 when the tick is done
+  private int level = -1;
+  // list of a bucket taken off the wheel, not processed yet
+  private int draining = NONE;
+
+  /**
+   * @param timeout      time after its last touch a key expires, in nanoseconds
+   * @param tick         resolution of the wheel, in nanoseconds
+   * @param expectedKeys number of keys the wheel holds without growing
+   */
+  IdleWheel(long timeout, long tick, int expectedKeys) {
+    this.timeout = timeout;
+    this.tick = tick;
+    this.lastSeen = new LongTimestampMap(expectedKeys);
+    // enough levels for the farthest deadline, one tick more than the timeout
+    long ticks = timeout / tick + 2;
+    int levels = 1;
+    while (levels * WHEEL_BITS < 62 && ticks >= 1L << (levels * WHEEL_BITS)) {
+      levels++;
+    }
+    this.levels = levels;
+    buckets = new int[levels * WHEEL_SIZE];
+    Arrays.fill(buckets, NONE);
+  }
+
+  /**
+   * Keeps the key alive until {@code timestampNanos} plus the timeout
+   */
+  void touch(long key, long timestampNanos) {
+    if (!started) {
+      started = true;
+      origin = timestampNanos;
+    }
+    // a removed key is still on the wheel, it only needs its time back
+    if (lastSeen.put(key, timestampNanos)) {
+      schedule(key, deadline(timestampNanos));
+    }
+  }
+
+  /**
+   * Forgets the key, the wheel drops it when it reaches its bucket
+   */
+  void remove(long key) {
+    int slot = lastSeen.find(key);
+    if (slot >= 0) {
+      lastSeen.timestamps[slot] = REMOVED;
+    }
+  }
+
+  /**
+   * Moves the wheel towards {@code nowNanos}, doing at most {@code maxSteps} steps.
+   * A step is a tick of the wheel or a key taken from a bucket, expired or rescheduled.
+   *
+   * @param expired receives every expired key, the wheel already forgot it
+   * @return the number of expired keys
+   */
+  int expire(long nowNanos, int maxSteps, Expired expired) {
+    if (!started) {
+      return 0;
+    }
+    long now = nowNanos - origin;
+    long nowTick = now < 0 ? -1 : now / tick;
+    int steps = 0;
+    int count = 0;
+    while (true) {
+      while (draining != NONE) {
+        if (steps == maxSteps) {
+          return count;
+        }
+        steps++;
+        int node = draining;
+        long key = nodeKeys[node];
+        draining = nodeNext[node];
+        freeNode(node);
+        if (process(key, expired)) {
+          count++;
+        }
+      }
+      if (level < 0) {
+        if (current >= nowTick || steps == maxSteps) {
+          return count;
+        }
+        steps++;
+        current++;
+        level = cascadeLevel(current);
+      }
+      // higher levels first, their keys can move down into the buckets taken next
+      int bucket = level * WHEEL_SIZE + ((int) (current >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+      level--;
+      draining = buckets[bucket];
+      buckets[bucket] = NONE;
+    }
+  }
+
+  /**
+   * @return the highest level whose buckets turn over at the tick
+   */
+  private int cascadeLevel(long tick) {
+    int level = 0;
+    while (level + 1 < levels && (tick & ((1L << ((level + 1) * WHEEL_BITS)) - 1)) == 0) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @return true if the key expired
+   */
+  private boolean process(long key, Expired expired) {
+    int slot = lastSeen.find(key);
+    if (slot < 0) {
+      return false;
+    }
+    long seen = lastSeen.timestamps[slot];
+    if (seen == REMOVED) {
+      lastSeen.removeSlot(slot);
+      return false;
+    }
+    long deadline = deadline(seen);
+    if (deadline > current) {
+      schedule(key, deadline);
+      return false;
+    }
+    lastSeen.removeSlot(slot);
+    expired.expired(key, seen);
+    return true;
+  }
+
+  /**
+   * @return the first tick at or after the idle timeout of a key seen at the given time
+   */
+  private long deadline(long seenNanos) {
+    long expiresAt = seenNanos - origin + timeout;
+    return expiresAt <= 0 ? 0 : (expiresAt - 1) / tick + 1;
+  }
+
+  private void schedule(long key, long deadline) {
+    if (deadline <= current) {
+      deadline = current + 1;
+    }
+    int level = 0;
+    if (deadline - current >= WHEEL_SIZE) {
+      level = 1;
+      // the bucket of the deadline at this level must not be the one the current tick already passed
+      while (level + 1 < levels && (deadline >>> (level * WHEEL_BITS)) - (current >>> (level * WHEEL_BITS)) >= WHEEL_SIZE) {
+        level++;
+      }
+    }
+    int bucket = level * WHEEL_SIZE + ((int) (deadline >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+    int node = freeNode;
+    if (node != NONE) {
+      freeNode = nodeNext[node];
+    } else {
+      if (usedNodes == nodeKeys.length) {
+        nodeKeys = Arrays.copyOf(nodeKeys, usedNodes * 2);
+        nodeNext = Arrays.copyOf(nodeNext, usedNodes * 2);
+      }
+      node = usedNodes++;
+    }
+    nodeKeys[node] = key;
+    nodeNext[node] = buckets[bucket];
+    buckets[bucket] = node;
+    scheduled++;
+  }
+
+  private void freeNode(int node) {
+    nodeNext[node] = freeNode;
+    freeNode = node;
+    scheduled--;
+  }
+
+  /**
+   * @return the number of keys on the wheel, removed keys not yet reached included
+   */
+  int scheduled() {
+    return scheduled;
+  }
+
+  /**
+   * Receives the keys that expired
+   */
+  interface Expired {
+
+    void expired(long key, long lastSeenNanos);
+  }
+}
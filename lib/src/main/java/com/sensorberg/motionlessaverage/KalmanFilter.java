@@ -1,5 +1,15 @@
 package com.sensorberg.motionlessaverage;
 
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanGain;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanPrediction;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanSteadyStateCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanUncertainty;
+
 /**
  * Kalman Filter
  * This {@link MotionlessAverage} implementation assumes a signal variance of zero.
@@ -13,13 +23,15 @@ package com.sensorberg.motionlessaverage;
  * Wouter Bulten: "Lightweight Javascript library for Noise filtering using Kalman filters"
  * Jenny Röbesaat, Peilin Zhang, Mohamed Abdelaal, and Oliver Theel: "An Improved BLE Indoor Localization with Kalman-Based Fusion: An Experimental Study"
  */
-public class KalmanFilter implements MotionlessAverage {
+public class KalmanFilter implements TimestampedAverage {
 
-  private final float r;
-  private final float q;
-  private final float a;
-  private final float b;
-  private final float c;
+  float r;
+  float q;
+  float a;
+  float b;
+  float c;
+  final float steadyStateTolerance;
+  private float steadyStateCov;
 
   /**
    * Estimated signal without noise
@@ -27,6 +39,12 @@ public class KalmanFilter implements MotionlessAverage {
   private float x = Float.NaN;
   private float cov = 0.0f;
 
+  /**
+   * Once the covariance converged the gain is fixed, see {@link Builder#steadyStateTolerance(float)}
+   */
+  private boolean steadyState = false;
+  private float steadyStateGain;
+
   /**
    * Constructor for a Kalman Filter.
    * It's the ration between R and Q that matters, not the actual values.
@@ -43,13 +61,20 @@ public class KalmanFilter implements MotionlessAverage {
    * @param a State vector
    * @param b Motion vector
    * @param c Measurement vector
+   * @param steadyStateTolerance relative covariance change under which the gain is fixed
    */
-  private KalmanFilter(float r, float q, float a, float b, float c) {
+  KalmanFilter(float r, float q, float a, float b, float c, float steadyStateTolerance) {
     this.r = r;
     this.q = q;
     this.a = a;
     this.b = b;
     this.c = c;
+    this.steadyStateTolerance = steadyStateTolerance;
+    this.steadyStateCov = steadyStateTolerance > 0 ? calculateKalmanSteadyStateCovariance(r, q, a, c) : Float.NaN;
+  }
+
+  KalmanFilter(float r, float q, float a, float b, float c) {
+    this(r, q, a, b, c, 0.0f);
   }
 
   /**
@@ -61,18 +86,28 @@ public class KalmanFilter implements MotionlessAverage {
    */
   public float filter(float signal, float u) {
     if (Float.isNaN(x)) {
-      this.x = (1 / c) * signal;
-      cov = square(1 / c) * q;
+      this.x = calculateKalmanInitialEstimate(signal, c);
+      cov = calculateKalmanInitialCovariance(c, q);
+    } else if (steadyState) {
+      float prediction = calculateKalmanPrediction(x, u, a, b);
+      this.x = calculateKalmanEstimate(prediction, steadyStateGain, signal, c);
     } else {
-      float prediction = predict(x, u);
-      float uncertainty = uncertainty();
+      float prediction = calculateKalmanPrediction(x, u, a, b);
+      float uncertainty = calculateKalmanUncertainty(cov, a, r);
 
       // kalman gain
-      float kalmanGain = uncertainty * c * (1 / ((square(c) * uncertainty) + q));
+      float kalmanGain = calculateKalmanGain(uncertainty, c, q);
 
       // correction
-      this.x = prediction + kalmanGain * (signal - (c * prediction));
-      cov = uncertainty - (kalmanGain * c * uncertainty);
+      this.x = calculateKalmanEstimate(prediction, kalmanGain, signal, c);
+      float newCov = calculateKalmanCovariance(uncertainty, kalmanGain, c);
+
+      // the covariance doesn't depend on the signal, once it stops changing so does the gain
+      if (newCov == cov || Math.abs(newCov - steadyStateCov) <= steadyStateTolerance * steadyStateCov) {
+        steadyState = true;
+        steadyStateGain = calculateKalmanGain(calculateKalmanUncertainty(newCov, a, r), c, q);
+      }
+      cov = newCov;
     }
 
     return x;
@@ -90,17 +125,89 @@ public class KalmanFilter implements MotionlessAverage {
     return filter(newValue, 0.0f);
   }
 
-  // private helpers
-  private float square(float x) {
-    return (float) Math.sqrt(x);
+  /**
+   * Same as {@link #average(float)}, the Kalman filter doesn't depend on time.
+   */
+  @Override
+  public float average(float newValue, long timestampNanos) {
+    return filter(newValue, 0.0f);
+  }
+
+  @Override
+  public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = filter(values[i], 0.0f);
+    }
+  }
+
+  /**
+   * Forgets the estimate, the next signal initializes the filter again
+   */
+  @Override
+  public void reset() {
+    x = Float.NaN;
+    cov = 0.0f;
+    steadyState = false;
+  }
+
+  /**
+   * Changes the parameters in place, without allocating a new filter.
+   * The estimate is kept and the covariance continues with the new parameters, call {@link #reset()} to start over.
+   * The parameters are the ones of {@link Builder}, the steady state tolerance is kept.
+   *
+   * @param r process noise
+   * @param q measurement noise
+   * @param a state vector
+   * @param b motion vector
+   * @param c measurement vector
+   */
+  public void reconfigure(float r, float q, float a, float b, float c) {
+    checkValid(r, "r must be a valid float");
+    checkValid(q, "q must be a valid float");
+    checkValid(a, "State vector must be a valid float");
+    checkValid(b, "Motion vector must be a valid float");
+    checkValid(c, "Measurement vector must be a valid float");
+    // the steady state only depends on r, q, a and c, keep it if they didn't change
+    if (steadyStateTolerance > 0 && (r != this.r || q != this.q || a != this.a || c != this.c)) {
+      steadyStateCov = calculateKalmanSteadyStateCovariance(r, q, a, c);
+    }
+    this.r = r;
+    this.q = q;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    steadyState = false;
+  }
+
+  /**
+   * Validation shared by {@link Builder} and {@link #reconfigure(float, float, float, float, float)}
+   */
+  static void checkValid(float value, String message) {
+    if (Float.isNaN(value)) {
+      throw new IllegalArgumentException(message);
+    }
+  }
+
+  boolean isSteadyState() {
+    return steadyState;
+  }
+
+  float estimate() {
+    return x;
   }
 
-  private float predict(float x, float u) {
-    return (a * x) + (b * u);
+  float covariance() {
+    return cov;
   }
 
-  private float uncertainty() {
-    return (square(a) * cov) + r;
+  /**
+   * Continues from the given state, the steady state gain is found again if enabled
+   */
+  void restore(float x, float cov) {
+    this.x = x;
+    this.cov = cov;
+    steadyState = false;
   }
 
   /**
@@ -114,6 +221,7 @@ public class KalmanFilter implements MotionlessAverage {
     private float a = 1.0f;
     private float b = 0.0f;
     private float c = 1.0f;
+    private float steadyStateTolerance = 0.0f;
 
     /**
      * Constructor for the Kalman filter with the required parameters
@@ -128,42 +236,58 @@ public class KalmanFilter implements MotionlessAverage {
      *          Usually you make an estimate of R and Q based on measurements or domain knowledge.
      */
     public Builder(float r, float q) {
-      if (Float.isNaN(r)) {
-        throw new IllegalArgumentException("r must be a valid float");
-      }
-      if (Float.isNaN(q)) {
-        throw new IllegalArgumentException("q must be a valid float");
-      }
+      checkValid(r, "r must be a valid float");
+      checkValid(q, "q must be a valid float");
       this.r = r;
       this.q = q;
     }
 
     public Builder stateVector(float a) {
-      if (Float.isNaN(a)) {
-        throw new IllegalArgumentException("State vector must be a valid float");
-      }
+      checkValid(a, "State vector must be a valid float");
       this.a = a;
       return this;
     }
 
     public Builder motionVector(float b) {
-      if (Float.isNaN(b)) {
-        throw new IllegalArgumentException("Motion vector must be a valid float");
-      }
+      checkValid(b, "Motion vector must be a valid float");
       this.b = b;
       return this;
     }
 
     public Builder measurementVector(float c) {
-      if (Float.isNaN(c)) {
-        throw new IllegalArgumentException("Measurement vector must be a valid float");
-      }
+      checkValid(c, "Measurement vector must be a valid float");
       this.c = c;
       return this;
     }
 
+    /**
+     * Enables the steady state fast path.
+     * With constant parameters the covariance converges after a handful of samples, and with it the Kalman gain.
+     * The covariance it converges to is solved in closed form when the filter is created.
+     * Without process noise ({@code r} of zero) the covariance never settles, and the gain is never fixed.
+     * Once the covariance is within {@code tolerance} (relative) of it,
+     * the gain is fixed and every following update skips the covariance and gain calculations.
+     * <p>
+     * The fixed gain is then within {@code tolerance} (relative) of the exact gain.
+     * With the default state and measurement vectors every filtered value stays within
+     * {@code tolerance} times the largest innovation ({@code |signal - prediction|}) of the full update.
+     * <p>
+     * Defaults to zero: the gain is only fixed once the covariance stops changing at float precision,
+     * which gives exactly the results of the full update.
+     * Only applies to {@link KalmanFilter} instances and vectors, banks and tables always run the full update.
+     *
+     * @param tolerance relative covariance change under which the gain is fixed
+     */
+    public Builder steadyStateTolerance(float tolerance) {
+      if (Float.isNaN(tolerance) || tolerance < 0) {
+        throw new IllegalArgumentException("Steady state tolerance must be a valid float greater or equal to zero");
+      }
+      this.steadyStateTolerance = tolerance;
+      return this;
+    }
+
     public KalmanFilter build() {
-      return new KalmanFilter(r, q, a, b, c);
+      return new KalmanFilter(r, q, a, b, c, steadyStateTolerance);
     }
   }
 }
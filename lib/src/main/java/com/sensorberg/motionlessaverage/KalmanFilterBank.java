@@ -0,0 +1,94 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.countInitialized;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanGain;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanPrediction;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanUncertainty;
+
+/**
+ * Bank of {@link KalmanFilter}s sharing the same configuration.
+ * The estimate and covariance of every channel are kept in two primitive arrays.
+ *
+ * @see MotionlessAverageBank.Builder#createKalmanFilterBank(int, KalmanFilter.Builder)
+ */
+public class KalmanFilterBank extends MotionlessAverageBank {
+
+  final float r;
+  final float q;
+  final float a;
+  final float b;
+  final float c;
+
+  final float[] x;
+  final float[] cov;
+
+  KalmanFilterBank(int size, float r, float q, float a, float b, float c) {
+    super(size);
+    this.r = r;
+    this.q = q;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.x = new float[size];
+    this.cov = new float[size];
+    Arrays.fill(x, Float.NaN);
+  }
+
+  /**
+   * Complete Kalman filtering of one channel with measured signal and expected variance
+   *
+   * @param channel index of the channel, from zero to {@link #size()} - 1
+   * @param signal  the measured signal
+   * @param u       the expected variance
+   * @return the filtered value
+   * @see KalmanFilter#filter(float, float)
+   */
+  public float filter(int channel, float signal, float u) {
+    float estimate = x[channel];
+    if (Float.isNaN(estimate)) {
+      estimate = calculateKalmanInitialEstimate(signal, c);
+      cov[channel] = calculateKalmanInitialCovariance(c, q);
+    } else {
+      float prediction = calculateKalmanPrediction(estimate, u, a, b);
+      float uncertainty = calculateKalmanUncertainty(cov[channel], a, r);
+      float kalmanGain = calculateKalmanGain(uncertainty, c, q);
+      estimate = calculateKalmanEstimate(prediction, kalmanGain, signal, c);
+      cov[channel] = calculateKalmanCovariance(uncertainty, kalmanGain, c);
+    }
+    x[channel] = estimate;
+    markChanged(channel);
+    return estimate;
+  }
+
+  @Override public int initializedChannels() {
+    return countInitialized(x);
+  }
+
+  @Override public float average(int channel, float newValue) {
+    return filter(channel, newValue, 0.0f);
+  }
+
+  @Override public void average(int[] channels, float[] values, float[] out) {
+    checkBatch(channels, values, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = filter(channels[i], values[i], 0.0f);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long timestampNanos) {
+    return filter(channel, newValue, 0.0f);
+  }
+
+  @Override public void average(int[] channels, float[] values, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, values, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = filter(channels[i], values[i], 0.0f);
+    }
+  }
+}
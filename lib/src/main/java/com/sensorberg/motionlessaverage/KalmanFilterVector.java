@@ -0,0 +1,94 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanGain;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanPrediction;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanSteadyStateCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanUncertainty;
+
+/**
+ * {@link KalmanFilter} for every component of a vector.
+ * All components share the covariance, which doesn't depend on the signal.
+ *
+ * @see MotionlessVectorAverage.Builder#createKalmanFilter(int, KalmanFilter.Builder)
+ */
+public class KalmanFilterVector extends VectorAverage {
+
+  final float r;
+  final float q;
+  final float a;
+  final float b;
+  final float c;
+  final float steadyStateTolerance;
+  private final float steadyStateCov;
+
+  private float cov;
+
+  /**
+   * Once the covariance converged the gain is fixed, see {@link KalmanFilter.Builder#steadyStateTolerance(float)}
+   */
+  private boolean steadyState = false;
+  private float steadyStateGain;
+
+  KalmanFilterVector(int dimensions, float r, float q, float a, float b, float c, float steadyStateTolerance) {
+    super(dimensions);
+    this.r = r;
+    this.q = q;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.steadyStateTolerance = steadyStateTolerance;
+    this.steadyStateCov = steadyStateTolerance > 0 ? calculateKalmanSteadyStateCovariance(r, q, a, c) : Float.NaN;
+  }
+
+  @Override public void average(float[] values, long timestampNanos) {
+    filter(values, 0.0f);
+  }
+
+  /**
+   * Complete Kalman filtering of every component with measured signals and expected variance
+   *
+   * @param signals the measured signals, one per dimension. Replaced by the filtered values
+   * @param u       the expected variance
+   * @see KalmanFilter#filter(float, float)
+   */
+  public void filter(float[] signals, float u) {
+    float[] x = this.state;
+    if (signals.length != x.length) {
+      throw new IllegalArgumentException("expected " + x.length + " values, got " + signals.length);
+    }
+    if (Float.isNaN(x[0])) {
+      for (int i = 0; i < x.length; i++) {
+        float estimate = calculateKalmanInitialEstimate(signals[i], c);
+        x[i] = estimate;
+        signals[i] = estimate;
+      }
+      cov = calculateKalmanInitialCovariance(c, q);
+    } else if (steadyState) {
+      for (int i = 0; i < x.length; i++) {
+        float prediction = calculateKalmanPrediction(x[i], u, a, b);
+        float estimate = calculateKalmanEstimate(prediction, steadyStateGain, signals[i], c);
+        x[i] = estimate;
+        signals[i] = estimate;
+      }
+    } else {
+      float uncertainty = calculateKalmanUncertainty(cov, a, r);
+      float kalmanGain = calculateKalmanGain(uncertainty, c, q);
+      for (int i = 0; i < x.length; i++) {
+        float prediction = calculateKalmanPrediction(x[i], u, a, b);
+        float estimate = calculateKalmanEstimate(prediction, kalmanGain, signals[i], c);
+        x[i] = estimate;
+        signals[i] = estimate;
+      }
+      float newCov = calculateKalmanCovariance(uncertainty, kalmanGain, c);
+      if (newCov == cov || Math.abs(newCov - steadyStateCov) <= steadyStateTolerance * steadyStateCov) {
+        steadyState = true;
+        steadyStateGain = calculateKalmanGain(calculateKalmanUncertainty(newCov, a, r), c, q);
+      }
+      cov = newCov;
+    }
+  }
+}
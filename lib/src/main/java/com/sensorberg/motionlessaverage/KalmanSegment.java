@@ -0,0 +1,100 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Segment of a Kalman filter, kept as the estimate and covariance of a filter that only saw the segment.
+ * <p>
+ * Merging fuses both estimates in information form: the inverse covariances add up,
+ * and so do the estimates weighted by their inverse covariance.
+ * A segment that starts over after a NaN doesn't depend on what came before it, it replaces the previous one.
+ */
+class KalmanSegment extends MotionlessAverageSegment {
+
+  private static final int BYTES = 8 + 4 + 4 + 4;
+
+  private final KalmanFilter filter;
+  // the filter started over after a NaN, the segment doesn't depend on the ones before it
+  private boolean reset;
+
+  KalmanSegment(MotionlessAverageFactory.Builder.KalmanFilterFactory factory) {
+    super(factory);
+    filter = (KalmanFilter) factory.create();
+  }
+
+  @Override void add(float newValue, long timestampNanos) {
+    if (count > 0 && Float.isNaN(filter.estimate())) {
+      reset = true;
+    }
+    filter.average(newValue);
+    count++;
+  }
+
+  @Override public void reset() {
+    super.reset();
+    filter.reset();
+    reset = false;
+  }
+
+  @Override void copy(MotionlessAverageSegment other) {
+    KalmanSegment that = (KalmanSegment) other;
+    count = that.count;
+    reset = that.reset;
+    filter.restore(that.filter.estimate(), that.filter.covariance());
+  }
+
+  @Override void append(MotionlessAverageSegment next) {
+    KalmanSegment that = (KalmanSegment) next;
+    float x = filter.estimate();
+    float nextX = that.filter.estimate();
+    if (that.reset || Float.isNaN(x) || Float.isNaN(nextX)) {
+      // the next segment started over or ends with a NaN, either way its state is the result
+      reset = true;
+      filter.restore(nextX, that.filter.covariance());
+      return;
+    }
+    double cov = filter.covariance();
+    double nextCov = that.filter.covariance();
+    if (nextCov == 0 || cov == 0) {
+      // an exact estimate outweighs any other, the latest one wins
+      if (nextCov == 0) {
+        filter.restore(nextX, 0);
+      }
+      return;
+    }
+    double information = 1 / cov + 1 / nextCov;
+    double estimate = (x / cov + nextX / nextCov) / information;
+    filter.restore((float) estimate, (float) (1 / information));
+  }
+
+  @Override public float value() {
+    return count == 0 ? Float.NaN : filter.estimate();
+  }
+
+  @Override public TimestampedAverage createAverage() {
+    KalmanFilter average = (KalmanFilter) factory.create();
+    if (count > 0) {
+      average.restore(filter.estimate(), filter.covariance());
+    }
+    return average;
+  }
+
+  @Override public int bytes() {
+    return BYTES;
+  }
+
+  @Override public void write(ByteBuffer out) {
+    super.write(out);
+    out.putFloat(filter.estimate());
+    out.putFloat(filter.covariance());
+    out.putInt(reset ? 1 : 0);
+  }
+
+  @Override public void read(ByteBuffer in) {
+    super.read(in);
+    float x = in.getFloat();
+    float cov = in.getFloat();
+    reset = in.getInt() != 0;
+    filter.restore(x, cov);
+  }
+}
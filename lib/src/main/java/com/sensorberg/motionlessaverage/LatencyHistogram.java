@@ -0,0 +1,41 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, with power of two buckets: bucket {@code i} counts durations below {@code 2^i}
+ */
+final class LatencyHistogram {
+
+  static final int BUCKETS = 64;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(long nanos) {
+    int bucket = nanos <= 0 ? 0 : Math.min(BUCKETS - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+    counts.incrementAndGet(bucket);
+  }
+
+  long[] upperBounds() {
+    long[] bounds = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS - 1; i++) {
+      bounds[i] = 1L << i;
+    }
+    bounds[BUCKETS - 1] = Long.MAX_VALUE;
+    return bounds;
+  }
+
+  long[] counts() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Primitive long keyed map of averages, no boxing and no entry objects.
+ * Keeps the last averaged value of each key next to its average.
+ */
+class LongAverageMap extends LongHashSlots {
+
+  TimestampedAverage[] averages;
+  float[] values;
+
+  LongAverageMap(int expectedSize) {
+    super(expectedSize);
+    averages = new TimestampedAverage[keys.length];
+    values = new float[keys.length];
+  }
+
+  TimestampedAverage get(long key) {
+    int slot = find(key);
+    return slot >= 0 ? averages[slot] : null;
+  }
+
+  void put(long key, TimestampedAverage average) {
+    int slot = find(key);
+    if (slot < 0) {
+      slot = insert(-slot - 1, key);
+    }
+    averages[slot] = average;
+  }
+
+  @Override void moveState(int from, int to) {
+    averages[to] = averages[from];
+    values[to] = values[from];
+  }
+
+  @Override void clearState(int slot) {
+    averages[slot] = null;
+    values[slot] = 0;
+  }
+
+  @Override void resizeState(int newCapacity, int[] newSlots) {
+    TimestampedAverage[] old = averages;
+    float[] oldValues = values;
+    averages = new TimestampedAverage[newCapacity];
+    values = new float[newCapacity];
+    for (int i = 0; i < newSlots.length; i++) {
+      if (newSlots[i] >= 0) {
+        averages[newSlots[i]] = old[i];
+        values[newSlots[i]] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+
+class LongConstantFilterTable extends LongMotionlessAverageTable {
+
+  final float filter;
+  float[] values;
+
+  LongConstantFilterTable(int expectedSize, float filter) {
+    super(expectedSize);
+    this.filter = filter;
+    this.values = new float[keys.length];
+  }
+
+  @Override public float average(long key, float newValue) {
+    int slot = slot(key);
+    float value = values[slot];
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      value = calculateAverage(value, newValue, filter);
+    }
+    values[slot] = value;
+    return value;
+  }
+
+  @Override public float average(long key, float newValue, long timestampNanos) {
+    return average(key, newValue);
+  }
+
+  @Override float value(int slot) {
+    return values[slot];
+  }
+
+  @Override void moveState(int from, int to) {
+    values[to] = values[from];
+  }
+
+  @Override void clearState(int slot) {
+    values[slot] = Float.NaN;
+  }
+
+  @Override void resizeState(int newCapacity, int[] newSlots) {
+    float[] oldValues = values;
+    values = new float[newCapacity];
+    for (int i = 0; i < newSlots.length; i++) {
+      if (newSlots[i] >= 0) {
+        values[newSlots[i]] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing slots for primitive long keys, with linear probing.
+ * Subclasses keep the state of each key in their own arrays, at the same slot index as the key.
+ * Deletion shifts the following entries back instead of leaving tombstones,
+ * so lookups never slow down with churn.
+ */
+abstract class LongHashSlots {
+
+  static final float LOAD_FACTOR = 0.75f;
+  static final int MAX_CAPACITY = 1 << 30;
+
+  long[] keys;
+  boolean[] used;
+  int mask;
+  int size;
+  private int resizeAt;
+
+  LongHashSlots(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("expectedSize must not be negative");
+    }
+    int capacity = capacityFor(expectedSize);
+    keys = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    resizeAt = (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Called when the entry at {@code from} is shifted back into {@code to} by a deletion
+   */
+  abstract void moveState(int from, int to);
+
+  /**
+   * Called when the entry at {@code slot} is removed
+   */
+  abstract void clearState(int slot);
+
+  /**
+   * Called when the slots grow, the state at the old slot {@code i} must move to {@code newSlots[i]}.
+   * Free old slots are marked with -1.
+   */
+  abstract void resizeState(int newCapacity, int[] newSlots);
+
+  /**
+   * @return the number of keys
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if there's state for the given key
+   */
+  public boolean contains(long key) {
+    return find(key) >= 0;
+  }
+
+  /**
+   * Removes the key and its state
+   *
+   * @return true if the key was present
+   */
+  public boolean remove(long key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return false;
+    }
+    removeSlot(slot);
+    return true;
+  }
+
+  /**
+   * Removes all keys, keeping the allocated capacity
+   */
+  public void clear() {
+    for (int i = 0; i < used.length; i++) {
+      if (used[i]) {
+        clearState(i);
+      }
+    }
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  /**
+   * @return the slot of the key, or {@code -(insertion slot) - 1} if it's absent
+   */
+  final int find(long key) {
+    int slot = (int) mix(key) & mask;
+    while (used[slot]) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  /**
+   * Inserts the key at the insertion slot returned by {@link #find(long)}
+   *
+   * @return the slot of the key, which moves if the slots have to grow
+   */
+  final int insert(int slot, long key) {
+    keys[slot] = key;
+    used[slot] = true;
+    if (++size > resizeAt) {
+      resize();
+      return find(key);
+    }
+    return slot;
+  }
+
+  final void removeSlot(int slot) {
+    int hole = slot;
+    int i = slot;
+    for (; ; ) {
+      i = (i + 1) & mask;
+      if (!used[i]) {
+        break;
+      }
+      int home = (int) mix(keys[i]) & mask;
+      // the entry can fill the hole if the hole lies between its home slot and its current slot
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        keys[hole] = keys[i];
+        moveState(i, hole);
+        hole = i;
+      }
+    }
+    used[hole] = false;
+    clearState(hole);
+    size--;
+  }
+
+  private void resize() {
+    if (keys.length == MAX_CAPACITY) {
+      throw new IllegalStateException("Maximum capacity reached");
+    }
+    int capacity = keys.length << 1;
+    long[] oldKeys = keys;
+    boolean[] oldUsed = used;
+    int[] newSlots = new int[oldKeys.length];
+    keys = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    resizeAt = (int) (capacity * LOAD_FACTOR);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int slot = -find(oldKeys[i]) - 1;
+        keys[slot] = oldKeys[i];
+        used[slot] = true;
+        newSlots[i] = slot;
+      } else {
+        newSlots[i] = -1;
+      }
+    }
+    resizeState(capacity, newSlots);
+  }
+
+  /**
+   * Drops every key and reallocates the slots with exactly the given capacity, a power of two
+   */
+  final void reset(int capacity) {
+    if (capacity < 2 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two");
+    }
+    keys = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+    resizeAt = (int) (capacity * LOAD_FACTOR);
+    size = 0;
+    resizeState(capacity, new int[0]);
+  }
+
+  static int capacityFor(int expectedSize) {
+    long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) LOAD_FACTOR) + 1;
+    if (needed > MAX_CAPACITY) {
+      throw new IllegalArgumentException("expectedSize is too large");
+    }
+    int capacity = 2;
+    while (capacity < needed) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Finalizer of MurmurHash3, spreads sequential ids (MAC addresses, major/minor) over all bits
+   */
+  static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
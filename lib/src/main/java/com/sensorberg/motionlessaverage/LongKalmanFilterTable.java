@@ -0,0 +1,101 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanGain;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanPrediction;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanUncertainty;
+
+/**
+ * Table of {@link KalmanFilter}s sharing the same configuration, keyed by primitive longs.
+ * The estimate and covariance of every key are stored inline.
+ *
+ * @see LongMotionlessAverageTable.Builder#createKalmanFilterTable(int, KalmanFilter.Builder)
+ */
+public class LongKalmanFilterTable extends LongMotionlessAverageTable {
+
+  final float r;
+  final float q;
+  final float a;
+  final float b;
+  final float c;
+
+  float[] x;
+  float[] cov;
+
+  LongKalmanFilterTable(int expectedSize, float r, float q, float a, float b, float c) {
+    super(expectedSize);
+    this.r = r;
+    this.q = q;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.x = new float[keys.length];
+    this.cov = new float[keys.length];
+  }
+
+  /**
+   * Complete Kalman filtering of one key with measured signal and expected variance,
+   * starting a new filter if the key is absent
+   *
+   * @param key    the key
+   * @param signal the measured signal
+   * @param u      the expected variance
+   * @return the filtered value
+   * @see KalmanFilter#filter(float, float)
+   */
+  public float filter(long key, float signal, float u) {
+    int slot = slot(key);
+    float estimate = x[slot];
+    if (Float.isNaN(estimate)) {
+      estimate = calculateKalmanInitialEstimate(signal, c);
+      cov[slot] = calculateKalmanInitialCovariance(c, q);
+    } else {
+      float prediction = calculateKalmanPrediction(estimate, u, a, b);
+      float uncertainty = calculateKalmanUncertainty(cov[slot], a, r);
+      float kalmanGain = calculateKalmanGain(uncertainty, c, q);
+      estimate = calculateKalmanEstimate(prediction, kalmanGain, signal, c);
+      cov[slot] = calculateKalmanCovariance(uncertainty, kalmanGain, c);
+    }
+    x[slot] = estimate;
+    return estimate;
+  }
+
+  @Override public float average(long key, float newValue) {
+    return filter(key, newValue, 0.0f);
+  }
+
+  @Override public float average(long key, float newValue, long timestampNanos) {
+    return filter(key, newValue, 0.0f);
+  }
+
+  @Override float value(int slot) {
+    return x[slot];
+  }
+
+  @Override void moveState(int from, int to) {
+    x[to] = x[from];
+    cov[to] = cov[from];
+  }
+
+  @Override void clearState(int slot) {
+    x[slot] = Float.NaN;
+    cov[slot] = 0.0f;
+  }
+
+  @Override void resizeState(int newCapacity, int[] newSlots) {
+    float[] oldX = x;
+    float[] oldCov = cov;
+    x = new float[newCapacity];
+    cov = new float[newCapacity];
+    for (int i = 0; i < newSlots.length; i++) {
+      int slot = newSlots[i];
+      if (slot >= 0) {
+        x[slot] = oldX[i];
+        cov[slot] = oldCov[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.LongHashSlots.mix;
+import static com.sensorberg.motionlessaverage.MotionlessAverageRegistry.defaultStripes;
+import static com.sensorberg.motionlessaverage.MotionlessAverageRegistry.stripeBits;
+
+/**
+ * {@link MotionlessAverageRegistry} specialized for primitive long keys,
+ * for example beacon identities (UUID/major/minor hashed down) or MAC addresses.
+ * Keys are never boxed and there are no per entry objects besides the averages themselves.
+ * With a {@link MotionlessAveragePool} the averages of removed keys are reused for new keys,
+ * so keys coming and going don't allocate either.
+ * <p>
+ * Registries built with {@link Builder#idleTimeoutMs(long)} forget keys not updated for the timeout.
+ * Each stripe schedules its keys on its own timing wheel, like {@link ExpiringMotionlessAverageTable},
+ * and {@link #expire(long, int)} advances the wheels one stripe at a time, with a bounded amount of work per stripe.
+ */
+public class LongMotionlessAverageRegistry {
+
+  private static final int EXPECTED_KEYS_PER_STRIPE = 16;
+
+  private final MotionlessAverageFactory factory;
+  private final MotionlessAveragePool pool;
+  private final ExpiringMotionlessAverageTable.Listener listener;
+  private final NanoClock clock;
+  private final Stripe[] stripes;
+  private final int mask;
+
+  /**
+   * @param factory creates the average of each new key
+   */
+  public LongMotionlessAverageRegistry(MotionlessAverageFactory factory) {
+    this(factory, defaultStripes());
+  }
+
+  /**
+   * @param factory creates the average of each new key
+   * @param stripes number of lock stripes, rounded up to a power of two
+   */
+  public LongMotionlessAverageRegistry(MotionlessAverageFactory factory, int stripes) {
+    this(factory, stripes, null);
+  }
+
+  /**
+   * @param factory creates the average of each new key
+   * @param stripes number of lock stripes, rounded up to a power of two
+   * @param pool    takes the averages of new keys and gets back the averages of removed keys, null for none
+   */
+  public LongMotionlessAverageRegistry(MotionlessAverageFactory factory, int stripes, MotionlessAveragePool pool) {
+    this(factory, stripes, pool, 0, 0, null, SystemNanoClock.INSTANCE);
+  }
+
+  private LongMotionlessAverageRegistry(MotionlessAverageFactory factory, int stripes, MotionlessAveragePool pool,
+                                        long timeout, long tick, ExpiringMotionlessAverageTable.Listener listener, NanoClock clock) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory must not be null");
+    }
+    int bits = stripeBits(stripes);
+    this.factory = factory;
+    this.pool = pool;
+    this.listener = listener;
+    this.clock = clock;
+    this.stripes = new Stripe[1 << bits];
+    this.mask = (1 << bits) - 1;
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new Stripe(timeout > 0 ? new IdleWheel(timeout, tick, EXPECTED_KEYS_PER_STRIPE) : null);
+    }
+  }
+
+  /**
+   * Averages a new value into the average of the key, creating it if needed.
+   * With an idle timeout the key is kept alive from the time of the registry's clock.
+   *
+   * @return the averaged value
+   * @see MotionlessAverage#average(float)
+   */
+  public float average(long key, float newValue) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      int slot = slot(stripe, key);
+      if (stripe.wheel == null) {
+        return stripe.averages[slot].average(newValue);
+      }
+      long now = clock.nanoTime();
+      float value = stripe.averages[slot].average(newValue, now);
+      stripe.values[slot] = value;
+      stripe.wheel.touch(key, now);
+      return value;
+    }
+  }
+
+  /**
+   * Averages a new value, measured at the given time, into the average of the key, creating it if needed.
+   * With an idle timeout the key is kept alive until {@code timestampNanos} plus the timeout.
+   *
+   * @return the averaged value
+   * @see TimestampedAverage#average(float, long)
+   */
+  public float average(long key, float newValue, long timestampNanos) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      int slot = slot(stripe, key);
+      float value = stripe.averages[slot].average(newValue, timestampNanos);
+      if (stripe.wheel != null) {
+        stripe.values[slot] = value;
+        stripe.wheel.touch(key, timestampNanos);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * @return true if the key has an average
+   */
+  public boolean contains(long key) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      return stripe.contains(key);
+    }
+  }
+
+  /**
+   * Removes the average of the key, a later update starts a new average.
+   * The average goes back to the pool, if any. The listener is not notified.
+   *
+   * @return true if the key had an average
+   */
+  public boolean remove(long key) {
+    Stripe stripe = stripe(key);
+    synchronized (stripe) {
+      int slot = stripe.find(key);
+      if (slot < 0) {
+        return false;
+      }
+      if (stripe.wheel != null) {
+        stripe.wheel.remove(key);
+      }
+      release(stripe, slot);
+      return true;
+    }
+  }
+
+  /**
+   * Expires every key idle for the timeout at {@code nowNanos}
+   *
+   * @return the number of expired keys, always zero without an idle timeout
+   */
+  public int expire(long nowNanos) {
+    return expire(nowNanos, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Moves the wheel of every stripe towards {@code nowNanos}, doing at most {@code maxSteps} steps per stripe,
+   * see {@link ExpiringMotionlessAverageTable#expire(long, int)}.
+   * Stripes are locked one at a time, updates of the other stripes go on meanwhile.
+   * Expired averages go back to the pool, if any, after the listener was notified.
+   *
+   * @param nowNanos the current time, in nanoseconds
+   * @param maxSteps the most work to do per stripe in this call, must be greater than zero
+   * @return the number of expired keys, always zero without an idle timeout
+   */
+  public int expire(long nowNanos, int maxSteps) {
+    if (maxSteps < 1) {
+      throw new IllegalArgumentException("maxSteps must be greater than zero");
+    }
+    int expired = 0;
+    for (Stripe stripe : stripes) {
+      if (stripe.wheel != null) {
+        synchronized (stripe) {
+          expired += stripe.wheel.expire(nowNanos, maxSteps, stripe);
+        }
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return the number of keys, not atomic with concurrent updates
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Removes all averages, not atomic with concurrent updates
+   */
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        for (int slot = 0; slot < stripe.averages.length; slot++) {
+          if (stripe.used[slot]) {
+            if (pool != null) {
+              pool.release(factory, stripe.averages[slot]);
+            }
+            if (stripe.wheel != null) {
+              stripe.wheel.remove(stripe.keys[slot]);
+            }
+          }
+        }
+        stripe.clear();
+      }
+    }
+  }
+
+  private int slot(Stripe stripe, long key) {
+    int slot = stripe.find(key);
+    if (slot < 0) {
+      slot = stripe.insert(-slot - 1, key);
+      stripe.averages[slot] = pool != null ? pool.acquire(factory) : factory.create();
+    }
+    return slot;
+  }
+
+  private void release(Stripe stripe, int slot) {
+    if (pool != null) {
+      pool.release(factory, stripe.averages[slot]);
+    }
+    stripe.removeSlot(slot);
+  }
+
+  private Stripe stripe(long key) {
+    // high half of the mixed key selects the stripe, the slots inside use the low half
+    return stripes[(int) (mix(key) >>> 32) & mask];
+  }
+
+  private final class Stripe extends LongAverageMap implements IdleWheel.Expired {
+
+    // null without an idle timeout
+    final IdleWheel wheel;
+
+    Stripe(IdleWheel wheel) {
+      super(EXPECTED_KEYS_PER_STRIPE);
+      this.wheel = wheel;
+    }
+
+    @Override public void expired(long key, long lastSeenNanos) {
+      int slot = find(key);
+      if (listener != null) {
+        listener.onExpired(key, values[slot], lastSeenNanos);
+      }
+      release(this, slot);
+    }
+  }
+
+  public static class Builder {
+
+    private final MotionlessAverageFactory factory;
+    private int stripes = defaultStripes();
+    private MotionlessAveragePool pool;
+    private long idleTimeoutMs;
+    private long tickMs;
+    private ExpiringMotionlessAverageTable.Listener listener;
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param factory creates the average of each new key
+     */
+    public Builder(MotionlessAverageFactory factory) {
+      if (factory == null) {
+        throw new IllegalArgumentException("factory must not be null");
+      }
+      this.factory = factory;
+    }
+
+    /**
+     * Number of lock stripes, rounded up to a power of two. Defaults to four per available processor.
+     */
+    public Builder stripes(int stripes) {
+      stripeBits(stripes);
+      this.stripes = stripes;
+      return this;
+    }
+
+    /**
+     * Takes the averages of new keys and gets back the averages of removed and expired keys. Defaults to none.
+     */
+    public Builder pool(MotionlessAveragePool pool) {
+      this.pool = pool;
+      return this;
+    }
+
+    /**
+     * Forgets keys not updated for the timeout, during {@link LongMotionlessAverageRegistry#expire(long, int)}.
+     * Defaults to never.
+     *
+     * @param idleTimeoutMs time after its last update a key expires, in milliseconds. Must be greater than zero
+     */
+    public Builder idleTimeoutMs(long idleTimeoutMs) {
+      if (idleTimeoutMs <= 0) {
+        throw new IllegalArgumentException("idleTimeoutMs must be greater than zero");
+      }
+      this.idleTimeoutMs = idleTimeoutMs;
+      return this;
+    }
+
+    /**
+     * Resolution of the timing wheels, keys expire at most one tick late.
+     * Defaults to 1/64 of the idle timeout, at least a millisecond.
+     *
+     * @param tickMs in milliseconds, must be greater than zero
+     */
+    public Builder tickMs(long tickMs) {
+      if (tickMs <= 0) {
+        throw new IllegalArgumentException("tickMs must be greater than zero");
+      }
+      this.tickMs = tickMs;
+      return this;
+    }
+
+    /**
+     * Notified of every expired key with its last averaged value.
+     * It's called with the stripe of the key locked, it must not use the registry.
+     */
+    public Builder listener(ExpiringMotionlessAverageTable.Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Clock of {@link LongMotionlessAverageRegistry#average(long, float)} with an idle timeout.
+     * Defaults to {@link NanoClock.Builder#systemClock()}, use the clock of the factory
+     */
+    public Builder clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public LongMotionlessAverageRegistry build() {
+      long tick = tickMs > 0 ? tickMs : Math.max(1, idleTimeoutMs / IdleWheel.WHEEL_SIZE);
+      return new LongMotionlessAverageRegistry(factory, stripes, pool, idleTimeoutMs * MotionlessAverage.Builder.NANO,
+          tick * MotionlessAverage.Builder.NANO, listener, clock);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Table of averages keyed by primitive longs, for example beacon identities or MAC addresses.
+ * <p>
+ * The state of every key is stored inline, in primitive arrays next to the keys of an open addressing table.
+ * There are no per key objects and no boxing: finding the key and updating its average is one probe sequence.
+ * The table grows when it gets too full and deletion doesn't leave tombstones behind.
+ * <p>
+ * Tables are not thread safe, see {@link LongMotionlessAverageRegistry} for concurrent use.
+ */
+public abstract class LongMotionlessAverageTable extends LongHashSlots {
+
+  LongMotionlessAverageTable(int expectedSize) {
+    super(expectedSize);
+  }
+
+  /**
+   * Averages a new value into the average of the key, starting a new average if the key is absent
+   *
+   * @return the averaged value
+   * @see MotionlessAverage#average(float)
+   */
+  public abstract float average(long key, float newValue);
+
+  /**
+   * Averages a new value, measured at the given time, into the average of the key,
+   * starting a new average if the key is absent.
+   * Tables that don't depend on time ignore the timestamp.
+   *
+   * @return the averaged value
+   * @see TimestampedAverage#average(float, long)
+   */
+  public abstract float average(long key, float newValue, long timestampNanos);
+
+  /**
+   * Averages a batch of values with the time at which each of them was measured.
+   * The averaged value for {@code values[i]} is written to {@code out[i]}.
+   *
+   * @param keys            key of each value
+   * @param values          newly received values
+   * @param timestampsNanos time at which each value was measured, in nanoseconds
+   * @param out             receives the averaged values, can be the same array as {@code values}
+   * @param off             index of the first value to average
+   * @param len             number of values to average
+   */
+  public void average(long[] keys, float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    ArrayHelpers.checkRange(values, timestampsNanos, out, off, len);
+    if (off + len > keys.length) {
+      throw new IndexOutOfBoundsException("off + len must not exceed the length of keys");
+    }
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(keys[i], values[i], timestampsNanos[i]);
+    }
+  }
+
+  /**
+   * @return the current averaged value of the key, or NaN if the key is absent
+   */
+  public float get(long key) {
+    int slot = find(key);
+    return slot >= 0 ? value(slot) : Float.NaN;
+  }
+
+  abstract float value(int slot);
+
+  /**
+   * @return the slot of the key, inserted with uninitialized state if absent
+   */
+  final int slot(long key) {
+    int slot = find(key);
+    if (slot < 0) {
+      slot = insert(-slot - 1, key);
+      clearState(slot);
+    }
+    return slot;
+  }
+
+  public static class Builder {
+
+    /**
+     * Creates a table of averages with a constant filter.
+     *
+     * @param expectedSize number of keys the table holds without growing
+     * @param filter       value for the filter, must be greater than 1
+     * @return a LongMotionlessAverageTable using a constant filter
+     * @see MotionlessAverage.Builder#createConstantFilterAverage(float)
+     */
+    public static LongMotionlessAverageTable createConstantFilterTable(int expectedSize, float filter) {
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      return new LongConstantFilterTable(expectedSize, prototype.filter);
+    }
+
+    /**
+     * Creates a table of averages with a filter based on frequency of averaging.
+     *
+     * @param expectedSize number of keys the table holds without growing
+     * @param minFilter    minimum allowed filter value. Must be greater than one
+     * @param maxFilter    maximum allowed filter value. Must be greater than minFilter
+     * @param minTimeMs    minimum allowed update period (in milliseconds). Must be greater than zero
+     * @param maxTimeMs    maximum allowed update period (in milliseconds). Must be greater than minTimeMs
+     * @return a LongMotionlessAverageTable using time based filter
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static LongMotionlessAverageTable createTimeDependentTable(int expectedSize, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentTable(expectedSize, minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createTimeDependentTable(int, float, float, long, long)},
+     * reading the time of the updates without timestamps from the given clock.
+     *
+     * @param clock source of the timestamps, see {@link NanoClock.Builder}
+     * @return a LongMotionlessAverageTable using time based filter
+     */
+    public static LongMotionlessAverageTable createTimeDependentTable(int expectedSize, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new LongTimedFilterTable(expectedSize, prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+
+    /**
+     * Creates a table of simplified Kalman filters.
+     *
+     * @param expectedSize number of keys the table holds without growing
+     * @param r            process noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @param q            measurement noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @return a LongKalmanFilterTable
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static LongKalmanFilterTable createSimplifiedKalmanFilterTable(int expectedSize, float r, float q) {
+      return createKalmanFilterTable(expectedSize, new KalmanFilter.Builder(r, q));
+    }
+
+    /**
+     * Creates a table of Kalman filters, all configured like the filters of the given builder.
+     *
+     * @param expectedSize number of keys the table holds without growing
+     * @param builder      the configuration of every key
+     * @return a LongKalmanFilterTable
+     */
+    public static LongKalmanFilterTable createKalmanFilterTable(int expectedSize, KalmanFilter.Builder builder) {
+      KalmanFilter prototype = builder.build();
+      return new LongKalmanFilterTable(expectedSize, prototype.r, prototype.q, prototype.a, prototype.b, prototype.c);
+    }
+  }
+}
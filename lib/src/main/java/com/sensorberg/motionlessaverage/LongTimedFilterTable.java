@@ -0,0 +1,79 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+class LongTimedFilterTable extends LongMotionlessAverageTable {
+
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
+
+  long[] lastSeen;
+  float[] values;
+
+  LongTimedFilterTable(int expectedSize, float angle, float constant, long minTime, long maxTime) {
+    this(expectedSize, angle, constant, minTime, maxTime, SystemNanoClock.INSTANCE);
+  }
+
+  LongTimedFilterTable(int expectedSize, float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    super(expectedSize);
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+    this.lastSeen = new long[keys.length];
+    this.values = new float[keys.length];
+  }
+
+  @Override public float average(long key, float newValue) {
+    return average(key, newValue, clock.nanoTime());
+  }
+
+  @Override public float average(long key, float newValue, long now) {
+    int slot = slot(key);
+    float value = values[slot];
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      long diff = calculateDiff(now, lastSeen[slot], minTime, maxTime);
+      float filter = calculateY(angle, constant, diff);
+      value = calculateAverage(value, newValue, filter);
+    }
+    values[slot] = value;
+    lastSeen[slot] = now;
+    return value;
+  }
+
+  @Override float value(int slot) {
+    return values[slot];
+  }
+
+  @Override void moveState(int from, int to) {
+    values[to] = values[from];
+    lastSeen[to] = lastSeen[from];
+  }
+
+  @Override void clearState(int slot) {
+    values[slot] = Float.NaN;
+    lastSeen[slot] = 0;
+  }
+
+  @Override void resizeState(int newCapacity, int[] newSlots) {
+    float[] oldValues = values;
+    long[] oldLastSeen = lastSeen;
+    values = new float[newCapacity];
+    lastSeen = new long[newCapacity];
+    for (int i = 0; i < newSlots.length; i++) {
+      int slot = newSlots[i];
+      if (slot >= 0) {
+        values[slot] = oldValues[i];
+        lastSeen[slot] = oldLastSeen[i];
+      }
+    }
+  }
+}
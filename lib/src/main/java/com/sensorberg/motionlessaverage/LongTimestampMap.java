@@ -0,0 +1,45 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Last seen timestamp of each key, for {@link ExpiringMotionlessAverageTable}
+ */
+class LongTimestampMap extends LongHashSlots {
+
+  long[] timestamps;
+
+  LongTimestampMap(int expectedSize) {
+    super(expectedSize);
+    timestamps = new long[keys.length];
+  }
+
+  /**
+   * @return true if the key was absent
+   */
+  boolean put(long key, long timestamp) {
+    int slot = find(key);
+    boolean absent = slot < 0;
+    if (absent) {
+      slot = insert(-slot - 1, key);
+    }
+    timestamps[slot] = timestamp;
+    return absent;
+  }
+
+  @Override void moveState(int from, int to) {
+    timestamps[to] = timestamps[from];
+  }
+
+  @Override void clearState(int slot) {
+    timestamps[slot] = 0;
+  }
+
+  @Override void resizeState(int newCapacity, int[] newSlots) {
+    long[] oldTimestamps = timestamps;
+    timestamps = new long[newCapacity];
+    for (int i = 0; i < newSlots.length; i++) {
+      if (newSlots[i] >= 0) {
+        timestamps[newSlots[i]] = oldTimestamps[i];
+      }
+    }
+  }
+}
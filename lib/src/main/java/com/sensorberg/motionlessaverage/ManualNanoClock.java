@@ -0,0 +1,53 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link NanoClock} that only moves when it's set or advanced, for deterministic tests and replays
+ *
+ * @see NanoClock.Builder#createManualClock(long)
+ */
+public class ManualNanoClock implements NanoClock {
+
+  private final AtomicLong now;
+
+  ManualNanoClock(long startNanos) {
+    now = new AtomicLong(startNanos);
+  }
+
+  @Override public long nanoTime() {
+    return now.get();
+  }
+
+  /**
+   * @param nanos the new time, in nanoseconds. Must not be before the current time
+   */
+  public void set(long nanos) {
+    while (true) {
+      long current = now.get();
+      if (nanos < current) {
+        throw new IllegalArgumentException("the clock must not go backwards");
+      }
+      if (now.compareAndSet(current, nanos)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param nanos time to move forward by, in nanoseconds. Must not be negative
+   */
+  public void advance(long nanos) {
+    if (nanos < 0) {
+      throw new IllegalArgumentException("the clock must not go backwards");
+    }
+    now.addAndGet(nanos);
+  }
+
+  /**
+   * @param millis time to move forward by, in milliseconds. Must not be negative
+   */
+  public void advanceMs(long millis) {
+    advance(millis * MotionlessAverage.Builder.NANO);
+  }
+}
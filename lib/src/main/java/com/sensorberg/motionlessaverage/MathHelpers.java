@@ -1,14 +1,73 @@
 package com.sensorberg.motionlessaverage;
 
 class MathHelpers {
+
+  // exp(-x) sampled every 1/DECAY_STEPS from 0 to DECAY_RANGE, for calculateDecay
+  static final int DECAY_STEPS = 128;
+  static final int DECAY_RANGE = 16;
+  private static final float[] DECAY = new float[DECAY_STEPS * DECAY_RANGE + 1];
+
+  static {
+    for (int i = 0; i < DECAY.length; i++) {
+      DECAY[i] = (float) Math.exp(-(double) i / DECAY_STEPS);
+    }
+  }
+
+  // the metrics hooks test a static final constant, the JIT drops them when metrics are disabled
+
   static long calculateDiff(long now, long last, long min, long max) {
+    if (MotionlessAverageMetrics.ENABLED) {
+      MotionlessAverageMetrics.countClamp(now - last, min, max);
+    }
     return Math.min(Math.max(now - last, min), max);
   }
 
   static float calculateAverage(float prevValue, float newValue, float filter) {
+    if (MotionlessAverageMetrics.ENABLED && Float.isNaN(newValue)) {
+      MotionlessAverageMetrics.nanInputs.increment();
+    }
     return prevValue - ((prevValue - newValue) / filter);
   }
 
+  /**
+   * Exponentially weighted variance, with the same weight as {@link #calculateAverage(float, float, float)}
+   */
+  static float calculateVariance(float prevVariance, float prevValue, float newValue, float filter) {
+    float diff = newValue - prevValue;
+    return (prevVariance + diff * diff / filter) * (1 - 1 / filter);
+  }
+
+  /**
+   * {@code exp(-x)} by linear interpolation in a table, for x greater or equal to zero.
+   * The interpolation error is at most {@code (1 / DECAY_STEPS)^2 / 8}, below 8e-6,
+   * and {@code exp(-DECAY_RANGE)} beyond the table, below 2e-7.
+   */
+  static float calculateDecay(float x) {
+    float position = x * DECAY_STEPS;
+    if (!(position < DECAY_STEPS * DECAY_RANGE)) {
+      return 0f;
+    }
+    int index = (int) position;
+    float fraction = position - index;
+    float start = DECAY[index];
+    return start + fraction * (DECAY[index + 1] - start);
+  }
+
+  static float calculateDecayAverage(float prevValue, float newValue, float decay) {
+    if (MotionlessAverageMetrics.ENABLED && Float.isNaN(newValue)) {
+      MotionlessAverageMetrics.nanInputs.increment();
+    }
+    return newValue + decay * (prevValue - newValue);
+  }
+
+  static float calculateMagnitude(float[] values) {
+    float sum = 0;
+    for (float value : values) {
+      sum += value * value;
+    }
+    return (float) Math.sqrt(sum);
+  }
+
   static float calculateY(float angle, float constant, float valueX) {
     return angle * valueX + constant;
   }
@@ -20,4 +79,103 @@ class MathHelpers {
   static float calculateConstant(float angle, float x, float y) {
     return y - angle * x;
   }
+
+  // Kalman filter steps, shared by every implementation holding Kalman state
+
+  static float calculateKalmanInitialEstimate(float signal, float c) {
+    if (MotionlessAverageMetrics.ENABLED) {
+      MotionlessAverageMetrics.kalmanInitializations.increment();
+    }
+    return (1 / c) * signal;
+  }
+
+  static float calculateKalmanInitialCovariance(float c, float q) {
+    return sqrt(1 / c) * q;
+  }
+
+  static float calculateKalmanPrediction(float x, float u, float a, float b) {
+    return (a * x) + (b * u);
+  }
+
+  static float calculateKalmanUncertainty(float cov, float a, float r) {
+    return (sqrt(a) * cov) + r;
+  }
+
+  static float calculateKalmanGain(float uncertainty, float c, float q) {
+    return uncertainty * c * (1 / ((sqrt(c) * uncertainty) + q));
+  }
+
+  static float calculateKalmanEstimate(float prediction, float kalmanGain, float signal, float c) {
+    if (MotionlessAverageMetrics.ENABLED && Float.isNaN(signal)) {
+      MotionlessAverageMetrics.nanInputs.increment();
+    }
+    return prediction + kalmanGain * (signal - (c * prediction));
+  }
+
+  static float calculateKalmanCovariance(float uncertainty, float kalmanGain, float c) {
+    return uncertainty - (kalmanGain * c * uncertainty);
+  }
+
+  /**
+   * The covariance doesn't depend on the signal, every filter converges to the fixed point of its update.
+   * With {@code s = sqrt(a)}, {@code t = sqrt(c)} and the uncertainty {@code u = s * cov + r} at the fixed point,
+   * the update {@code cov = u * ((t - c * c) * u + q) / (t * u + q)} is the quadratic
+   * {@code (t - s * (t - c * c)) * u^2 + (q - r * t - s * q) * u - r * q = 0}, solved for its positive root.
+   * A root where the update doesn't contract is never reached, and neither is one when the first update
+   * turns the covariance negative, the covariance diverges instead.
+   * <p>
+   * Without process noise ({@code r} of zero) the covariance only tends to zero and never settles,
+   * there is no steady state to switch to.
+   *
+   * @return the steady state covariance, or NaN if there is none
+   */
+  static float calculateKalmanSteadyStateCovariance(float r, float q, float a, float c) {
+    if (!(r > 0) || !(q > 0) || a < 0 || !(c > 0)) {
+      return Float.NaN;
+    }
+    double s = Math.sqrt(a);
+    double t = Math.sqrt(c);
+    double d = t - (double) c * c;
+    if (d < 0 && s * calculateKalmanInitialCovariance(c, q) + r >= -q / d) {
+      // the first update already turns the covariance negative, it never settles
+      return Float.NaN;
+    }
+    double uncertainty;
+    double cov;
+    if (s == 0) {
+      uncertainty = r;
+      cov = uncertainty * (d * uncertainty + q) / (t * uncertainty + q);
+    } else {
+      double quadratic = t - s * d;
+      double linear = q - r * t - s * q;
+      double discriminant = linear * linear + 4 * quadratic * r * q;
+      if (!(quadratic > 0) || discriminant < 0) {
+        return Float.NaN;
+      }
+      uncertainty = (-linear + Math.sqrt(discriminant)) / (2 * quadratic);
+      cov = (uncertainty - r) / s;
+      // the covariance only converges to a fixed point where the update contracts
+      double denominator = t * uncertainty + q;
+      double slope = s * ((2 * d * uncertainty + q) * denominator - uncertainty * (d * uncertainty + q) * t)
+          / (denominator * denominator);
+      if (!(Math.abs(slope) < 1)) {
+        return Float.NaN;
+      }
+    }
+    if (!(cov > 0) || Double.isInfinite(cov)) {
+      return Float.NaN;
+    }
+    return (float) cov;
+  }
+
+  /**
+   * Float.isFinite of Java 8
+   */
+  static boolean isFinite(float value) {
+    return Math.abs(value) <= Float.MAX_VALUE;
+  }
+
+  private static float sqrt(float x) {
+    return (float) Math.sqrt(x);
+  }
 }
@@ -0,0 +1,27 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Receives the metrics of {@link MotionlessAverageMetrics#report(MetricsSink)}.
+ * Implement it to export the metrics to any metrics system, the library doesn't depend on one.
+ */
+public interface MetricsSink {
+
+  /**
+   * @param name  name of the counter
+   * @param count total count since the start, or the last {@link MotionlessAverageMetrics#reset()}
+   */
+  void counter(String name, long count);
+
+  /**
+   * @param name  name of the gauge
+   * @param value current value
+   */
+  void gauge(String name, long value);
+
+  /**
+   * @param name        name of the histogram
+   * @param upperBounds exclusive upper bound of each bucket
+   * @param counts      number of recorded values in each bucket
+   */
+  void histogram(String name, long[] upperBounds, long[] counts);
+}
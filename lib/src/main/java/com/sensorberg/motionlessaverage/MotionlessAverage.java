@@ -41,6 +41,21 @@ public interface MotionlessAverage {
      * @return a MotionlessAverage using time based filter
      */
     public static MotionlessAverage createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createTimeDependentAverage(float, float, long, long)},
+     * reading the time of {@link MotionlessAverage#average(float)} from the given clock instead of {@link System#nanoTime()}.
+     *
+     * @param clock source of the timestamps, see {@link NanoClock.Builder}
+     * @return a MotionlessAverage using time based filter
+     */
+    public static MotionlessAverage createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
 
       if (minTimeMs <= 0) {
         throw new IllegalArgumentException("minTimeMs must be greater than zero");
@@ -62,7 +77,77 @@ public interface MotionlessAverage {
       long maxTime = maxTimeMs * NANO;
       float angle = calculateAngle(minTime, maxTime, minFilter, maxFilter);
       float constant = calculateConstant(angle, maxTime, maxFilter);
-      return new TimedFilter(angle, constant, minTime, maxTime);
+      return new TimedFilter(angle, constant, minTime, maxTime, clock);
+    }
+
+    /**
+     * This static factory creates a continuous time exponential moving average.
+     * Each new value gets the weight {@code 1 - exp(-dt / tau)}, where {@code dt} is the time since the previous value,
+     * so a value keeps the same influence however the following samples are spaced.
+     * Values with the same timestamp as the previous one don't change the average.
+     * The exponential comes from a lookup table, its weights are within 8e-6 of the exact ones.
+     *
+     * @param timeConstantMs tau, the time (in milliseconds) after which the weight of a value decayed to 1/e.
+     *                       Must be greater than zero
+     * @return a MotionlessAverage using exponential decay
+     */
+    public static MotionlessAverage createExponentialDecayAverage(long timeConstantMs) {
+      return createExponentialDecayAverage(timeConstantMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createExponentialDecayAverage(long)},
+     * reading the time of {@link MotionlessAverage#average(float)} from the given clock.
+     *
+     * @param clock source of the timestamps, see {@link NanoClock.Builder}
+     * @return a MotionlessAverage using exponential decay
+     */
+    public static MotionlessAverage createExponentialDecayAverage(long timeConstantMs, NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      if (timeConstantMs <= 0) {
+        throw new IllegalArgumentException("timeConstantMs must be greater than zero");
+      }
+      return new ExponentialDecayFilter(1f / (timeConstantMs * NANO), clock);
+    }
+
+    /**
+     * Thread safe version of {@link #createConstantFilterAverage(float)}.
+     * Many threads can average into the same instance without external locking.
+     *
+     * @param filter value for the filter, must be greater than 1
+     * @return a thread safe MotionlessAverage using a constant filter
+     */
+    public static MotionlessAverage createConcurrentConstantFilterAverage(float filter) {
+      ConstantFilter prototype = (ConstantFilter) createConstantFilterAverage(filter);
+      return new ConcurrentConstantFilter(prototype.filter);
+    }
+
+    /**
+     * Thread safe version of {@link #createTimeDependentAverage(float, float, long, long)}.
+     * Many threads can average into the same instance without external locking.
+     *
+     * @param minFilter minimum allowed filter value. Must be greater than one
+     * @param maxFilter maximum allowed filter value. Must be greater than minFilter
+     * @param minTimeMs minimum allowed update period (in milliseconds). Must be greater than zero
+     * @param maxTimeMs maximum allowed update period (in milliseconds). Must be greater than minTimeMs
+     * @return a thread safe MotionlessAverage using time based filter
+     */
+    public static MotionlessAverage createConcurrentTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createConcurrentTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createConcurrentTimeDependentAverage(float, float, long, long)},
+     * reading the time of {@link MotionlessAverage#average(float)} from the given clock.
+     *
+     * @param clock source of the timestamps, must be thread safe, see {@link NanoClock.Builder}
+     * @return a thread safe MotionlessAverage using time based filter
+     */
+    public static MotionlessAverage createConcurrentTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      TimedFilter prototype = (TimedFilter) createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new ConcurrentTimedFilter(prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
     }
 
     /**
@@ -84,6 +169,20 @@ public interface MotionlessAverage {
     public static MotionlessAverage createSimplifiedKalmanFilter(float r, float q) {
       return new KalmanFilter.Builder(r, q).build();
     }
+
+    /**
+     * This static factory creates an exact average of the most recent values, with every value weighted equally.
+     * Updates take constant time and don't allocate, whatever the size of the window.
+     *
+     * @param window number of values to average, must be greater than zero
+     * @return a MotionlessAverage over a sliding window
+     */
+    public static MotionlessAverage createSlidingWindowAverage(int window) {
+      if (window < 1) {
+        throw new IllegalArgumentException("window must be greater than zero");
+      }
+      return new SlidingWindowAverage(window);
+    }
   }
 
   class Helper {
@@ -0,0 +1,198 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * MotionlessAverageBank,
+ * because you don't need a million objects to average a million channels.
+ * <p>
+ * A bank keeps the state of many independent averages of the same kind in parallel primitive arrays.
+ * Each channel behaves exactly like its own {@link MotionlessAverage} instance,
+ * but costs only the few bytes of its state instead of an object header and a reference.
+ * Channels are addressed by their index, from zero to {@link #size()} - 1.
+ * <p>
+ * Banks are not thread safe.
+ */
+public abstract class MotionlessAverageBank {
+
+  int size;
+
+  /**
+   * One bit per channel, set when the channel is updated. Null unless change tracking is enabled.
+   */
+  long[] changed;
+
+  MotionlessAverageBank(int size) {
+    this.size = size;
+  }
+
+  /**
+   * Starts recording which channels are updated, for delta snapshots.
+   * Costs one bit per channel and one bitwise or per update.
+   *
+   * @see MotionlessAverageSnapshot#writeDelta(MotionlessAverageBank, java.nio.file.Path)
+   */
+  public void enableChangeTracking() {
+    if (changed == null) {
+      changed = new long[(size + 63) >>> 6];
+    }
+  }
+
+  final void markChanged(int channel) {
+    long[] changed = this.changed;
+    if (changed != null) {
+      changed[channel >>> 6] |= 1L << channel;
+    }
+  }
+
+  /**
+   * @return the number of channels in this bank
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Counts the channels that received a value, scanning the whole bank
+   *
+   * @return the number of initialized channels
+   */
+  public abstract int initializedChannels();
+
+  /**
+   * Averages a new value into one channel
+   *
+   * @param channel  index of the channel, from zero to {@link #size()} - 1
+   * @param newValue newly received value
+   * @return the averaged value of the channel
+   */
+  public abstract float average(int channel, float newValue);
+
+  /**
+   * Averages a batch of values, each into its own channel.
+   * The result for {@code values[i]} is written to {@code out[i]}.
+   * A channel may appear more than once in a batch, its values are averaged in order.
+   *
+   * @param channels index of the channel for each value
+   * @param values   newly received values
+   * @param out      receives the averaged values, can be the same array as {@code values}
+   */
+  public abstract void average(int[] channels, float[] values, float[] out);
+
+  /**
+   * Averages a new value, measured at the given time, into one channel.
+   * Banks that don't depend on time ignore the timestamp.
+   *
+   * @param channel        index of the channel, from zero to {@link #size()} - 1
+   * @param newValue       newly received value
+   * @param timestampNanos time at which the value was measured, in nanoseconds
+   * @return the averaged value of the channel
+   * @see TimestampedAverage
+   */
+  public abstract float average(int channel, float newValue, long timestampNanos);
+
+  /**
+   * Averages a batch of values with the time at which each of them was measured.
+   * Banks that don't depend on time ignore the timestamps.
+   *
+   * @param channels        index of the channel for each value
+   * @param values          newly received values
+   * @param timestampsNanos time at which each value was measured, in nanoseconds
+   * @param out             receives the averaged values, can be the same array as {@code values}
+   * @see TimestampedAverage
+   */
+  public abstract void average(int[] channels, float[] values, long[] timestampsNanos, float[] out);
+
+  static void checkBatch(int[] channels, float[] values, float[] out) {
+    if (channels.length != values.length) {
+      throw new IllegalArgumentException("channels and values must have the same length");
+    }
+    if (out.length < values.length) {
+      throw new IllegalArgumentException("out must be at least as long as values");
+    }
+  }
+
+  static void checkBatch(int[] channels, float[] values, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, values, out);
+    if (timestampsNanos.length != values.length) {
+      throw new IllegalArgumentException("timestampsNanos and values must have the same length");
+    }
+  }
+
+  public static class Builder {
+
+    /**
+     * Creates a bank of averages with a constant filter.
+     *
+     * @param channels number of channels, must be greater than zero
+     * @param filter   value for the filter, must be greater than 1
+     * @return a MotionlessAverageBank using a constant filter
+     * @see MotionlessAverage.Builder#createConstantFilterAverage(float)
+     */
+    public static MotionlessAverageBank createConstantFilterBank(int channels, float filter) {
+      checkChannels(channels);
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      return new ConstantFilterBank(channels, prototype.filter);
+    }
+
+    /**
+     * Creates a bank of averages with a filter based on frequency of averaging.
+     * A batch update reads the clock once, all values in the same batch are averaged at the same time.
+     *
+     * @param channels  number of channels, must be greater than zero
+     * @param minFilter minimum allowed filter value. Must be greater than one
+     * @param maxFilter maximum allowed filter value. Must be greater than minFilter
+     * @param minTimeMs minimum allowed update period (in milliseconds). Must be greater than zero
+     * @param maxTimeMs maximum allowed update period (in milliseconds). Must be greater than minTimeMs
+     * @return a MotionlessAverageBank using time based filter
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static MotionlessAverageBank createTimeDependentBank(int channels, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentBank(channels, minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createTimeDependentBank(int, float, float, long, long)},
+     * reading the time of the updates without timestamps from the given clock.
+     *
+     * @param clock source of the timestamps, see {@link NanoClock.Builder}
+     * @return a MotionlessAverageBank using time based filter
+     */
+    public static MotionlessAverageBank createTimeDependentBank(int channels, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      checkChannels(channels);
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new TimedFilterBank(channels, prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+
+    /**
+     * Creates a bank of simplified Kalman filters.
+     *
+     * @param channels number of channels, must be greater than zero
+     * @param r        process noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @param q        measurement noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @return a KalmanFilterBank
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static KalmanFilterBank createSimplifiedKalmanFilterBank(int channels, float r, float q) {
+      return createKalmanFilterBank(channels, new KalmanFilter.Builder(r, q));
+    }
+
+    /**
+     * Creates a bank of Kalman filters, all configured like the filters of the given builder.
+     *
+     * @param channels number of channels, must be greater than zero
+     * @param builder  the configuration of every channel
+     * @return a KalmanFilterBank
+     */
+    public static KalmanFilterBank createKalmanFilterBank(int channels, KalmanFilter.Builder builder) {
+      checkChannels(channels);
+      KalmanFilter prototype = builder.build();
+      return new KalmanFilterBank(channels, prototype.r, prototype.q, prototype.a, prototype.b, prototype.c);
+    }
+
+    static void checkChannels(int channels) {
+      if (channels <= 0) {
+        throw new IllegalArgumentException("channels must be greater than zero");
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Decides which averaged values are worth publishing downstream.
+ * <p>
+ * The emitter wraps a {@link MotionlessAverage} and averages every value through it,
+ * but only reports the averaged value when:
+ * <ul>
+ * <li>it moved by more than {@code delta} from the last reported value,
+ * and at least {@code minInterval} passed since then</li>
+ * <li>or {@code maxInterval} passed since the last report, as a heartbeat, even if it didn't move</li>
+ * </ul>
+ * The first averaged value is always reported. Timestamps are passed to the wrapped average
+ * if it's a {@link TimestampedAverage}. Emitting allocates nothing. Emitters are not thread safe.
+ */
+public class MotionlessAverageEmitter {
+
+  final MotionlessAverage average;
+  final TimestampedAverage timestampedAverage;
+  final float delta;
+  final long minInterval;
+  final long maxInterval;
+  final NanoClock clock;
+
+  private float value = Float.NaN;
+  private float emittedValue;
+  private long emittedAt;
+  private boolean emitted;
+
+  MotionlessAverageEmitter(MotionlessAverage average, float delta, long minInterval, long maxInterval, NanoClock clock) {
+    this.average = average;
+    this.timestampedAverage = average instanceof TimestampedAverage ? (TimestampedAverage) average : null;
+    this.delta = delta;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.clock = clock;
+  }
+
+  /**
+   * Averages a new value, timestamped now
+   *
+   * @return true if the averaged value should be reported, it's then {@link #emittedValue()}
+   */
+  public boolean average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  /**
+   * Averages a new value measured at the given time
+   *
+   * @param newValue       newly received value
+   * @param timestampNanos time at which the value was measured, in nanoseconds
+   * @return true if the averaged value should be reported, it's then {@link #emittedValue()}
+   */
+  public boolean average(float newValue, long timestampNanos) {
+    value = timestampedAverage != null ? timestampedAverage.average(newValue, timestampNanos) : average.average(newValue);
+    return emit(value, timestampNanos);
+  }
+
+  /**
+   * Averages {@code len} values starting at {@code off} and keeps the ones to report.
+   * The reported values and their timestamps are written to {@code emittedValues} and {@code emittedTimestampsNanos}
+   * from index zero, which must have room for {@code len} values.
+   *
+   * @return the number of values to report
+   */
+  public int average(float[] values, long[] timestampsNanos, int off, int len, float[] emittedValues, long[] emittedTimestampsNanos) {
+    ArrayHelpers.checkRange(values, timestampsNanos, values, off, len);
+    if (emittedValues.length < len || emittedTimestampsNanos.length < len) {
+      throw new IndexOutOfBoundsException("emittedValues and emittedTimestampsNanos must hold len values");
+    }
+    int count = 0;
+    for (int i = off, end = off + len; i < end; i++) {
+      if (average(values[i], timestampsNanos[i])) {
+        emittedValues[count] = emittedValue;
+        emittedTimestampsNanos[count] = timestampsNanos[i];
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private boolean emit(float value, long timestampNanos) {
+    if (emitted) {
+      long elapsed = timestampNanos - emittedAt;
+      boolean heartbeat = elapsed >= maxInterval;
+      // a value after a reported NaN is a change too
+      boolean changed = Math.abs(value - emittedValue) > delta || (Float.isNaN(emittedValue) && !Float.isNaN(value));
+      if (!heartbeat && (elapsed < minInterval || !changed)) {
+        return false;
+      }
+    }
+    emitted = true;
+    emittedValue = value;
+    emittedAt = timestampNanos;
+    return true;
+  }
+
+  /**
+   * @return the latest averaged value, reported or not. NaN before the first value
+   */
+  public float value() {
+    return value;
+  }
+
+  /**
+   * @return the last reported value, NaN before the first value
+   */
+  public float emittedValue() {
+    return emitted ? emittedValue : Float.NaN;
+  }
+
+  public static class Builder {
+
+    private final MotionlessAverage average;
+    private float delta = 0;
+    private long minIntervalMs = 0;
+    private long maxIntervalMs = Long.MAX_VALUE / MotionlessAverage.Builder.NANO;
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param average average the values go through
+     */
+    public Builder(MotionlessAverage average) {
+      if (average == null) {
+        throw new IllegalArgumentException("average must not be null");
+      }
+      this.average = average;
+    }
+
+    /**
+     * Change of the averaged value needed to report it. Defaults to zero, any change.
+     *
+     * @param delta smallest change to report, must not be negative
+     */
+    public Builder delta(float delta) {
+      if (!(delta >= 0)) {
+        throw new IllegalArgumentException("delta must not be negative");
+      }
+      this.delta = delta;
+      return this;
+    }
+
+    /**
+     * Shortest time between two reports, changes are held back until it passed. Defaults to zero.
+     *
+     * @param minIntervalMs in milliseconds, must not be negative
+     */
+    public Builder minIntervalMs(long minIntervalMs) {
+      if (minIntervalMs < 0) {
+        throw new IllegalArgumentException("minIntervalMs must not be negative");
+      }
+      this.minIntervalMs = minIntervalMs;
+      return this;
+    }
+
+    /**
+     * Longest time without a report, the value is then reported even if it didn't change. Defaults to never.
+     *
+     * @param maxIntervalMs in milliseconds, must be greater than zero
+     */
+    public Builder maxIntervalMs(long maxIntervalMs) {
+      if (maxIntervalMs <= 0) {
+        throw new IllegalArgumentException("maxIntervalMs must be greater than zero");
+      }
+      this.maxIntervalMs = Math.min(maxIntervalMs, Long.MAX_VALUE / MotionlessAverage.Builder.NANO);
+      return this;
+    }
+
+    /**
+     * Clock of {@link MotionlessAverageEmitter#average(float)}. Defaults to {@link NanoClock.Builder#systemClock()},
+     * use the clock of the wrapped average
+     */
+    public Builder clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public MotionlessAverageEmitter build() {
+      if (maxIntervalMs < minIntervalMs) {
+        throw new IllegalArgumentException("maxIntervalMs must not be smaller than minIntervalMs");
+      }
+      return new MotionlessAverageEmitter(average, delta,
+          minIntervalMs * MotionlessAverage.Builder.NANO, maxIntervalMs * MotionlessAverage.Builder.NANO, clock);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Creates new, independent averages that all share the same configuration.
+ * Used to create averages lazily, for example one per key of a {@link MotionlessAverageRegistry}.
+ * <p>
+ * Factories are equal when they create averages with the same configuration.
+ */
+public interface MotionlessAverageFactory {
+
+  /**
+   * @return a new average
+   */
+  TimestampedAverage create();
+
+  /**
+   * Static factories mirroring {@link MotionlessAverage.Builder}.
+   * Parameters are validated when the factory is created, not when the averages are.
+   */
+  class Builder {
+
+    /**
+     * @see MotionlessAverage.Builder#createConstantFilterAverage(float)
+     */
+    public static MotionlessAverageFactory createConstantFilterAverage(float filter) {
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      return new ConstantFilterFactory(prototype.filter);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static MotionlessAverageFactory createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * All created averages share the clock
+     *
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long, NanoClock)
+     */
+    public static MotionlessAverageFactory createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new TimedFilterFactory(prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createExponentialDecayAverage(long)
+     */
+    public static MotionlessAverageFactory createExponentialDecayAverage(long timeConstantMs) {
+      return createExponentialDecayAverage(timeConstantMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * All created averages share the clock
+     *
+     * @see MotionlessAverage.Builder#createExponentialDecayAverage(long, NanoClock)
+     */
+    public static MotionlessAverageFactory createExponentialDecayAverage(long timeConstantMs, NanoClock clock) {
+      ExponentialDecayFilter prototype = (ExponentialDecayFilter) MotionlessAverage.Builder
+          .createExponentialDecayAverage(timeConstantMs, clock);
+      return new ExponentialDecayFactory(prototype.rate, prototype.clock);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static MotionlessAverageFactory createSimplifiedKalmanFilter(float r, float q) {
+      return createKalmanFilter(new KalmanFilter.Builder(r, q));
+    }
+
+    /**
+     * @param builder the configuration of every created filter, later changes to the builder are not reflected
+     * @see KalmanFilter.Builder
+     */
+    public static MotionlessAverageFactory createKalmanFilter(KalmanFilter.Builder builder) {
+      KalmanFilter prototype = builder.build();
+      return new KalmanFilterFactory(prototype.r, prototype.q, prototype.a, prototype.b, prototype.c, prototype.steadyStateTolerance);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createSlidingWindowAverage(int)
+     */
+    public static MotionlessAverageFactory createSlidingWindowAverage(int window) {
+      SlidingWindowAverage prototype = (SlidingWindowAverage) MotionlessAverage.Builder.createSlidingWindowAverage(window);
+      return new SlidingWindowFactory(prototype.window.length);
+    }
+
+    static final class ConstantFilterFactory implements MotionlessAverageFactory {
+
+      final float filter;
+
+      ConstantFilterFactory(float filter) {
+        this.filter = filter;
+      }
+
+      @Override public TimestampedAverage create() {
+        return new ConstantFilter(filter);
+      }
+
+      @Override public boolean equals(Object o) {
+        return o instanceof ConstantFilterFactory && Float.compare(((ConstantFilterFactory) o).filter, filter) == 0;
+      }
+
+      @Override public int hashCode() {
+        return Float.floatToIntBits(filter);
+      }
+
+      @Override public String toString() {
+        return "ConstantFilter{filter=" + filter + "}";
+      }
+    }
+
+    static final class SlidingWindowFactory implements MotionlessAverageFactory {
+
+      final int window;
+
+      SlidingWindowFactory(int window) {
+        this.window = window;
+      }
+
+      @Override public TimestampedAverage create() {
+        return new SlidingWindowAverage(window);
+      }
+
+      @Override public boolean equals(Object o) {
+        return o instanceof SlidingWindowFactory && ((SlidingWindowFactory) o).window == window;
+      }
+
+      @Override public int hashCode() {
+        return window;
+      }
+
+      @Override public String toString() {
+        return "SlidingWindow{window=" + window + "}";
+      }
+    }
+
+    static final class ExponentialDecayFactory implements MotionlessAverageFactory {
+
+      final float rate;
+      final NanoClock clock;
+
+      ExponentialDecayFactory(float rate, NanoClock clock) {
+        this.rate = rate;
+        this.clock = clock;
+      }
+
+      @Override public TimestampedAverage create() {
+        return new ExponentialDecayFilter(rate, clock);
+      }
+
+      @Override public boolean equals(Object o) {
+        if (!(o instanceof ExponentialDecayFactory)) {
+          return false;
+        }
+        ExponentialDecayFactory that = (ExponentialDecayFactory) o;
+        return Float.compare(that.rate, rate) == 0 && that.clock.equals(clock);
+      }
+
+      @Override public int hashCode() {
+        return 31 * Float.floatToIntBits(rate) + clock.hashCode();
+      }
+
+      @Override public String toString() {
+        return "ExponentialDecay{timeConstantMs=" + 1 / (rate * MotionlessAverage.Builder.NANO) + "}";
+      }
+    }
+
+    static final class TimedFilterFactory implements MotionlessAverageFactory {
+
+      final float angle;
+      final float constant;
+      final long minTime;
+      final long maxTime;
+      final NanoClock clock;
+
+      TimedFilterFactory(float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+        this.angle = angle;
+        this.constant = constant;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.clock = clock;
+      }
+
+      @Override public TimestampedAverage create() {
+        return new TimedFilter(angle, constant, minTime, maxTime, clock);
+      }
+
+      @Override public boolean equals(Object o) {
+        if (!(o instanceof TimedFilterFactory)) {
+          return false;
+        }
+        TimedFilterFactory that = (TimedFilterFactory) o;
+        return Float.compare(that.angle, angle) == 0
+            && Float.compare(that.constant, constant) == 0
+            && that.minTime == minTime
+            && that.maxTime == maxTime
+            && that.clock.equals(clock);
+      }
+
+      @Override public int hashCode() {
+        int result = Float.floatToIntBits(angle);
+        result = 31 * result + Float.floatToIntBits(constant);
+        result = 31 * result + (int) (minTime ^ (minTime >>> 32));
+        result = 31 * result + (int) (maxTime ^ (maxTime >>> 32));
+        result = 31 * result + clock.hashCode();
+        return result;
+      }
+
+      @Override public String toString() {
+        float minFilter = MathHelpers.calculateY(angle, constant, minTime);
+        float maxFilter = MathHelpers.calculateY(angle, constant, maxTime);
+        return "TimedFilter{minFilter=" + minFilter
+            + ", maxFilter=" + maxFilter
+            + ", minTimeMs=" + (minTime / MotionlessAverage.Builder.NANO)
+            + ", maxTimeMs=" + (maxTime / MotionlessAverage.Builder.NANO) + "}";
+      }
+    }
+
+    static final class KalmanFilterFactory implements MotionlessAverageFactory {
+
+      final float r;
+      final float q;
+      final float a;
+      final float b;
+      final float c;
+      final float steadyStateTolerance;
+
+      KalmanFilterFactory(float r, float q, float a, float b, float c, float steadyStateTolerance) {
+        this.r = r;
+        this.q = q;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.steadyStateTolerance = steadyStateTolerance;
+      }
+
+      @Override public TimestampedAverage create() {
+        return new KalmanFilter(r, q, a, b, c, steadyStateTolerance);
+      }
+
+      @Override public boolean equals(Object o) {
+        if (!(o instanceof KalmanFilterFactory)) {
+          return false;
+        }
+        KalmanFilterFactory that = (KalmanFilterFactory) o;
+        return Float.compare(that.r, r) == 0
+            && Float.compare(that.q, q) == 0
+            && Float.compare(that.a, a) == 0
+            && Float.compare(that.b, b) == 0
+            && Float.compare(that.c, c) == 0
+            && Float.compare(that.steadyStateTolerance, steadyStateTolerance) == 0;
+      }
+
+      @Override public int hashCode() {
+        int result = Float.floatToIntBits(r);
+        result = 31 * result + Float.floatToIntBits(q);
+        result = 31 * result + Float.floatToIntBits(a);
+        result = 31 * result + Float.floatToIntBits(b);
+        result = 31 * result + Float.floatToIntBits(c);
+        result = 31 * result + Float.floatToIntBits(steadyStateTolerance);
+        return result;
+      }
+
+      @Override public String toString() {
+        return "KalmanFilter{r=" + r + ", q=" + q + ", a=" + a + ", b=" + b + ", c=" + c
+            + ", steadyStateTolerance=" + steadyStateTolerance + "}";
+      }
+    }
+  }
+}
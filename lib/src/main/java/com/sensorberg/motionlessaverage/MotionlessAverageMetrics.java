@@ -0,0 +1,231 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counters, gauges and latencies of the filters, to see how they behave in production.
+ * <p>
+ * Metrics are disabled by default and enabled for the whole JVM with the system property
+ * {@code -Dcom.sensorberg.motionlessaverage.metrics=true}.
+ * The hooks in the filters test the constant {@link #ENABLED}, so when disabled the JIT removes them entirely
+ * and the filters run exactly as fast as without metrics.
+ * When enabled, counters are striped per thread so concurrent filters don't contend on them.
+ * <p>
+ * Counters:
+ * <ul>
+ * <li>{@value #MIN_TIME_CLAMPS} and {@value #MAX_TIME_CLAMPS}: time dependent updates whose elapsed time
+ * was clamped to minTime or maxTime, many of them mean the time range doesn't fit the sample rate</li>
+ * <li>{@value #NAN_INPUTS}: NaN values averaged into an initialized filter, which poison its state</li>
+ * <li>{@value #KALMAN_INITIALIZATIONS}: Kalman filters, channels or keys that received their first value</li>
+ * <li>{@value #UPDATES}: updates of the averages wrapped by {@link #instrument(TimestampedAverage)}</li>
+ * </ul>
+ * Wrapped averages also record the latency of one update out of {@value #LATENCY_SAMPLING} in the
+ * {@value #UPDATE_LATENCY} histogram. Gauges are read when reported.
+ * Everything is exported through a {@link MetricsSink}, implemented for the metrics system at hand.
+ */
+public class MotionlessAverageMetrics {
+
+  public static final boolean ENABLED = Boolean.getBoolean("com.sensorberg.motionlessaverage.metrics");
+
+  public static final String MIN_TIME_CLAMPS = "motionlessaverage.min_time_clamps";
+  public static final String MAX_TIME_CLAMPS = "motionlessaverage.max_time_clamps";
+  public static final String NAN_INPUTS = "motionlessaverage.nan_inputs";
+  public static final String KALMAN_INITIALIZATIONS = "motionlessaverage.kalman_initializations";
+  public static final String UPDATES = "motionlessaverage.updates";
+  public static final String UPDATE_LATENCY = "motionlessaverage.update_latency_nanos";
+
+  static final int LATENCY_SAMPLING = 64;
+
+  static final StripedCounter minTimeClamps = new StripedCounter();
+  static final StripedCounter maxTimeClamps = new StripedCounter();
+  static final StripedCounter nanInputs = new StripedCounter();
+  static final StripedCounter kalmanInitializations = new StripedCounter();
+  static final StripedCounter updates = new StripedCounter();
+  static final LatencyHistogram updateLatency = new LatencyHistogram();
+
+  private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+  /**
+   * Wraps an average to count its updates and sample their latency.
+   * Returns the average itself when metrics are disabled.
+   *
+   * @param average the average to instrument
+   * @return the instrumented average
+   */
+  public static TimestampedAverage instrument(TimestampedAverage average) {
+    if (average == null) {
+      throw new IllegalArgumentException("average must not be null");
+    }
+    return ENABLED ? new InstrumentedAverage(average) : average;
+  }
+
+  /**
+   * Adds a gauge, replacing any gauge with the same name
+   *
+   * @param name  name of the gauge
+   * @param gauge reads the value when the metrics are reported
+   */
+  public static void registerGauge(String name, Gauge gauge) {
+    if (name == null || gauge == null) {
+      throw new IllegalArgumentException("name and gauge must not be null");
+    }
+    gauges.put(name, gauge);
+  }
+
+  /**
+   * Adds the gauges {@code name.size} and {@code name.initialized}, the number of channels of the bank
+   * and how many of them received a value. Counting the initialized channels scans the bank,
+   * and must not run concurrently with its updates.
+   */
+  public static void registerBank(String name, final MotionlessAverageBank bank) {
+    registerGauge(name + ".size", new Gauge() {
+      @Override public long value() {
+        return bank.size();
+      }
+    });
+    registerGauge(name + ".initialized", new Gauge() {
+      @Override public long value() {
+        return bank.initializedChannels();
+      }
+    });
+  }
+
+  /**
+   * Adds the gauge {@code name.size}, the number of keys of the table.
+   * Must not be reported concurrently with updates of the table.
+   */
+  public static void registerTable(String name, final LongMotionlessAverageTable table) {
+    registerGauge(name + ".size", new Gauge() {
+      @Override public long value() {
+        return table.size();
+      }
+    });
+  }
+
+  /**
+   * Adds the gauge {@code name.size}, the number of keys of the registry
+   */
+  public static void registerRegistry(String name, final MotionlessAverageRegistry<?> registry) {
+    registerGauge(name + ".size", new Gauge() {
+      @Override public long value() {
+        return registry.size();
+      }
+    });
+  }
+
+  /**
+   * Adds the gauge {@code name.size}, the number of keys of the registry
+   */
+  public static void registerRegistry(String name, final LongMotionlessAverageRegistry registry) {
+    registerGauge(name + ".size", new Gauge() {
+      @Override public long value() {
+        return registry.size();
+      }
+    });
+  }
+
+  /**
+   * Removes a gauge, so it doesn't keep its bank, table or registry reachable
+   *
+   * @return true if there was a gauge with that name
+   */
+  public static boolean unregisterGauge(String name) {
+    return gauges.remove(name) != null;
+  }
+
+  /**
+   * Exports the counters, the latency histogram and the gauges. Reports nothing when metrics are disabled.
+   *
+   * @param sink receives the metrics
+   */
+  public static void report(MetricsSink sink) {
+    if (!ENABLED) {
+      return;
+    }
+    sink.counter(MIN_TIME_CLAMPS, minTimeClamps.sum());
+    sink.counter(MAX_TIME_CLAMPS, maxTimeClamps.sum());
+    sink.counter(NAN_INPUTS, nanInputs.sum());
+    sink.counter(KALMAN_INITIALIZATIONS, kalmanInitializations.sum());
+    sink.counter(UPDATES, updates.sum());
+    sink.histogram(UPDATE_LATENCY, updateLatency.upperBounds(), updateLatency.counts());
+    for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+      sink.gauge(gauge.getKey(), gauge.getValue().value());
+    }
+  }
+
+  /**
+   * Sets the counters and the histogram back to zero, the gauges stay registered.
+   * Updates running concurrently may or may not be counted.
+   */
+  public static void reset() {
+    minTimeClamps.reset();
+    maxTimeClamps.reset();
+    nanInputs.reset();
+    kalmanInitializations.reset();
+    updates.reset();
+    updateLatency.reset();
+  }
+
+  static void countClamp(long elapsed, long min, long max) {
+    if (elapsed < min) {
+      minTimeClamps.increment();
+    } else if (elapsed > max) {
+      maxTimeClamps.increment();
+    }
+  }
+
+  /**
+   * Counts the updates of an average and times one of every {@value #LATENCY_SAMPLING}.
+   * The sampling counter isn't synchronized, concurrent updates only make the sampling less regular.
+   */
+  private static final class InstrumentedAverage implements TimestampedAverage {
+
+    private final TimestampedAverage average;
+    private int calls;
+
+    InstrumentedAverage(TimestampedAverage average) {
+      this.average = average;
+    }
+
+    @Override public float average(float newValue) {
+      updates.increment();
+      if ((++calls & (LATENCY_SAMPLING - 1)) != 0) {
+        return average.average(newValue);
+      }
+      long start = System.nanoTime();
+      float value = average.average(newValue);
+      updateLatency.record(System.nanoTime() - start);
+      return value;
+    }
+
+    @Override public float average(float newValue, long timestampNanos) {
+      updates.increment();
+      if ((++calls & (LATENCY_SAMPLING - 1)) != 0) {
+        return average.average(newValue, timestampNanos);
+      }
+      long start = System.nanoTime();
+      float value = average.average(newValue, timestampNanos);
+      updateLatency.record(System.nanoTime() - start);
+      return value;
+    }
+
+    @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+      updates.add(len);
+      long start = System.nanoTime();
+      average.average(values, timestampsNanos, out, off, len);
+      if (len > 0) {
+        updateLatency.record((System.nanoTime() - start) / len);
+      }
+    }
+
+    @Override public void reset() {
+      average.reset();
+    }
+
+    @Override public String toString() {
+      return average.toString();
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.sensorberg.motionlessaverage;
+
+import java.io.Closeable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.sensorberg.motionlessaverage.LongHashSlots.mix;
+
+/**
+ * Averages keyed samples from many producer threads without sharing any filter state between threads.
+ * <p>
+ * The keys are split between shards, each one owning a {@link LongMotionlessAverageTable} updated by a single thread.
+ * Producers hand samples to the shard of their key through a bounded lock free ring of primitive records,
+ * so there are no locks on the averaging path and adding shards adds throughput as long as there are cores for them.
+ * Samples of the same key from the same producer are averaged in the order they were offered.
+ * <p>
+ * Each shard thread drains its ring in batches, averages the batch in its table
+ * and hands the averaged values to the {@link Listener}.
+ * When a ring is full, {@link #offer(long, float, long)} drops the sample instead of blocking the producer,
+ * {@link #dropped()} and {@link #queueDepth()} tell when the shards can't keep up.
+ * An idle shard thread spins briefly, then parks for {@value #IDLE_PARK_MICROS} microseconds at a time.
+ */
+public class MotionlessAveragePipeline implements Closeable {
+
+  static final int IDLE_PARK_MICROS = 50;
+  private static final int IDLE_SPINS = 100;
+
+  final Shard[] shards;
+  private final StripedCounter dropped = new StripedCounter();
+  private volatile boolean running = true;
+
+  MotionlessAveragePipeline(LongMotionlessAverageTable[] tables, Listener listener, int capacity, int batchSize, ThreadFactory threadFactory) {
+    shards = new Shard[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      shards[i] = new Shard(i, tables[i], listener, capacity, batchSize);
+    }
+    for (Shard shard : shards) {
+      shard.thread = threadFactory.newThread(shard);
+      shard.thread.start();
+    }
+  }
+
+  /**
+   * Hands a sample to the shard of its key, without blocking
+   *
+   * @param key            key of the sample
+   * @param value          newly received value
+   * @param timestampNanos time at which the value was measured, in nanoseconds
+   * @return false if the sample was dropped because the shard is full or the pipeline is closed
+   */
+  public boolean offer(long key, float value, long timestampNanos) {
+    if (running && shards[shardOf(key)].ring.offer(key, value, timestampNanos)) {
+      return true;
+    }
+    dropped.increment();
+    return false;
+  }
+
+  /**
+   * Hands {@code len} samples starting at {@code off} to their shards, without blocking
+   *
+   * @return the number of samples accepted, the others were dropped
+   */
+  public int offer(long[] keys, float[] values, long[] timestampsNanos, int off, int len) {
+    ArrayHelpers.checkRange(values, timestampsNanos, values, off, len);
+    if (off + len > keys.length) {
+      throw new IndexOutOfBoundsException("off + len must not exceed the length of keys");
+    }
+    int accepted = 0;
+    for (int i = off, end = off + len; i < end; i++) {
+      if (offer(keys[i], values[i], timestampsNanos[i])) {
+        accepted++;
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * The tables spread their keys with the low bits of the same hash, the shard is picked with the high bits
+   * so keys of one shard don't pile up in the same slots of its table.
+   */
+  int shardOf(long key) {
+    return (int) (((mix(key) >>> 32) * shards.length) >>> 32);
+  }
+
+  /**
+   * @return the number of shards
+   */
+  public int shards() {
+    return shards.length;
+  }
+
+  /**
+   * @return the number of samples waiting in all shards
+   */
+  public int queueDepth() {
+    int depth = 0;
+    for (Shard shard : shards) {
+      depth += shard.ring.size();
+    }
+    return depth;
+  }
+
+  /**
+   * @param shard index of the shard, from zero to {@link #shards()} - 1
+   * @return the number of samples waiting in that shard
+   */
+  public int queueDepth(int shard) {
+    return shards[shard].ring.size();
+  }
+
+  /**
+   * @return the number of samples dropped since the pipeline was built
+   */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Adds the gauges {@code name.queue_depth} and {@code name.dropped} to {@link MotionlessAverageMetrics}
+   */
+  public void registerMetrics(String name) {
+    MotionlessAverageMetrics.registerGauge(name + ".queue_depth", new Gauge() {
+      @Override public long value() {
+        return queueDepth();
+      }
+    });
+    MotionlessAverageMetrics.registerGauge(name + ".dropped", new Gauge() {
+      @Override public long value() {
+        return dropped();
+      }
+    });
+  }
+
+  /**
+   * Stops accepting samples, lets the shards average what they already accepted and waits for their threads to end.
+   * Samples offered while closing may be lost, stop the producers first.
+   */
+  @Override public void close() {
+    running = false;
+    boolean interrupted = false;
+    for (Shard shard : shards) {
+      LockSupport.unpark(shard.thread);
+      while (true) {
+        try {
+          shard.thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receives the averaged samples, on the thread of their shard.
+   * A listener shared by several shards is called concurrently.
+   * The arrays are reused for the next batch, copy what has to be kept.
+   * An exception thrown by the listener ends the thread of its shard.
+   */
+  public interface Listener {
+
+    /**
+     * @param shard           index of the shard
+     * @param keys            key of each sample
+     * @param averages        averaged value of each sample
+     * @param timestampsNanos timestamp of each sample
+     * @param count           number of samples in the arrays, from index zero
+     */
+    void onAverages(int shard, long[] keys, float[] averages, long[] timestampsNanos, int count);
+  }
+
+  final class Shard implements Runnable {
+
+    final int index;
+    final RecordRing ring;
+    private final LongMotionlessAverageTable table;
+    private final Listener listener;
+    private final long[] keys;
+    private final float[] values;
+    private final long[] timestamps;
+    Thread thread;
+
+    Shard(int index, LongMotionlessAverageTable table, Listener listener, int capacity, int batchSize) {
+      this.index = index;
+      this.ring = new RecordRing(capacity);
+      this.table = table;
+      this.listener = listener;
+      keys = new long[batchSize];
+      values = new float[batchSize];
+      timestamps = new long[batchSize];
+    }
+
+    @Override public void run() {
+      int idle = 0;
+      while (true) {
+        // read before draining, so nothing accepted before close is left behind
+        boolean stopping = !running;
+        int count = ring.drain(keys, values, timestamps, keys.length);
+        if (count > 0) {
+          idle = 0;
+          table.average(keys, values, timestamps, values, 0, count);
+          listener.onAverages(index, keys, values, timestamps, count);
+        } else if (stopping) {
+          return;
+        } else if (++idle < IDLE_SPINS) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(IDLE_PARK_MICROS));
+        }
+      }
+    }
+  }
+
+  public static class Builder {
+
+    private final Listener listener;
+    private final LongMotionlessAverageTable[] tables;
+    private int capacity = 8192;
+    private int batchSize = 256;
+    private ThreadFactory threadFactory;
+
+    /**
+     * @param listener receives the averaged samples
+     * @param tables   one table per shard, each used only by the thread of its shard
+     */
+    public Builder(Listener listener, LongMotionlessAverageTable... tables) {
+      if (listener == null) {
+        throw new IllegalArgumentException("listener must not be null");
+      }
+      if (tables.length == 0) {
+        throw new IllegalArgumentException("at least one table is needed");
+      }
+      Map<LongMotionlessAverageTable, Boolean> distinct = new IdentityHashMap<>();
+      for (LongMotionlessAverageTable table : tables) {
+        if (table == null) {
+          throw new IllegalArgumentException("tables must not be null");
+        }
+        if (distinct.put(table, Boolean.TRUE) != null) {
+          throw new IllegalArgumentException("every shard needs its own table");
+        }
+      }
+      this.listener = listener;
+      this.tables = tables.clone();
+    }
+
+    /**
+     * Samples each shard can hold before dropping, rounded up to a power of two. Defaults to 8192.
+     */
+    public Builder capacity(int capacity) {
+      if (capacity < 2 || capacity > LongHashSlots.MAX_CAPACITY) {
+        throw new IllegalArgumentException("capacity must be between 2 and " + LongHashSlots.MAX_CAPACITY);
+      }
+      this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+      return this;
+    }
+
+    /**
+     * Largest number of samples a shard averages and hands to the listener at once. Defaults to 256.
+     */
+    public Builder batchSize(int batchSize) {
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be greater than zero");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Creates the shard threads. Defaults to daemon threads named after their shard.
+     */
+    public Builder threadFactory(ThreadFactory threadFactory) {
+      if (threadFactory == null) {
+        throw new IllegalArgumentException("threadFactory must not be null");
+      }
+      this.threadFactory = threadFactory;
+      return this;
+    }
+
+    /**
+     * Builds the pipeline and starts one thread per shard
+     */
+    public MotionlessAveragePipeline build() {
+      ThreadFactory factory = threadFactory;
+      if (factory == null) {
+        final AtomicInteger count = new AtomicInteger();
+        factory = new ThreadFactory() {
+          @Override public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "motionlessaverage-shard-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          }
+        };
+      }
+      return new MotionlessAveragePipeline(tables, listener, capacity, batchSize, factory);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of averages keyed by their configuration, so averages of keys that come and go are reused
+ * instead of created again.
+ * <p>
+ * {@link #acquire(MotionlessAverageFactory)} hands out an idle average of the configuration,
+ * or creates one if there is none. {@link #release(MotionlessAverageFactory, TimestampedAverage)} resets the average
+ * and keeps it for the next acquire, up to {@code maxIdle} per configuration, the others are left to the garbage collector.
+ * Configurations are the factories, equal factories share their idle averages.
+ * Once the pool holds enough idle averages for the churn, acquiring and releasing allocate nothing.
+ * <p>
+ * Pools are thread safe.
+ */
+public class MotionlessAveragePool {
+
+  final int maxIdle;
+  private final Map<MotionlessAverageFactory, Idle> idle = new HashMap<>();
+  // last configuration looked up, most pools serve one factory and skip hashing it
+  private MotionlessAverageFactory lastFactory;
+  private Idle lastIdle;
+  private long created;
+
+  /**
+   * @param maxIdle most idle averages kept per configuration, must be greater than zero
+   */
+  public MotionlessAveragePool(int maxIdle) {
+    if (maxIdle < 1) {
+      throw new IllegalArgumentException("maxIdle must be greater than zero");
+    }
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * @param factory configuration of the average
+   * @return an idle average of the configuration, or a new one, as if just created
+   */
+  public synchronized TimestampedAverage acquire(MotionlessAverageFactory factory) {
+    Idle averages = idle(factory, false);
+    if (averages != null && averages.size > 0) {
+      TimestampedAverage average = averages.items[--averages.size];
+      averages.items[averages.size] = null;
+      return average;
+    }
+    created++;
+    return factory.create();
+  }
+
+  /**
+   * Resets the average and keeps it for the next {@link #acquire(MotionlessAverageFactory)} of the configuration.
+   * The average must not be used anymore.
+   *
+   * @param factory configuration the average was acquired with, a reconfigured {@link KalmanFilter} must be released
+   *                with a factory of its new configuration
+   * @param average the average to give back
+   * @return true if the average was kept, false if the configuration already has {@code maxIdle} idle averages
+   */
+  public synchronized boolean release(MotionlessAverageFactory factory, TimestampedAverage average) {
+    if (factory == null || average == null) {
+      throw new IllegalArgumentException("factory and average must not be null");
+    }
+    Idle averages = idle(factory, true);
+    if (averages.size == maxIdle) {
+      return false;
+    }
+    average.reset();
+    if (averages.size == averages.items.length) {
+      averages.items = Arrays.copyOf(averages.items, Math.min(averages.size * 2, maxIdle));
+    }
+    averages.items[averages.size++] = average;
+    return true;
+  }
+
+  /**
+   * @return the number of idle averages of the configuration
+   */
+  public synchronized int idle(MotionlessAverageFactory factory) {
+    Idle averages = idle(factory, false);
+    return averages == null ? 0 : averages.size;
+  }
+
+  private Idle idle(MotionlessAverageFactory factory, boolean create) {
+    if (factory == lastFactory) {
+      return lastIdle;
+    }
+    Idle averages = idle.get(factory);
+    if (averages == null) {
+      if (!create) {
+        return null;
+      }
+      averages = new Idle(Math.min(16, maxIdle));
+      idle.put(factory, averages);
+    }
+    lastFactory = factory;
+    lastIdle = averages;
+    return averages;
+  }
+
+  /**
+   * @return the number of averages the pool had to create because none was idle
+   */
+  public synchronized long created() {
+    return created;
+  }
+
+  /**
+   * Drops every idle average
+   */
+  public synchronized void clear() {
+    idle.clear();
+    lastFactory = null;
+    lastIdle = null;
+  }
+
+  private static final class Idle {
+
+    TimestampedAverage[] items;
+    int size;
+
+    Idle(int capacity) {
+      items = new TimestampedAverage[capacity];
+    }
+  }
+}
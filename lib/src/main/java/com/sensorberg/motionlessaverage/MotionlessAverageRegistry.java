@@ -0,0 +1,330 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe registry of averages, one per key, created lazily by a {@link MotionlessAverageFactory}.
+ * <p>
+ * Keys are spread over lock stripes, updates to keys of different stripes don't contend.
+ * Updating the average of an existing key doesn't allocate.
+ * For keys that fit in a long use {@link LongMotionlessAverageRegistry}, which also avoids boxing the key.
+ * <p>
+ * Registries built with {@link Builder#idleTimeoutMs(long)} forget keys not updated for the timeout,
+ * during {@link #expire(long, int)}. Each stripe keeps its keys in update order and expires them from the oldest,
+ * so a key updated with a timestamp older than the ones of keys updated before it may expire late, never early.
+ *
+ * @param <K> type of the keys, must have consistent equals and hashCode
+ */
+public class MotionlessAverageRegistry<K> {
+
+  private final MotionlessAverageFactory factory;
+  private final long timeout;
+  private final Listener<K> listener;
+  private final NanoClock clock;
+  private final Stripe<K>[] stripes;
+  private final int shift;
+  private final int mask;
+
+  /**
+   * @param factory creates the average of each new key
+   */
+  public MotionlessAverageRegistry(MotionlessAverageFactory factory) {
+    this(factory, defaultStripes());
+  }
+
+  /**
+   * @param factory creates the average of each new key
+   * @param stripes number of lock stripes, rounded up to a power of two
+   */
+  public MotionlessAverageRegistry(MotionlessAverageFactory factory, int stripes) {
+    this(factory, stripes, 0, null, SystemNanoClock.INSTANCE);
+  }
+
+  private MotionlessAverageRegistry(MotionlessAverageFactory factory, int stripes, long timeout, Listener<K> listener, NanoClock clock) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory must not be null");
+    }
+    int bits = stripeBits(stripes);
+    this.factory = factory;
+    this.timeout = timeout;
+    this.listener = listener;
+    this.clock = clock;
+    this.stripes = newStripes(1 << bits);
+    this.shift = 32 - bits;
+    this.mask = (1 << bits) - 1;
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new Stripe<>(timeout > 0);
+    }
+  }
+
+  /**
+   * Averages a new value into the average of the key, creating it if needed.
+   * With an idle timeout the key is kept alive from the time of the registry's clock.
+   *
+   * @return the averaged value
+   * @see MotionlessAverage#average(float)
+   */
+  public float average(K key, float newValue) {
+    Stripe<K> stripe = stripe(key);
+    synchronized (stripe) {
+      KeyState entry = stripe.getOrCreate(key, factory);
+      if (timeout == 0) {
+        return entry.average.average(newValue);
+      }
+      long now = clock.nanoTime();
+      entry.value = entry.average.average(newValue, now);
+      entry.lastSeen = now;
+      return entry.value;
+    }
+  }
+
+  /**
+   * Averages a new value, measured at the given time, into the average of the key, creating it if needed.
+   * With an idle timeout the key is kept alive until {@code timestampNanos} plus the timeout.
+   *
+   * @return the averaged value
+   * @see TimestampedAverage#average(float, long)
+   */
+  public float average(K key, float newValue, long timestampNanos) {
+    Stripe<K> stripe = stripe(key);
+    synchronized (stripe) {
+      KeyState entry = stripe.getOrCreate(key, factory);
+      entry.value = entry.average.average(newValue, timestampNanos);
+      entry.lastSeen = timestampNanos;
+      return entry.value;
+    }
+  }
+
+  /**
+   * @return true if the key has an average
+   */
+  public boolean contains(K key) {
+    Stripe<K> stripe = stripe(key);
+    synchronized (stripe) {
+      return stripe.averages.containsKey(key);
+    }
+  }
+
+  /**
+   * Removes the average of the key, a later update starts a new average. The listener is not notified.
+   *
+   * @return true if the key had an average
+   */
+  public boolean remove(K key) {
+    Stripe<K> stripe = stripe(key);
+    synchronized (stripe) {
+      return stripe.averages.remove(key) != null;
+    }
+  }
+
+  /**
+   * Expires every key idle for the timeout at {@code nowNanos}
+   *
+   * @return the number of expired keys, always zero without an idle timeout
+   */
+  public int expire(long nowNanos) {
+    return expire(nowNanos, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Expires the keys idle for the timeout at {@code nowNanos}, at most {@code maxSteps} per stripe,
+   * the others expire in a later call.
+   * Stripes are locked one at a time, updates of the other stripes go on meanwhile.
+   *
+   * @param nowNanos the current time, in nanoseconds
+   * @param maxSteps the most keys to expire per stripe in this call, must be greater than zero
+   * @return the number of expired keys, always zero without an idle timeout
+   */
+  public int expire(long nowNanos, int maxSteps) {
+    if (maxSteps < 1) {
+      throw new IllegalArgumentException("maxSteps must be greater than zero");
+    }
+    if (timeout == 0) {
+      return 0;
+    }
+    int expired = 0;
+    for (Stripe<K> stripe : stripes) {
+      synchronized (stripe) {
+        Iterator<Map.Entry<K, KeyState>> entries = stripe.averages.entrySet().iterator();
+        for (int steps = 0; steps < maxSteps && entries.hasNext(); steps++) {
+          Map.Entry<K, KeyState> next = entries.next();
+          KeyState entry = next.getValue();
+          if (nowNanos - entry.lastSeen < timeout) {
+            break;
+          }
+          entries.remove();
+          if (listener != null) {
+            listener.onExpired(next.getKey(), entry.value, entry.lastSeen);
+          }
+          expired++;
+        }
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return the number of keys, not atomic with concurrent updates
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe<K> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.averages.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Removes all averages, not atomic with concurrent updates
+   */
+  public void clear() {
+    for (Stripe<K> stripe : stripes) {
+      synchronized (stripe) {
+        stripe.averages.clear();
+      }
+    }
+  }
+
+  private Stripe<K> stripe(K key) {
+    // high bits of the multiplied hash select the stripe, the maps inside use the low bits
+    int hash = key.hashCode() * 0x9E3779B9;
+    return stripes[(hash >>> shift) & mask];
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> Stripe<K>[] newStripes(int count) {
+    return (Stripe<K>[]) new Stripe<?>[count];
+  }
+
+  static int defaultStripes() {
+    return Runtime.getRuntime().availableProcessors() * 4;
+  }
+
+  static int stripeBits(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("stripes must be greater than zero");
+    }
+    if (stripes > 1 << 16) {
+      throw new IllegalArgumentException("stripes must not be greater than 65536");
+    }
+    return 32 - Integer.numberOfLeadingZeros(stripes - 1);
+  }
+
+  private static class Stripe<K> {
+
+    // in update order with an idle timeout, the oldest first
+    final HashMap<K, KeyState> averages;
+
+    Stripe(boolean expiring) {
+      averages = expiring ? new LinkedHashMap<K, KeyState>(16, 0.75f, true) : new HashMap<K, KeyState>();
+    }
+
+    KeyState getOrCreate(K key, MotionlessAverageFactory factory) {
+      KeyState entry = averages.get(key);
+      if (entry == null) {
+        entry = new KeyState(factory.create());
+        averages.put(key, entry);
+      }
+      return entry;
+    }
+  }
+
+  private static final class KeyState {
+
+    final TimestampedAverage average;
+    // last averaged value and its time, only kept with an idle timeout
+    float value;
+    long lastSeen;
+
+    KeyState(TimestampedAverage average) {
+      this.average = average;
+    }
+  }
+
+  /**
+   * Notified of the keys that expired
+   *
+   * @param <K> type of the keys
+   */
+  public interface Listener<K> {
+
+    /**
+     * @param key           the expired key, already removed from the registry
+     * @param value         the last averaged value of the key
+     * @param lastSeenNanos time of the last update of the key
+     */
+    void onExpired(K key, float value, long lastSeenNanos);
+  }
+
+  public static class Builder<K> {
+
+    private final MotionlessAverageFactory factory;
+    private int stripes = defaultStripes();
+    private long idleTimeoutMs;
+    private Listener<K> listener;
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param factory creates the average of each new key
+     */
+    public Builder(MotionlessAverageFactory factory) {
+      if (factory == null) {
+        throw new IllegalArgumentException("factory must not be null");
+      }
+      this.factory = factory;
+    }
+
+    /**
+     * Number of lock stripes, rounded up to a power of two. Defaults to four per available processor.
+     */
+    public Builder<K> stripes(int stripes) {
+      stripeBits(stripes);
+      this.stripes = stripes;
+      return this;
+    }
+
+    /**
+     * Forgets keys not updated for the timeout, during {@link MotionlessAverageRegistry#expire(long, int)}.
+     * Defaults to never.
+     *
+     * @param idleTimeoutMs time after its last update a key expires, in milliseconds. Must be greater than zero
+     */
+    public Builder<K> idleTimeoutMs(long idleTimeoutMs) {
+      if (idleTimeoutMs <= 0) {
+        throw new IllegalArgumentException("idleTimeoutMs must be greater than zero");
+      }
+      this.idleTimeoutMs = idleTimeoutMs;
+      return this;
+    }
+
+    /**
+     * Notified of every expired key with its last averaged value.
+     * It's called with the stripe of the key locked, it must not use the registry.
+     */
+    public Builder<K> listener(Listener<K> listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Clock of {@link MotionlessAverageRegistry#average(Object, float)} with an idle timeout.
+     * Defaults to {@link NanoClock.Builder#systemClock()}, use the clock of the factory
+     */
+    public Builder<K> clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public MotionlessAverageRegistry<K> build() {
+      return new MotionlessAverageRegistry<>(factory, stripes, idleTimeoutMs * MotionlessAverage.Builder.NANO, listener, clock);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+
+/**
+ * Mergeable state of an average over one segment of a stream, for filtering the parts of a long stream in parallel.
+ * <p>
+ * Split the stream into consecutive segments, average each segment in its own segment object,
+ * on any thread or node, then {@link #merge(MotionlessAverageSegment)} each segment with the one following it.
+ * Merging is associative, so segments can be reduced in any grouping, for example in a fork join tree,
+ * as long as their order in the stream is kept.
+ * {@link #value()} of the merged segment is the value the average would have after the whole stream,
+ * and {@link #createAverage()} continues from there.
+ * <p>
+ * Constant filter, time dependent and exponential decay averages keep the effect of a segment
+ * as a linear function of the value before it, the merged value matches the sequential one up to rounding.
+ * The first value of a segment is weighted when the segment is merged, with the timestamp of the value before it,
+ * so splitting a stream anywhere gives the same result.
+ * Kalman filters keep their estimate and covariance and merge them in information form.
+ * This is exact, up to rounding, for a motionless signal: process noise {@code r} of zero with the default vectors.
+ * Otherwise it's the fusion of two independent estimates, which ignores the process noise between them.
+ * <p>
+ * Segments are not thread safe, use one per segment and merge them once they are complete.
+ */
+public abstract class MotionlessAverageSegment implements TimestampedAverage {
+
+  final MotionlessAverageFactory factory;
+  long count;
+
+  MotionlessAverageSegment(MotionlessAverageFactory factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Adds a value at the end of the segment, timestamped now
+   *
+   * @return the value of the segment so far, see {@link #value()}
+   */
+  @Override public float average(float newValue) {
+    return average(newValue, System.nanoTime());
+  }
+
+  /**
+   * Adds a value at the end of the segment
+   *
+   * @return the value of the segment so far, see {@link #value()}
+   */
+  @Override public float average(float newValue, long timestampNanos) {
+    add(newValue, timestampNanos);
+    return value();
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      add(values[i], timestampsNanos[i]);
+      out[i] = value();
+    }
+  }
+
+  abstract void add(float newValue, long timestampNanos);
+
+  /**
+   * Empties the segment
+   */
+  @Override public void reset() {
+    count = 0;
+  }
+
+  /**
+   * Appends the segment that directly follows this one in the stream. The other segment is not changed.
+   *
+   * @param next segment created by an equal factory
+   * @return this segment
+   */
+  public MotionlessAverageSegment merge(MotionlessAverageSegment next) {
+    if (next.getClass() != getClass() || !next.factory.equals(factory)) {
+      throw new IllegalArgumentException("segments must be created by equal factories");
+    }
+    if (next.count == 0) {
+      return this;
+    }
+    if (count == 0) {
+      copy(next);
+    } else {
+      append(next);
+      count += next.count;
+    }
+    return this;
+  }
+
+  abstract void copy(MotionlessAverageSegment other);
+
+  abstract void append(MotionlessAverageSegment next);
+
+  /**
+   * @return the value of the average after every value of this segment and the segments merged into it,
+   * as if they were averaged in one go. NaN if the segment is empty
+   */
+  public abstract float value();
+
+  /**
+   * @return the number of values in this segment and the segments merged into it
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * @return a new average of the factory, continuing from the end of this segment
+   */
+  public abstract TimestampedAverage createAverage();
+
+  /**
+   * @return the number of bytes {@link #write(ByteBuffer)} writes
+   */
+  public abstract int bytes();
+
+  /**
+   * Writes the state of the segment, to merge it on another node.
+   * The configuration is not written, both nodes need equal factories.
+   */
+  public void write(ByteBuffer out) {
+    out.putLong(count);
+  }
+
+  /**
+   * Replaces the state of this segment with one written by {@link #write(ByteBuffer)}
+   */
+  public void read(ByteBuffer in) {
+    long count = in.getLong();
+    if (count < 0) {
+      throw new IllegalArgumentException("not a segment");
+    }
+    this.count = count;
+  }
+
+  public static class Builder {
+
+    /**
+     * Creates an empty segment for the averages of the factory.
+     * Supports constant filter, time dependent, exponential decay and Kalman filter factories.
+     *
+     * @param factory factory of the averages, segments can only be merged with segments of an equal factory
+     */
+    public static MotionlessAverageSegment create(MotionlessAverageFactory factory) {
+      if (factory instanceof MotionlessAverageFactory.Builder.KalmanFilterFactory) {
+        return new KalmanSegment((MotionlessAverageFactory.Builder.KalmanFilterFactory) factory);
+      }
+      if (factory instanceof MotionlessAverageFactory.Builder.ConstantFilterFactory
+          || factory instanceof MotionlessAverageFactory.Builder.TimedFilterFactory
+          || factory instanceof MotionlessAverageFactory.Builder.ExponentialDecayFactory) {
+        return new ExponentialSegment(factory);
+      }
+      throw new IllegalArgumentException("segments of " + factory + " can't be merged");
+    }
+  }
+}
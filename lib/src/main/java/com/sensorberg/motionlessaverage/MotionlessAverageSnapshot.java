@@ -0,0 +1,603 @@
+package com.sensorberg.motionlessaverage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary snapshots of the state of banks and tables, for fast restarts.
+ * <p>
+ * A snapshot holds the configuration and the complete state of every channel, so restored filters continue
+ * exactly where they stopped instead of converging again from scratch.
+ * The state is stored column-wise in little endian primitive arrays behind a 64 byte header.
+ * Restoring maps the file and copies every column in bulk, there's no per record parsing.
+ * <p>
+ * Delta snapshots contain only the channels updated since the previous snapshot of the same bank,
+ * see {@link MotionlessAverageBank#enableChangeTracking()}.
+ * Apply them in order on top of the restored full snapshot.
+ * <p>
+ * Timestamps of time dependent filters are assumed to come from {@link System#nanoTime()}.
+ * They are moved to the timeline of the restoring process, keeping the wall clock time that passed
+ * since the snapshot was written as the gap since the last update.
+ * <p>
+ * Off heap banks are not supported.
+ */
+public class MotionlessAverageSnapshot {
+
+  static final int MAGIC = 0x5356414D; // "MAVS" in little endian
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 64;
+
+  static final int LAYOUT_BANK = 1;
+  static final int LAYOUT_BANK_DELTA = 2;
+  static final int LAYOUT_TABLE = 3;
+
+  static final int KIND_CONSTANT = 1;
+  static final int KIND_TIMED = 2;
+  static final int KIND_KALMAN = 3;
+
+  private static final int MAX_MAPPING = 1 << 30;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Writes the complete state of the bank.
+   * Clears the changes recorded for delta snapshots.
+   *
+   * @param bank bank to write
+   * @param path file to write, replaced if it exists
+   * @throws IOException if the file can't be written
+   */
+  public static void write(MotionlessAverageBank bank, Path path) throws IOException {
+    int kind = kindOf(bank);
+    int size = bank.size;
+    try (Writer out = new Writer(path)) {
+      writeHeader(out, LAYOUT_BANK, kind, size, size, bank);
+      switch (kind) {
+        case KIND_CONSTANT:
+          out.floats(((ConstantFilterBank) bank).values, 0, size);
+          break;
+        case KIND_TIMED:
+          out.floats(((TimedFilterBank) bank).values, 0, size);
+          out.longs(((TimedFilterBank) bank).lastSeen, 0, size);
+          break;
+        default:
+          out.floats(((KalmanFilterBank) bank).x, 0, size);
+          out.floats(((KalmanFilterBank) bank).cov, 0, size);
+      }
+    }
+    if (bank.changed != null) {
+      Arrays.fill(bank.changed, 0L);
+    }
+  }
+
+  /**
+   * Writes the state of the channels updated since the last snapshot of the bank.
+   *
+   * @param bank bank to write, with change tracking enabled
+   * @param path file to write, replaced if it exists
+   * @return number of channels written
+   * @throws IOException if the file can't be written
+   */
+  public static int writeDelta(MotionlessAverageBank bank, Path path) throws IOException {
+    int kind = kindOf(bank);
+    long[] changed = bank.changed;
+    if (changed == null) {
+      throw new IllegalArgumentException("change tracking is not enabled on this bank");
+    }
+    int count = 0;
+    for (long word : changed) {
+      count += Long.bitCount(word);
+    }
+    int[] channels = new int[count];
+    int n = 0;
+    for (int i = 0; i < changed.length; i++) {
+      long word = changed[i];
+      while (word != 0) {
+        channels[n++] = (i << 6) + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
+    }
+    try (Writer out = new Writer(path)) {
+      writeHeader(out, LAYOUT_BANK_DELTA, kind, bank.size, count, bank);
+      out.ints(channels, 0, count);
+      switch (kind) {
+        case KIND_CONSTANT:
+          out.floats(gather(((ConstantFilterBank) bank).values, channels), 0, count);
+          break;
+        case KIND_TIMED:
+          out.floats(gather(((TimedFilterBank) bank).values, channels), 0, count);
+          out.longs(gather(((TimedFilterBank) bank).lastSeen, channels), 0, count);
+          break;
+        default:
+          out.floats(gather(((KalmanFilterBank) bank).x, channels), 0, count);
+          out.floats(gather(((KalmanFilterBank) bank).cov, channels), 0, count);
+      }
+    }
+    Arrays.fill(changed, 0L);
+    return count;
+  }
+
+  /**
+   * Restores a bank from a full snapshot
+   *
+   * @param path file written by {@link #write(MotionlessAverageBank, Path)}
+   * @return a new bank with the configuration and state of the snapshot
+   * @throws IOException if the file can't be read or isn't a bank snapshot
+   */
+  public static MotionlessAverageBank readBank(Path path) throws IOException {
+    try (Reader in = new Reader(path)) {
+      Header header = in.header(LAYOUT_BANK);
+      int size = header.capacity;
+      switch (header.kind) {
+        case KIND_CONSTANT: {
+          ConstantFilterBank bank = new ConstantFilterBank(size, header.params.getFloat(0));
+          in.floats(bank.values, size);
+          return bank;
+        }
+        case KIND_TIMED: {
+          TimedFilterBank bank = new TimedFilterBank(size, header.params.getFloat(0), header.params.getFloat(4),
+              header.params.getLong(8), header.params.getLong(16));
+          in.floats(bank.values, size);
+          in.longs(bank.lastSeen, size);
+          shift(bank.lastSeen, bank.values, size, header.timestampShift());
+          return bank;
+        }
+        default: {
+          KalmanFilterBank bank = new KalmanFilterBank(size, header.params.getFloat(0), header.params.getFloat(4),
+              header.params.getFloat(8), header.params.getFloat(12), header.params.getFloat(16));
+          in.floats(bank.x, size);
+          in.floats(bank.cov, size);
+          return bank;
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies a delta snapshot to a bank restored from an earlier snapshot of the same bank
+   *
+   * @param path file written by {@link #writeDelta(MotionlessAverageBank, Path)}
+   * @param bank bank with the same kind, size and configuration as the bank the delta was written from
+   * @return number of channels updated
+   * @throws IOException if the file can't be read or isn't a delta snapshot
+   */
+  public static int applyDelta(Path path, MotionlessAverageBank bank) throws IOException {
+    int kind = kindOf(bank);
+    try (Reader in = new Reader(path)) {
+      Header header = in.header(LAYOUT_BANK_DELTA);
+      ByteBuffer params = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+      writeParams(params, bank);
+      params.flip();
+      if (header.kind != kind || header.capacity != bank.size || !params.equals(header.params)) {
+        throw new IllegalArgumentException("delta snapshot was written from a different bank");
+      }
+      int count = header.count;
+      int[] channels = new int[count];
+      in.ints(channels, count);
+      for (int channel : channels) {
+        if (channel < 0 || channel >= bank.size) {
+          throw new IOException("corrupt delta snapshot, channel " + channel + " out of range");
+        }
+      }
+      float[] values = new float[count];
+      in.floats(values, count);
+      switch (kind) {
+        case KIND_CONSTANT:
+          scatter(values, channels, ((ConstantFilterBank) bank).values);
+          break;
+        case KIND_TIMED: {
+          long[] lastSeen = new long[count];
+          in.longs(lastSeen, count);
+          shift(lastSeen, values, count, header.timestampShift());
+          scatter(values, channels, ((TimedFilterBank) bank).values);
+          scatter(lastSeen, channels, ((TimedFilterBank) bank).lastSeen);
+          break;
+        }
+        default: {
+          float[] cov = new float[count];
+          in.floats(cov, count);
+          scatter(values, channels, ((KalmanFilterBank) bank).x);
+          scatter(cov, channels, ((KalmanFilterBank) bank).cov);
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Writes the keys and the complete state of the table
+   *
+   * @param table table to write
+   * @param path  file to write, replaced if it exists
+   * @throws IOException if the file can't be written
+   */
+  public static void write(LongMotionlessAverageTable table, Path path) throws IOException {
+    int kind = kindOf(table);
+    int capacity = table.keys.length;
+    try (Writer out = new Writer(path)) {
+      writeHeader(out, LAYOUT_TABLE, kind, capacity, table.size, table);
+      out.longs(table.keys, 0, capacity);
+      out.booleans(table.used, capacity);
+      switch (kind) {
+        case KIND_CONSTANT:
+          out.floats(((LongConstantFilterTable) table).values, 0, capacity);
+          break;
+        case KIND_TIMED:
+          out.floats(((LongTimedFilterTable) table).values, 0, capacity);
+          out.longs(((LongTimedFilterTable) table).lastSeen, 0, capacity);
+          break;
+        default:
+          out.floats(((LongKalmanFilterTable) table).x, 0, capacity);
+          out.floats(((LongKalmanFilterTable) table).cov, 0, capacity);
+      }
+    }
+  }
+
+  /**
+   * Restores a table from a snapshot
+   *
+   * @param path file written by {@link #write(LongMotionlessAverageTable, Path)}
+   * @return a new table with the configuration, keys and state of the snapshot
+   * @throws IOException if the file can't be read or isn't a table snapshot
+   */
+  public static LongMotionlessAverageTable readTable(Path path) throws IOException {
+    try (Reader in = new Reader(path)) {
+      Header header = in.header(LAYOUT_TABLE);
+      int capacity = header.capacity;
+      if (capacity < 2 || capacity > LongHashSlots.MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+        throw new IOException("corrupt table snapshot, capacity " + capacity);
+      }
+      LongMotionlessAverageTable table;
+      switch (header.kind) {
+        case KIND_CONSTANT:
+          table = new LongConstantFilterTable(0, header.params.getFloat(0));
+          break;
+        case KIND_TIMED:
+          table = new LongTimedFilterTable(0, header.params.getFloat(0), header.params.getFloat(4),
+              header.params.getLong(8), header.params.getLong(16));
+          break;
+        default:
+          table = new LongKalmanFilterTable(0, header.params.getFloat(0), header.params.getFloat(4),
+              header.params.getFloat(8), header.params.getFloat(12), header.params.getFloat(16));
+      }
+      table.reset(capacity);
+      in.longs(table.keys, capacity);
+      in.booleans(table.used, capacity);
+      switch (header.kind) {
+        case KIND_CONSTANT:
+          in.floats(((LongConstantFilterTable) table).values, capacity);
+          break;
+        case KIND_TIMED: {
+          LongTimedFilterTable timed = (LongTimedFilterTable) table;
+          in.floats(timed.values, capacity);
+          in.longs(timed.lastSeen, capacity);
+          shift(timed.lastSeen, timed.values, capacity, header.timestampShift());
+          break;
+        }
+        default:
+          in.floats(((LongKalmanFilterTable) table).x, capacity);
+          in.floats(((LongKalmanFilterTable) table).cov, capacity);
+      }
+      int size = 0;
+      for (boolean used : table.used) {
+        if (used) {
+          size++;
+        }
+      }
+      if (size != header.count || size > capacity * LongHashSlots.LOAD_FACTOR) {
+        throw new IOException("corrupt table snapshot, " + size + " keys");
+      }
+      table.size = size;
+      return table;
+    }
+  }
+
+  private static int kindOf(MotionlessAverageBank bank) {
+    if (bank instanceof ConstantFilterBank) {
+      return KIND_CONSTANT;
+    } else if (bank instanceof TimedFilterBank) {
+      return KIND_TIMED;
+    } else if (bank instanceof KalmanFilterBank) {
+      return KIND_KALMAN;
+    }
+    throw new IllegalArgumentException("snapshots are not supported for " + bank.getClass().getSimpleName());
+  }
+
+  private static int kindOf(LongMotionlessAverageTable table) {
+    if (table instanceof LongConstantFilterTable) {
+      return KIND_CONSTANT;
+    } else if (table instanceof LongTimedFilterTable) {
+      return KIND_TIMED;
+    }
+    return KIND_KALMAN;
+  }
+
+  private static void writeHeader(Writer out, int layout, int kind, int capacity, int count, Object source) throws IOException {
+    ByteBuffer header = out.buffer;
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(layout);
+    header.putInt(kind);
+    header.putInt(capacity);
+    header.putInt(count);
+    header.putLong(System.nanoTime());
+    header.putLong(System.currentTimeMillis());
+    writeParams(header, source);
+    out.written += HEADER_SIZE;
+  }
+
+  private static void writeParams(ByteBuffer params, Object source) {
+    int start = params.position();
+    if (source instanceof ConstantFilterBank) {
+      params.putFloat(((ConstantFilterBank) source).filter);
+    } else if (source instanceof LongConstantFilterTable) {
+      params.putFloat(((LongConstantFilterTable) source).filter);
+    } else if (source instanceof TimedFilterBank) {
+      TimedFilterBank bank = (TimedFilterBank) source;
+      params.putFloat(bank.angle).putFloat(bank.constant).putLong(bank.minTime).putLong(bank.maxTime);
+    } else if (source instanceof LongTimedFilterTable) {
+      LongTimedFilterTable table = (LongTimedFilterTable) source;
+      params.putFloat(table.angle).putFloat(table.constant).putLong(table.minTime).putLong(table.maxTime);
+    } else if (source instanceof KalmanFilterBank) {
+      KalmanFilterBank bank = (KalmanFilterBank) source;
+      params.putFloat(bank.r).putFloat(bank.q).putFloat(bank.a).putFloat(bank.b).putFloat(bank.c);
+    } else {
+      LongKalmanFilterTable table = (LongKalmanFilterTable) source;
+      params.putFloat(table.r).putFloat(table.q).putFloat(table.a).putFloat(table.b).putFloat(table.c);
+    }
+    while (params.position() < start + 24) {
+      params.put((byte) 0);
+    }
+  }
+
+  private static void shift(long[] timestamps, float[] values, int len, long shift) {
+    for (int i = 0; i < len; i++) {
+      // uninitialized filters have no time of their last update
+      if (!Float.isNaN(values[i])) {
+        timestamps[i] += shift;
+      }
+    }
+  }
+
+  private static float[] gather(float[] source, int[] channels) {
+    float[] gathered = new float[channels.length];
+    for (int i = 0; i < channels.length; i++) {
+      gathered[i] = source[channels[i]];
+    }
+    return gathered;
+  }
+
+  private static long[] gather(long[] source, int[] channels) {
+    long[] gathered = new long[channels.length];
+    for (int i = 0; i < channels.length; i++) {
+      gathered[i] = source[channels[i]];
+    }
+    return gathered;
+  }
+
+  private static void scatter(float[] values, int[] channels, float[] target) {
+    for (int i = 0; i < channels.length; i++) {
+      target[channels[i]] = values[i];
+    }
+  }
+
+  private static void scatter(long[] values, int[] channels, long[] target) {
+    for (int i = 0; i < channels.length; i++) {
+      target[channels[i]] = values[i];
+    }
+  }
+
+  private static final class Header {
+    int kind;
+    int capacity;
+    int count;
+    long writtenAtNanos;
+    long writtenAtMillis;
+    ByteBuffer params;
+
+    /**
+     * @return the value to add to the written timestamps to move them to this process' timeline
+     */
+    long timestampShift() {
+      long elapsedMillis = Math.max(0, System.currentTimeMillis() - writtenAtMillis);
+      return System.nanoTime() - elapsedMillis * MotionlessAverage.Builder.NANO - writtenAtNanos;
+    }
+  }
+
+  /**
+   * Writes sections through a staging buffer, each section padded to 8 bytes
+   */
+  private static final class Writer implements AutoCloseable {
+
+    final FileChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    long written;
+
+    Writer(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void ints(int[] values, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = Math.min(len, room() >> 2);
+        buffer.asIntBuffer().put(values, off, n);
+        advance(n << 2);
+        off += n;
+        len -= n;
+      }
+      pad();
+    }
+
+    void floats(float[] values, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = Math.min(len, room() >> 2);
+        buffer.asFloatBuffer().put(values, off, n);
+        advance(n << 2);
+        off += n;
+        len -= n;
+      }
+      pad();
+    }
+
+    void longs(long[] values, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = Math.min(len, room() >> 3);
+        buffer.asLongBuffer().put(values, off, n);
+        advance(n << 3);
+        off += n;
+        len -= n;
+      }
+      pad();
+    }
+
+    void booleans(boolean[] values, int len) throws IOException {
+      for (int i = 0; i < len; i++) {
+        if (!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.put(values[i] ? (byte) 1 : (byte) 0);
+      }
+      written += len;
+      pad();
+    }
+
+    private int room() throws IOException {
+      if (buffer.remaining() < 8) {
+        flush();
+      }
+      return buffer.remaining();
+    }
+
+    private void advance(int bytes) {
+      buffer.position(buffer.position() + bytes);
+      written += bytes;
+    }
+
+    private void pad() throws IOException {
+      while ((written & 7) != 0) {
+        if (!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.put((byte) 0);
+        written++;
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Reads sections by mapping the file, each section padded to 8 bytes
+   */
+  private static final class Reader implements AutoCloseable {
+
+    final FileChannel channel;
+    final long fileSize;
+    long position;
+
+    Reader(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      fileSize = channel.size();
+    }
+
+    Header header(int layout) throws IOException {
+      ByteBuffer buffer = map(HEADER_SIZE);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("not a snapshot");
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("unsupported snapshot version " + buffer.getInt(4));
+      }
+      if (buffer.getInt(8) != layout) {
+        throw new IOException("unexpected snapshot layout " + buffer.getInt(8));
+      }
+      Header header = new Header();
+      header.kind = buffer.getInt(12);
+      header.capacity = buffer.getInt(16);
+      header.count = buffer.getInt(20);
+      header.writtenAtNanos = buffer.getLong(24);
+      header.writtenAtMillis = buffer.getLong(32);
+      buffer.position(40);
+      header.params = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+      if (header.kind < KIND_CONSTANT || header.kind > KIND_KALMAN || header.capacity < 0 || header.count < 0) {
+        throw new IOException("corrupt snapshot header");
+      }
+      return header;
+    }
+
+    void ints(int[] values, int len) throws IOException {
+      for (int off = 0; off < len; ) {
+        int n = Math.min(len - off, MAX_MAPPING >> 2);
+        map((long) n << 2).asIntBuffer().get(values, off, n);
+        off += n;
+      }
+      pad();
+    }
+
+    void floats(float[] values, int len) throws IOException {
+      for (int off = 0; off < len; ) {
+        int n = Math.min(len - off, MAX_MAPPING >> 2);
+        map((long) n << 2).asFloatBuffer().get(values, off, n);
+        off += n;
+      }
+      pad();
+    }
+
+    void longs(long[] values, int len) throws IOException {
+      for (int off = 0; off < len; ) {
+        int n = Math.min(len - off, MAX_MAPPING >> 3);
+        map((long) n << 3).asLongBuffer().get(values, off, n);
+        off += n;
+      }
+      pad();
+    }
+
+    void booleans(boolean[] values, int len) throws IOException {
+      for (int off = 0; off < len; ) {
+        int n = Math.min(len - off, MAX_MAPPING);
+        ByteBuffer buffer = map(n);
+        for (int i = 0; i < n; i++) {
+          values[off + i] = buffer.get(i) != 0;
+        }
+        off += n;
+      }
+      pad();
+    }
+
+    private ByteBuffer map(long bytes) throws IOException {
+      if (position + bytes > fileSize) {
+        throw new IOException("truncated snapshot");
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+      position += bytes;
+      return buffer;
+    }
+
+    private void pad() {
+      position = (position + 7) & ~7L;
+    }
+
+    @Override public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+/**
+ * Several time dependent averages of the same signal, from fast to slow, updated together.
+ * <p>
+ * Each level behaves exactly like a {@link MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)}
+ * with its own minFilter and maxFilter, all levels sharing minTime and maxTime.
+ * The elapsed time is read and clamped once per value, then all levels are updated in one loop over primitive arrays.
+ * Comparing levels, for example a fast level crossing a slow one to detect motion, costs a subtraction.
+ * <p>
+ * {@link #average(float)} returns the value of level zero, the first level added to the builder.
+ * Cascades are not thread safe.
+ */
+public class MotionlessCascadeAverage implements TimestampedAverage {
+
+  final long minTime;
+  final long maxTime;
+  final float[] angles;
+  final float[] constants;
+  final NanoClock clock;
+
+  final float[] values;
+  private final float[] previous;
+  private long lastSeen;
+
+  MotionlessCascadeAverage(long minTime, long maxTime, float[] angles, float[] constants, NanoClock clock) {
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.angles = angles;
+    this.constants = constants;
+    this.clock = clock;
+    values = new float[angles.length];
+    previous = new float[angles.length];
+    Arrays.fill(values, Float.NaN);
+    Arrays.fill(previous, Float.NaN);
+  }
+
+  /**
+   * @return the new value of level zero
+   */
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  /**
+   * @return the new value of level zero
+   */
+  @Override public float average(float newValue, long timestampNanos) {
+    update(newValue, timestampNanos);
+    return values[0];
+  }
+
+  /**
+   * Averages the values in order, writing the new value of level zero to {@code out}
+   */
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      update(values[i], timestampsNanos[i]);
+      out[i] = this.values[0];
+    }
+  }
+
+  private void update(float newValue, long now) {
+    float[] values = this.values;
+    float[] previous = this.previous;
+    float diff = calculateDiff(now, lastSeen, minTime, maxTime);
+    float[] angles = this.angles;
+    float[] constants = this.constants;
+    for (int k = 0; k < values.length; k++) {
+      float value = values[k];
+      previous[k] = value;
+      // like TimedFilter, a level that is NaN starts over with the new value
+      values[k] = Float.isNaN(value) ? newValue : calculateAverage(value, newValue, calculateY(angles[k], constants[k], diff));
+    }
+    lastSeen = now;
+  }
+
+  @Override public void reset() {
+    Arrays.fill(values, Float.NaN);
+    Arrays.fill(previous, Float.NaN);
+    lastSeen = 0;
+  }
+
+  /**
+   * @return the number of levels
+   */
+  public int levels() {
+    return values.length;
+  }
+
+  /**
+   * @param level index of the level, in the order they were added to the builder
+   * @return the current value of the level, NaN before the first value
+   */
+  public float value(int level) {
+    return values[level];
+  }
+
+  /**
+   * Copies the current value of every level
+   *
+   * @param out receives one value per level
+   */
+  public void values(float[] out) {
+    System.arraycopy(values, 0, out, 0, values.length);
+  }
+
+  /**
+   * @return the value of level {@code a} minus the value of level {@code b}
+   */
+  public float difference(int a, int b) {
+    return values[a] - values[b];
+  }
+
+  /**
+   * Tells whether the last value made level {@code a} cross level {@code b},
+   * for example a fast level crossing a slow one when the signal starts or stops moving.
+   *
+   * @return 1 if {@code a} rose above {@code b}, -1 if it fell below, 0 otherwise
+   */
+  public int crossover(int a, int b) {
+    float before = previous[a] - previous[b];
+    float after = values[a] - values[b];
+    if (before <= 0 && after > 0) {
+      return 1;
+    }
+    if (before >= 0 && after < 0) {
+      return -1;
+    }
+    return 0;
+  }
+
+  public static class Builder {
+
+    private final long minTimeMs;
+    private final long maxTimeMs;
+    private final List<TimedFilter> levels = new ArrayList<>();
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param minTimeMs minimum allowed update period of every level (in milliseconds). Must be greater than zero
+     * @param maxTimeMs maximum allowed update period of every level (in milliseconds). Must be greater than minTimeMs
+     */
+    public Builder(long minTimeMs, long maxTimeMs) {
+      // validates the times
+      MotionlessAverage.Builder.createTimeDependentAverage(1, 2, minTimeMs, maxTimeMs);
+      this.minTimeMs = minTimeMs;
+      this.maxTimeMs = maxTimeMs;
+    }
+
+    /**
+     * Adds a level, levels are numbered in the order they are added
+     *
+     * @param minFilter minimum allowed filter value. Must be greater than one
+     * @param maxFilter maximum allowed filter value. Must be greater than minFilter
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public Builder level(float minFilter, float maxFilter) {
+      levels.add((TimedFilter) MotionlessAverage.Builder.createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs));
+      return this;
+    }
+
+    /**
+     * Clock of {@link MotionlessCascadeAverage#average(float)}. Defaults to {@link NanoClock.Builder#systemClock()}
+     */
+    public Builder clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public MotionlessCascadeAverage build() {
+      if (levels.isEmpty()) {
+        throw new IllegalArgumentException("at least one level is needed");
+      }
+      float[] angles = new float[levels.size()];
+      float[] constants = new float[levels.size()];
+      for (int k = 0; k < angles.length; k++) {
+        angles[k] = levels.get(k).angle;
+        constants[k] = levels.get(k).constant;
+      }
+      TimedFilter first = levels.get(0);
+      return new MotionlessCascadeAverage(first.minTime, first.maxTime, angles, constants, clock);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * A {@link TimestampedAverage} that also tracks the exponentially weighted variance of the values.
+ * <p>
+ * Mean and variance are updated together, in one step per value, with the same weights as the average.
+ * The mean is exactly the value of the corresponding average.
+ */
+public interface MotionlessStatistics extends TimestampedAverage {
+
+  /**
+   * @return the averaged value, NaN before the first value
+   */
+  float mean();
+
+  /**
+   * @return the exponentially weighted variance, zero after the first value and NaN before it
+   */
+  float variance();
+
+  /**
+   * @return the square root of the variance
+   */
+  float standardDeviation();
+
+  class Builder {
+
+    /**
+     * Statistics with the weights of {@link MotionlessAverage.Builder#createConstantFilterAverage(float)}
+     *
+     * @param filter value for the filter, must be greater than 1
+     */
+    public static MotionlessStatistics createConstantFilterStatistics(float filter) {
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      return new ConstantFilterStatistics(prototype.filter);
+    }
+
+    /**
+     * Statistics with the weights of {@link MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)}
+     *
+     * @param minFilter minimum allowed filter value. Must be greater than one
+     * @param maxFilter maximum allowed filter value. Must be greater than minFilter
+     * @param minTimeMs minimum allowed update period (in milliseconds). Must be greater than zero
+     * @param maxTimeMs maximum allowed update period (in milliseconds). Must be greater than minTimeMs
+     */
+    public static MotionlessStatistics createTimeDependentStatistics(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentStatistics(minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Statistics with the weights of {@link MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long, NanoClock)}
+     *
+     * @param clock source of the timestamps of {@link MotionlessStatistics#average(float)}, see {@link NanoClock.Builder}
+     */
+    public static MotionlessStatistics createTimeDependentStatistics(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new TimedFilterStatistics(prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Averages every component of a vector, for example the three axes of a sensor, in one call.
+ * <p>
+ * Each component is averaged exactly like its own {@link MotionlessAverage} of the same kind,
+ * but the filter weights are calculated once per update for all components,
+ * and the state lives in one primitive array instead of one object per component.
+ * The vector passed in is overwritten with the averaged values, nothing is allocated.
+ * <p>
+ * Vector averages are not thread safe.
+ */
+public interface MotionlessVectorAverage {
+
+  /**
+   * Averages a new vector, timestamped now
+   *
+   * @param values newly received values, one per dimension. Replaced by the averaged values
+   */
+  void average(float[] values);
+
+  /**
+   * Averages a new vector measured at the given time
+   *
+   * @param values         newly received values, one per dimension. Replaced by the averaged values
+   * @param timestampNanos time at which the values were measured, in nanoseconds
+   */
+  void average(float[] values, long timestampNanos);
+
+  /**
+   * @return the length of the averaged vector, NaN before the first update
+   */
+  float magnitude();
+
+  /**
+   * @return the number of components
+   */
+  int dimensions();
+
+  class Builder {
+
+    /**
+     * @param dimensions number of components, must be greater than zero
+     * @see MotionlessAverage.Builder#createConstantFilterAverage(float)
+     */
+    public static MotionlessVectorAverage createConstantFilterAverage(int dimensions, float filter) {
+      checkDimensions(dimensions);
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      return new ConstantFilterVector(dimensions, prototype.filter);
+    }
+
+    /**
+     * @param dimensions number of components, must be greater than zero
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static MotionlessVectorAverage createTimeDependentAverage(int dimensions, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentAverage(dimensions, minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * @param dimensions number of components, must be greater than zero
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long, NanoClock)
+     */
+    public static MotionlessVectorAverage createTimeDependentAverage(int dimensions, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      checkDimensions(dimensions);
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      return new TimedFilterVector(dimensions, prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+
+    /**
+     * @param dimensions number of components, must be greater than zero
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static KalmanFilterVector createSimplifiedKalmanFilter(int dimensions, float r, float q) {
+      return createKalmanFilter(dimensions, new KalmanFilter.Builder(r, q));
+    }
+
+    /**
+     * The covariance and gain don't depend on the signal,
+     * so they're calculated once per update and shared by all components.
+     *
+     * @param dimensions number of components, must be greater than zero
+     * @param builder    the configuration of every component, later changes to the builder are not reflected
+     * @see KalmanFilter.Builder
+     */
+    public static KalmanFilterVector createKalmanFilter(int dimensions, KalmanFilter.Builder builder) {
+      checkDimensions(dimensions);
+      KalmanFilter prototype = builder.build();
+      return new KalmanFilterVector(dimensions, prototype.r, prototype.q, prototype.a, prototype.b, prototype.c,
+          prototype.steadyStateTolerance);
+    }
+
+    private static void checkDimensions(int dimensions) {
+      if (dimensions < 1) {
+        throw new IllegalArgumentException("dimensions must be greater than zero");
+      }
+    }
+  }
+
+  class Helper {
+
+    /**
+     * Euclidean length of a vector in float math, without {@code Math.pow}
+     *
+     * @param values the components of the vector
+     * @return the length of the vector
+     */
+    public static float magnitude(float[] values) {
+      return MathHelpers.calculateMagnitude(values);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Source of the timestamps of time dependent averages, in nanoseconds.
+ * Only differences between two readings are meaningful, as for {@link System#nanoTime()}.
+ * <p>
+ * To let many averages share one reading, for example all filters updated by the same batch,
+ * read the clock once and pass the timestamp to {@link TimestampedAverage#average(float, long)}.
+ */
+public interface NanoClock {
+
+  /**
+   * @return the current time, in nanoseconds. Never goes backwards
+   */
+  long nanoTime();
+
+  class Builder {
+
+    /**
+     * @return the clock reading {@link System#nanoTime()}, the default of every average
+     */
+    public static NanoClock systemClock() {
+      return SystemNanoClock.INSTANCE;
+    }
+
+    /**
+     * Creates a clock updated by a background thread every {@code resolutionMs}, reading it costs one volatile read.
+     * Share it between many averages, each clock runs its own daemon thread until it's closed.
+     *
+     * @param resolutionMs interval between two updates of the clock, in milliseconds. Must be greater than zero
+     * @return a started coarse clock
+     */
+    public static CoarseNanoClock createCoarseClock(long resolutionMs) {
+      if (resolutionMs <= 0) {
+        throw new IllegalArgumentException("resolutionMs must be greater than zero");
+      }
+      return new CoarseNanoClock(resolutionMs * MotionlessAverage.Builder.NANO);
+    }
+
+    /**
+     * Creates a clock that only moves when told to, for tests and replays
+     *
+     * @param startNanos the initial time, in nanoseconds
+     * @return a manual clock
+     */
+    public static ManualNanoClock createManualClock(long startNanos) {
+      return new ManualNanoClock(startNanos);
+    }
+  }
+}
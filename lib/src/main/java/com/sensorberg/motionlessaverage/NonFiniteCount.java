@@ -0,0 +1,53 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * Counts the NaN and infinite values of a window, which are kept out of its running sum.
+ * Their sum only depends on which of them are in the window: NaN if there is a NaN or both infinities,
+ * otherwise the infinity.
+ */
+final class NonFiniteCount {
+
+  private int nan;
+  private int positive;
+  private int negative;
+
+  void add(float value) {
+    if (Float.isNaN(value)) {
+      nan++;
+    } else if (value > 0) {
+      positive++;
+    } else {
+      negative++;
+    }
+  }
+
+  void remove(float value) {
+    if (Float.isNaN(value)) {
+      nan--;
+    } else if (value > 0) {
+      positive--;
+    } else {
+      negative--;
+    }
+  }
+
+  boolean isEmpty() {
+    return nan == 0 && positive == 0 && negative == 0;
+  }
+
+  /**
+   * @return the sum, and the average, of any window holding these values
+   */
+  float value() {
+    if (nan > 0 || (positive > 0 && negative > 0)) {
+      return Float.NaN;
+    }
+    return positive > 0 ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+  }
+
+  void reset() {
+    nan = 0;
+    positive = 0;
+    negative = 0;
+  }
+}
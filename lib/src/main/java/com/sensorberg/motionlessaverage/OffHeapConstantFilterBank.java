@@ -0,0 +1,52 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+
+/**
+ * Slot layout: value (float)
+ */
+class OffHeapConstantFilterBank extends OffHeapMotionlessAverageBank {
+
+  static final int SLOT_SIZE = 4;
+
+  private final float filter;
+
+  OffHeapConstantFilterBank(int size, float filter) {
+    super(size, SLOT_SIZE);
+    this.filter = filter;
+  }
+
+  @Override public float average(int channel, float newValue) {
+    ByteBuffer chunk = chunk(channel);
+    int offset = offset(channel);
+    float value = getValue(chunk, offset);
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      value = calculateAverage(value, newValue, filter);
+    }
+    putValue(chunk, offset, value);
+    markChanged(channel);
+    return value;
+  }
+
+  @Override public void average(int[] channels, float[] newValues, float[] out) {
+    checkBatch(channels, newValues, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i]);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long timestampNanos) {
+    return average(channel, newValue);
+  }
+
+  @Override public void average(int[] channels, float[] newValues, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, newValues, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i]);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanGain;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialCovariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanInitialEstimate;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanPrediction;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateKalmanUncertainty;
+
+/**
+ * Slot layout: x (float), cov (float)
+ */
+class OffHeapKalmanFilterBank extends OffHeapMotionlessAverageBank {
+
+  static final int SLOT_SIZE = 8;
+  static final int COV = 4;
+
+  private final float r;
+  private final float q;
+  private final float a;
+  private final float b;
+  private final float c;
+
+  OffHeapKalmanFilterBank(int size, float r, float q, float a, float b, float c) {
+    super(size, SLOT_SIZE);
+    this.r = r;
+    this.q = q;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+  }
+
+  float filter(int channel, float signal, float u) {
+    ByteBuffer chunk = chunk(channel);
+    int offset = offset(channel);
+    float estimate = getValue(chunk, offset);
+    if (Float.isNaN(estimate)) {
+      estimate = calculateKalmanInitialEstimate(signal, c);
+      chunk.putFloat(offset + COV, calculateKalmanInitialCovariance(c, q));
+    } else {
+      float prediction = calculateKalmanPrediction(estimate, u, a, b);
+      float uncertainty = calculateKalmanUncertainty(chunk.getFloat(offset + COV), a, r);
+      float kalmanGain = calculateKalmanGain(uncertainty, c, q);
+      estimate = calculateKalmanEstimate(prediction, kalmanGain, signal, c);
+      chunk.putFloat(offset + COV, calculateKalmanCovariance(uncertainty, kalmanGain, c));
+    }
+    putValue(chunk, offset, estimate);
+    markChanged(channel);
+    return estimate;
+  }
+
+  @Override public float average(int channel, float newValue) {
+    return filter(channel, newValue, 0.0f);
+  }
+
+  @Override public void average(int[] channels, float[] values, float[] out) {
+    checkBatch(channels, values, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = filter(channels[i], values[i], 0.0f);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long timestampNanos) {
+    return filter(channel, newValue, 0.0f);
+  }
+
+  @Override public void average(int[] channels, float[] values, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, values, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = filter(channels[i], values[i], 0.0f);
+    }
+  }
+}
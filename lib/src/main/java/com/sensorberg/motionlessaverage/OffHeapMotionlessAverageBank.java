@@ -0,0 +1,216 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link MotionlessAverageBank} keeping the state of its channels outside of the Java heap, in direct memory.
+ * <p>
+ * Channels are stored in fixed size slots, inside chunks of {@value #CHUNK_SLOTS} slots.
+ * The state of tens of millions of channels adds nothing to the heap and nothing to the garbage collector's work,
+ * only a few hundred chunk objects.
+ * The bank can grow with {@link #ensureCapacity(int)} and be reset in bulk with {@link #clear()}.
+ * Change tracking records updates and clears like on the heap banks, and grows with the bank.
+ * The direct memory is released when the bank is garbage collected.
+ * <p>
+ * Updates behave exactly like the heap banks. Banks are not thread safe.
+ */
+public abstract class OffHeapMotionlessAverageBank extends MotionlessAverageBank {
+
+  static final int CHUNK_BITS = 16;
+  static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+  static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+  private static final byte[] ZEROS = new byte[8192];
+  private static final int NAN_BITS = Float.floatToRawIntBits(Float.NaN);
+
+  final int slotSize;
+  ByteBuffer[] chunks = new ByteBuffer[0];
+
+  OffHeapMotionlessAverageBank(int size, int slotSize) {
+    super(0);
+    this.slotSize = slotSize;
+    ensureCapacity(size);
+  }
+
+  /**
+   * Grows the bank to at least the given number of channels.
+   * Existing channels keep their state, new channels start uninitialized.
+   *
+   * @param channels minimum number of channels
+   */
+  public void ensureCapacity(int channels) {
+    if (channels <= size) {
+      return;
+    }
+    int neededChunks = (int) (((long) channels + CHUNK_MASK) >>> CHUNK_BITS);
+    if (neededChunks > chunks.length) {
+      ByteBuffer[] grown = new ByteBuffer[neededChunks];
+      System.arraycopy(chunks, 0, grown, 0, chunks.length);
+      for (int i = chunks.length; i < neededChunks; i++) {
+        // direct memory is zeroed, which reads as uninitialized state
+        grown[i] = ByteBuffer.allocateDirect(CHUNK_SLOTS * slotSize).order(ByteOrder.nativeOrder());
+      }
+      chunks = grown;
+    }
+    if (changed != null && ((channels + 63) >>> 6) > changed.length) {
+      changed = Arrays.copyOf(changed, (channels + 63) >>> 6);
+    }
+    size = channels;
+  }
+
+  /**
+   * @return the number of bytes of direct memory held by this bank
+   */
+  public long directMemory() {
+    return (long) chunks.length * CHUNK_SLOTS * slotSize;
+  }
+
+  /**
+   * Resets every channel to its uninitialized state, keeping the capacity
+   */
+  public void clear() {
+    for (ByteBuffer chunk : chunks) {
+      ByteBuffer target = chunk.duplicate();
+      target.clear();
+      while (target.hasRemaining()) {
+        target.put(ZEROS, 0, Math.min(ZEROS.length, target.remaining()));
+      }
+    }
+    if (changed != null) {
+      Arrays.fill(changed, -1L);
+      if ((size & 63) != 0) {
+        changed[changed.length - 1] = (1L << size) - 1;
+      }
+    }
+  }
+
+  /**
+   * Resets one channel to its uninitialized state
+   *
+   * @param channel index of the channel, from zero to {@link #size()} - 1
+   */
+  public void clear(int channel) {
+    checkChannel(channel);
+    ByteBuffer chunk = chunks[channel >>> CHUNK_BITS];
+    int offset = offset(channel);
+    for (int i = 0; i < slotSize; i += 4) {
+      chunk.putInt(offset + i, 0);
+    }
+    markChanged(channel);
+  }
+
+  /**
+   * Every layout stores the value first in its slot
+   */
+  @Override public int initializedChannels() {
+    int count = 0;
+    for (int channel = 0; channel < size; channel++) {
+      if (!Float.isNaN(getValue(chunks[channel >>> CHUNK_BITS], offset(channel)))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  final ByteBuffer chunk(int channel) {
+    checkChannel(channel);
+    return chunks[channel >>> CHUNK_BITS];
+  }
+
+  final int offset(int channel) {
+    return (channel & CHUNK_MASK) * slotSize;
+  }
+
+  private void checkChannel(int channel) {
+    if (channel < 0 || channel >= size) {
+      throw new IndexOutOfBoundsException("channel " + channel + " outside of bank of size " + size);
+    }
+  }
+
+  /**
+   * Zeroed memory must read as uninitialized, the NaN marker the heap filters use.
+   * Values are stored xor'ed with the bits of NaN, so zero bits decode to NaN.
+   */
+  static float getValue(ByteBuffer chunk, int offset) {
+    return Float.intBitsToFloat(chunk.getInt(offset) ^ NAN_BITS);
+  }
+
+  static void putValue(ByteBuffer chunk, int offset, float value) {
+    chunk.putInt(offset, Float.floatToRawIntBits(value) ^ NAN_BITS);
+  }
+
+  public static class Builder {
+
+    /**
+     * Creates an off heap bank of averages with a constant filter.
+     *
+     * @param channels initial number of channels, must be greater than zero
+     * @param filter   value for the filter, must be greater than 1
+     * @return an OffHeapMotionlessAverageBank using a constant filter
+     * @see MotionlessAverageBank.Builder#createConstantFilterBank(int, float)
+     */
+    public static OffHeapMotionlessAverageBank createConstantFilterBank(int channels, float filter) {
+      ConstantFilter prototype = (ConstantFilter) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+      MotionlessAverageBank.Builder.checkChannels(channels);
+      return new OffHeapConstantFilterBank(channels, prototype.filter);
+    }
+
+    /**
+     * Creates an off heap bank of averages with a filter based on frequency of averaging.
+     *
+     * @param channels  initial number of channels, must be greater than zero
+     * @param minFilter minimum allowed filter value. Must be greater than one
+     * @param maxFilter maximum allowed filter value. Must be greater than minFilter
+     * @param minTimeMs minimum allowed update period (in milliseconds). Must be greater than zero
+     * @param maxTimeMs maximum allowed update period (in milliseconds). Must be greater than minTimeMs
+     * @return an OffHeapMotionlessAverageBank using time based filter
+     * @see MotionlessAverageBank.Builder#createTimeDependentBank(int, float, float, long, long)
+     */
+    public static OffHeapMotionlessAverageBank createTimeDependentBank(int channels, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return createTimeDependentBank(channels, minFilter, maxFilter, minTimeMs, maxTimeMs, SystemNanoClock.INSTANCE);
+    }
+
+    /**
+     * Same as {@link #createTimeDependentBank(int, float, float, long, long)},
+     * reading the time of the updates without timestamps from the given clock.
+     *
+     * @param clock source of the timestamps, see {@link NanoClock.Builder}
+     * @return an OffHeapMotionlessAverageBank using time based filter
+     */
+    public static OffHeapMotionlessAverageBank createTimeDependentBank(int channels, float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      TimedFilter prototype = (TimedFilter) MotionlessAverage.Builder
+          .createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+      MotionlessAverageBank.Builder.checkChannels(channels);
+      return new OffHeapTimedFilterBank(channels, prototype.angle, prototype.constant, prototype.minTime, prototype.maxTime, prototype.clock);
+    }
+
+    /**
+     * Creates an off heap bank of simplified Kalman filters.
+     *
+     * @param channels initial number of channels, must be greater than zero
+     * @param r        process noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @param q        measurement noise, see {@link KalmanFilter.Builder#Builder(float, float)}
+     * @return an OffHeapMotionlessAverageBank using Kalman filters
+     * @see MotionlessAverageBank.Builder#createSimplifiedKalmanFilterBank(int, float, float)
+     */
+    public static OffHeapMotionlessAverageBank createSimplifiedKalmanFilterBank(int channels, float r, float q) {
+      return createKalmanFilterBank(channels, new KalmanFilter.Builder(r, q));
+    }
+
+    /**
+     * Creates an off heap bank of Kalman filters, all configured like the filters of the given builder.
+     *
+     * @param channels initial number of channels, must be greater than zero
+     * @param builder  the configuration of every channel
+     * @return an OffHeapMotionlessAverageBank using Kalman filters
+     * @see MotionlessAverageBank.Builder#createKalmanFilterBank(int, KalmanFilter.Builder)
+     */
+    public static OffHeapMotionlessAverageBank createKalmanFilterBank(int channels, KalmanFilter.Builder builder) {
+      KalmanFilter prototype = builder.build();
+      MotionlessAverageBank.Builder.checkChannels(channels);
+      return new OffHeapKalmanFilterBank(channels, prototype.r, prototype.q, prototype.a, prototype.b, prototype.c);
+    }
+  }
+}
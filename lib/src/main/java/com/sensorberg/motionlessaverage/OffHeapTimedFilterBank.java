@@ -0,0 +1,67 @@
+package com.sensorberg.motionlessaverage;
+
+import java.nio.ByteBuffer;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+/**
+ * Slot layout: value (float), padding, lastSeen (long, 8 byte aligned)
+ */
+class OffHeapTimedFilterBank extends OffHeapMotionlessAverageBank {
+
+  static final int SLOT_SIZE = 16;
+  static final int LAST_SEEN = 8;
+
+  private final float angle;
+  private final float constant;
+  private final long minTime;
+  private final long maxTime;
+  private final NanoClock clock;
+
+  OffHeapTimedFilterBank(int size, float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    super(size, SLOT_SIZE);
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+  }
+
+  @Override public float average(int channel, float newValue) {
+    return average(channel, newValue, clock.nanoTime());
+  }
+
+  @Override public void average(int[] channels, float[] newValues, float[] out) {
+    checkBatch(channels, newValues, out);
+    long now = clock.nanoTime();
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i], now);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long now) {
+    ByteBuffer chunk = chunk(channel);
+    int offset = offset(channel);
+    float value = getValue(chunk, offset);
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      long diff = calculateDiff(now, chunk.getLong(offset + LAST_SEEN), minTime, maxTime);
+      float filter = calculateY(angle, constant, diff);
+      value = calculateAverage(value, newValue, filter);
+    }
+    putValue(chunk, offset, value);
+    chunk.putLong(offset + LAST_SEEN, now);
+    markChanged(channel);
+    return value;
+  }
+
+  @Override public void average(int[] channels, float[] newValues, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, newValues, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i], timestampsNanos[i]);
+    }
+  }
+}
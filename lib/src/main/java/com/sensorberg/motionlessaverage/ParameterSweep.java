@@ -0,0 +1,245 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many filter configurations over the same recorded trace in parallel and scores them against a reference signal.
+ * <p>
+ * Every configuration gets a fresh average from its {@link MotionlessAverageFactory},
+ * replays the whole trace with the recorded timestamps and is scored by:
+ * <ul>
+ * <li>error: the root mean square difference between the averaged values and the reference</li>
+ * <li>lag: the shift, in samples, of the averaged values that matches the reference best</li>
+ * </ul>
+ * The trace is shared read only by all workers and every configuration writes only its own result,
+ * so the sweep scales with the number of cores of the pool.
+ */
+public class ParameterSweep {
+
+  final float[] values;
+  final long[] timestampsNanos;
+  final float[] reference;
+  final int maxLag;
+
+  /**
+   * @param values          recorded values
+   * @param timestampsNanos timestamps of the recorded values, in nanoseconds
+   * @param reference       the signal the averaged values should follow, one per recorded value
+   * @param maxLag          largest lag to search for, in samples
+   */
+  public ParameterSweep(float[] values, long[] timestampsNanos, float[] reference, int maxLag) {
+    if (values.length != timestampsNanos.length || values.length != reference.length) {
+      throw new IllegalArgumentException("values, timestamps and reference must have the same length");
+    }
+    if (values.length == 0) {
+      throw new IllegalArgumentException("trace must not be empty");
+    }
+    if (maxLag < 0 || maxLag >= values.length) {
+      throw new IllegalArgumentException("maxLag must be between zero and the length of the trace");
+    }
+    this.values = values;
+    this.timestampsNanos = timestampsNanos;
+    this.reference = reference;
+    this.maxLag = maxLag;
+  }
+
+  /**
+   * Scores the configurations on a new pool using all available processors
+   *
+   * @see #run(List, ForkJoinPool)
+   */
+  public List<Result> run(List<MotionlessAverageFactory> configurations) {
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      return run(configurations, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Scores the configurations in parallel
+   *
+   * @param configurations configurations to score
+   * @param pool           pool to run on
+   * @return one result per configuration, the smallest error first
+   */
+  public List<Result> run(List<MotionlessAverageFactory> configurations, ForkJoinPool pool) {
+    MotionlessAverageFactory[] factories = configurations.toArray(new MotionlessAverageFactory[configurations.size()]);
+    Result[] results = new Result[factories.length];
+    // a few tasks per worker balance the load, each task reuses one output buffer
+    int leafSize = Math.max(1, factories.length / (pool.getParallelism() * 4));
+    pool.invoke(new Sweep(factories, results, 0, factories.length, leafSize));
+    List<Result> sorted = new ArrayList<>(Arrays.asList(results));
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  Result score(MotionlessAverageFactory factory, float[] out) {
+    int n = values.length;
+    factory.create().average(values, timestampsNanos, out, 0, n);
+    double error = 0;
+    for (int i = 0; i < n; i++) {
+      double diff = out[i] - reference[i];
+      error += diff * diff;
+    }
+    double bestShiftedError = error / n;
+    int lag = 0;
+    for (int shift = 1; shift <= maxLag; shift++) {
+      double shifted = 0;
+      for (int i = shift; i < n; i++) {
+        double diff = out[i] - reference[i - shift];
+        shifted += diff * diff;
+      }
+      shifted /= n - shift;
+      if (shifted < bestShiftedError) {
+        bestShiftedError = shifted;
+        lag = shift;
+      }
+    }
+    return new Result(factory, (float) Math.sqrt(error / n), lag);
+  }
+
+  /**
+   * Splits the configurations in halves until each task scores at most {@code leafSize} of them
+   */
+  @SuppressWarnings("serial")
+  private final class Sweep extends RecursiveAction {
+
+    private final MotionlessAverageFactory[] factories;
+    private final Result[] results;
+    private final int from;
+    private final int to;
+    private final int leafSize;
+
+    Sweep(MotionlessAverageFactory[] factories, Result[] results, int from, int to, int leafSize) {
+      this.factories = factories;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.leafSize = leafSize;
+    }
+
+    @Override protected void compute() {
+      if (to - from <= leafSize) {
+        float[] out = new float[values.length];
+        for (int i = from; i < to; i++) {
+          results[i] = score(factories[i], out);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new Sweep(factories, results, from, middle, leafSize), new Sweep(factories, results, middle, to, leafSize));
+    }
+  }
+
+  /**
+   * Score of one configuration. Results are ordered by error, then lag.
+   */
+  public static class Result implements Comparable<Result> {
+
+    /**
+     * the scored configuration
+     */
+    public final MotionlessAverageFactory configuration;
+
+    /**
+     * root mean square difference between the averaged values and the reference
+     */
+    public final float error;
+
+    /**
+     * shift of the averaged values that matches the reference best, in samples
+     */
+    public final int lag;
+
+    Result(MotionlessAverageFactory configuration, float error, int lag) {
+      this.configuration = configuration;
+      this.error = error;
+      this.lag = lag;
+    }
+
+    @Override public int compareTo(Result o) {
+      int byError = Float.compare(error, o.error);
+      return byError != 0 ? byError : (lag < o.lag ? -1 : (lag == o.lag ? 0 : 1));
+    }
+
+    @Override public String toString() {
+      return configuration + " error=" + error + " lag=" + lag;
+    }
+  }
+
+  /**
+   * Static factories for the configurations to sweep
+   */
+  public static class Grid {
+
+    /**
+     * @return every valid combination of the given time dependent filter parameters
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static List<MotionlessAverageFactory> timeDependent(float[] minFilters, float[] maxFilters, long[] minTimesMs, long[] maxTimesMs) {
+      List<MotionlessAverageFactory> grid = new ArrayList<>();
+      for (float minFilter : minFilters) {
+        for (float maxFilter : maxFilters) {
+          for (long minTimeMs : minTimesMs) {
+            for (long maxTimeMs : maxTimesMs) {
+              if (minFilter >= 1 && maxFilter > minFilter && minTimeMs > 0 && maxTimeMs > minTimeMs) {
+                grid.add(MotionlessAverageFactory.Builder.createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs));
+              }
+            }
+          }
+        }
+      }
+      return grid;
+    }
+
+    /**
+     * @return every combination of the given simplified Kalman filter parameters
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static List<MotionlessAverageFactory> simplifiedKalman(float[] rs, float[] qs) {
+      List<MotionlessAverageFactory> grid = new ArrayList<>();
+      for (float r : rs) {
+        for (float q : qs) {
+          grid.add(MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(r, q));
+        }
+      }
+      return grid;
+    }
+
+    /**
+     * @return {@code count} values spread evenly on a logarithmic scale from {@code from} to {@code to}
+     */
+    public static float[] logSpace(float from, float to, int count) {
+      if (from <= 0 || to <= 0 || count < 2) {
+        throw new IllegalArgumentException("bounds must be positive and count at least two");
+      }
+      float[] steps = new float[count];
+      double ratio = Math.log(to / from) / (count - 1);
+      for (int i = 0; i < count; i++) {
+        steps[i] = (float) (from * Math.exp(ratio * i));
+      }
+      steps[count - 1] = to;
+      return steps;
+    }
+
+    /**
+     * @return a random sample of at most {@code count} configurations of the grid, without repetitions
+     */
+    public static List<MotionlessAverageFactory> sample(List<MotionlessAverageFactory> grid, int count, Random random) {
+      if (count < 0) {
+        throw new IllegalArgumentException("count must not be negative");
+      }
+      List<MotionlessAverageFactory> shuffled = new ArrayList<>(grid);
+      Collections.shuffle(shuffled, random);
+      return new ArrayList<>(shuffled.subList(0, Math.min(count, shuffled.size())));
+    }
+  }
+}
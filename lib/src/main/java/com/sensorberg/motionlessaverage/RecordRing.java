@@ -0,0 +1,107 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock free queue of (key, value, timestamp) records for many producers and one consumer.
+ * <p>
+ * Records are stored in parallel primitive arrays, nothing is allocated per record.
+ * Each cell has a sequence number telling whether it's free for the producer at that position
+ * or published for the consumer, producers claim positions with a compare and set on the tail
+ * and publish with an ordered write of the sequence.
+ */
+final class RecordRing {
+
+  private final long[] keys;
+  private final float[] values;
+  private final long[] timestamps;
+  private final AtomicLongArray sequences;
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+  // written only by the consumer, atomic so other threads can read the queue depth
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * @param capacity number of records, a power of two
+   */
+  RecordRing(int capacity) {
+    keys = new long[capacity];
+    values = new float[capacity];
+    timestamps = new long[capacity];
+    sequences = new AtomicLongArray(capacity);
+    mask = capacity - 1;
+    for (int i = 0; i < capacity; i++) {
+      sequences.lazySet(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return false if the ring is full
+   */
+  boolean offer(long key, float value, long timestampNanos) {
+    long position = tail.get();
+    int index;
+    while (true) {
+      index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // the consumer hasn't freed the cell of the previous lap yet
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+    keys[index] = key;
+    values[index] = value;
+    timestamps[index] = timestampNanos;
+    sequences.lazySet(index, position + 1);
+    return true;
+  }
+
+  /**
+   * Moves up to {@code max} records to the given arrays, from index zero. Only called by the consumer.
+   *
+   * @return the number of records moved
+   */
+  int drain(long[] keysOut, float[] valuesOut, long[] timestampsOut, int max) {
+    long position = head.get();
+    int count = 0;
+    while (count < max) {
+      int index = (int) position & mask;
+      if (sequences.get(index) != position + 1) {
+        break;
+      }
+      keysOut[count] = keys[index];
+      valuesOut[count] = values[index];
+      timestampsOut[count] = timestamps[index];
+      // free the cell for the producer of the next lap
+      sequences.lazySet(index, position + mask + 1);
+      position++;
+      count++;
+    }
+    if (count > 0) {
+      head.lazySet(position);
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of records waiting, claimed records not yet published included
+   */
+  int size() {
+    long consumed = head.get();
+    long claimed = tail.get();
+    return (int) Math.max(0, Math.min(claimed - consumed, mask + 1));
+  }
+}
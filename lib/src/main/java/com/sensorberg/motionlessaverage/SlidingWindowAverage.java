@@ -0,0 +1,69 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.isFinite;
+
+/**
+ * Exact average of the last {@code window} values, a boxcar window.
+ * The values are kept in a ring buffer next to their running sum,
+ * so every update costs one addition and one subtraction, whatever the size of the window.
+ * NaN and infinite values are counted instead of summed, they would turn the sum into NaN for good,
+ * and the average is back to the sum once the last of them left the window.
+ */
+class SlidingWindowAverage implements TimestampedAverage {
+
+  final float[] window;
+  private final CompensatedSum sum = new CompensatedSum();
+  private final NonFiniteCount nonFinite = new NonFiniteCount();
+  private int next;
+  private int count;
+
+  SlidingWindowAverage(int window) {
+    this.window = new float[window];
+  }
+
+  @Override public float average(float newValue) {
+    float[] window = this.window;
+    if (count == window.length) {
+      remove(window[next]);
+    } else {
+      count++;
+    }
+    window[next] = newValue;
+    if (isFinite(newValue)) {
+      sum.add(newValue);
+    } else {
+      nonFinite.add(newValue);
+    }
+    if (++next == window.length) {
+      next = 0;
+    }
+    return nonFinite.isEmpty() ? (float) (sum.sum() / count) : nonFinite.value();
+  }
+
+  private void remove(float value) {
+    if (isFinite(value)) {
+      sum.add(-value);
+    } else {
+      nonFinite.remove(value);
+    }
+  }
+
+  @Override public float average(float newValue, long timestampNanos) {
+    return average(newValue);
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i]);
+    }
+  }
+
+  @Override public void reset() {
+    sum.reset();
+    next = 0;
+    count = 0;
+    nonFinite.reset();
+  }
+}
@@ -0,0 +1,46 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spreading the increments of different threads over padded cells, so they don't contend on one cache line.
+ * Reading sums the cells. A Java 7 stand in for LongAdder.
+ */
+final class StripedCounter {
+
+  // one cell every 64 bytes
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells;
+  private final int mask;
+
+  StripedCounter() {
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    cells = new AtomicLongArray(stripes * PADDING);
+    mask = stripes - 1;
+  }
+
+  void increment() {
+    add(1);
+  }
+
+  void add(long delta) {
+    long id = Thread.currentThread().getId();
+    int stripe = (int) (LongHashSlots.mix(id) & mask);
+    cells.getAndAdd(stripe * PADDING, delta);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < cells.length(); i += PADDING) {
+      sum += cells.get(i);
+    }
+    return sum;
+  }
+
+  void reset() {
+    for (int i = 0; i < cells.length(); i += PADDING) {
+      cells.set(i, 0);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.sensorberg.motionlessaverage;
+
+final class SystemNanoClock implements NanoClock {
+
+  static final SystemNanoClock INSTANCE = new SystemNanoClock();
+
+  private SystemNanoClock() {
+  }
+
+  @Override public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  @Override public String toString() {
+    return "SystemNanoClock";
+  }
+}
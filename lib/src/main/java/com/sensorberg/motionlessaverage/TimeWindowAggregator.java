@@ -0,0 +1,334 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.isFinite;
+
+/**
+ * Aggregates the samples of the last {@code window} milliseconds: mean, minimum, maximum and count.
+ * <p>
+ * Samples are kept in a primitive ring buffer, expired by their timestamps as new samples arrive.
+ * The mean comes from a running sum, the minimum and maximum from monotonic deques,
+ * so every operation takes amortized constant time however the sample rate changes.
+ * NaN and infinite samples are counted instead of summed or queued, while one is in the window
+ * the mean, minimum and maximum are the ones of the non finite samples, and back to numbers once they expired.
+ * The ring grows as needed up to {@code maxSamples}; beyond that the oldest samples are dropped early.
+ * <p>
+ * Timestamps must not go backwards, older timestamps are treated as the newest one seen.
+ * Aggregators are not thread safe.
+ */
+public class TimeWindowAggregator implements TimestampedAverage {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  final long window;
+  final int maxSamples;
+  final NanoClock clock;
+
+  private long[] times;
+  private float[] values;
+  private int head;
+  private int count;
+  // sequence number of the sample at head, sequence numbers identify samples in the deques
+  private long first;
+  private long newest = Long.MIN_VALUE;
+
+  private final CompensatedSum sum = new CompensatedSum();
+  private final NonFiniteCount nonFinite = new NonFiniteCount();
+  private final SequenceDeque minimums;
+  private final SequenceDeque maximums;
+
+  TimeWindowAggregator(long window, int maxSamples, NanoClock clock) {
+    this.window = window;
+    this.maxSamples = maxSamples;
+    this.clock = clock;
+    int capacity = Math.min(INITIAL_CAPACITY, maxSamples);
+    times = new long[capacity];
+    values = new float[capacity];
+    minimums = new SequenceDeque(capacity);
+    maximums = new SequenceDeque(capacity);
+  }
+
+  /**
+   * Adds a sample, timestamped now
+   *
+   * @return the mean of the window
+   */
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  /**
+   * Adds a sample
+   *
+   * @return the mean of the window
+   */
+  @Override public float average(float newValue, long timestampNanos) {
+    add(newValue, timestampNanos);
+    return mean();
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      add(values[i], timestampsNanos[i]);
+      out[i] = mean();
+    }
+  }
+
+  /**
+   * Adds a sample and expires the samples that fell out of the window
+   *
+   * @param value          the sample
+   * @param timestampNanos timestamp of the sample, in nanoseconds
+   */
+  public void add(float value, long timestampNanos) {
+    expire(timestampNanos);
+    if (count == times.length) {
+      if (count == maxSamples) {
+        removeOldest();
+      } else {
+        grow();
+      }
+    }
+    int capacity = times.length;
+    int tail = head + count;
+    if (tail >= capacity) {
+      tail -= capacity;
+    }
+    times[tail] = newest;
+    values[tail] = value;
+    long sequence = first + count;
+    count++;
+    if (!isFinite(value)) {
+      // out of the deques, NaN compares false and would break their order
+      nonFinite.add(value);
+      return;
+    }
+    sum.add(value);
+    while (!minimums.isEmpty() && valueOf(minimums.last()) >= value) {
+      minimums.removeLast();
+    }
+    minimums.addLast(sequence);
+    while (!maximums.isEmpty() && valueOf(maximums.last()) <= value) {
+      maximums.removeLast();
+    }
+    maximums.addLast(sequence);
+  }
+
+  /**
+   * Expires the samples older than the window, without adding one
+   *
+   * @param nowNanos the current time, in nanoseconds
+   */
+  public void expire(long nowNanos) {
+    if (nowNanos > newest) {
+      newest = nowNanos;
+    }
+    long oldest = newest - window;
+    while (count > 0 && times[head] <= oldest) {
+      removeOldest();
+    }
+  }
+
+  /**
+   * Removes every sample, the next one can have any timestamp
+   */
+  @Override public void reset() {
+    head = 0;
+    count = 0;
+    first = 0;
+    newest = Long.MIN_VALUE;
+    sum.reset();
+    nonFinite.reset();
+    minimums.clear();
+    maximums.clear();
+  }
+
+  /**
+   * @return the number of samples in the window
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * @return the mean of the samples in the window, NaN if it's empty
+   */
+  public float mean() {
+    if (count == 0) {
+      return Float.NaN;
+    }
+    return nonFinite.isEmpty() ? (float) (sum.sum() / count) : nonFinite.value();
+  }
+
+  /**
+   * @return the smallest sample in the window, NaN if it's empty
+   */
+  public float min() {
+    if (count == 0) {
+      return Float.NaN;
+    }
+    return nonFinite.isEmpty() ? valueOf(minimums.first()) : nonFinite.value();
+  }
+
+  /**
+   * @return the largest sample in the window, NaN if it's empty
+   */
+  public float max() {
+    if (count == 0) {
+      return Float.NaN;
+    }
+    return nonFinite.isEmpty() ? valueOf(maximums.first()) : nonFinite.value();
+  }
+
+  private float valueOf(long sequence) {
+    int index = head + (int) (sequence - first);
+    if (index >= values.length) {
+      index -= values.length;
+    }
+    return values[index];
+  }
+
+  private void removeOldest() {
+    float oldest = values[head];
+    if (isFinite(oldest)) {
+      sum.add(-oldest);
+      if (minimums.first() == first) {
+        minimums.removeFirst();
+      }
+      if (maximums.first() == first) {
+        maximums.removeFirst();
+      }
+    } else {
+      nonFinite.remove(oldest);
+    }
+    first++;
+    if (++head == times.length) {
+      head = 0;
+    }
+    if (--count == 0) {
+      // nothing left to subtract, drop the rounding residue
+      sum.reset();
+    }
+  }
+
+  private void grow() {
+    int capacity = (int) Math.min((long) times.length * 2, maxSamples);
+    long[] grownTimes = new long[capacity];
+    float[] grownValues = new float[capacity];
+    int firstPart = Math.min(count, times.length - head);
+    System.arraycopy(times, head, grownTimes, 0, firstPart);
+    System.arraycopy(times, 0, grownTimes, firstPart, count - firstPart);
+    System.arraycopy(values, head, grownValues, 0, firstPart);
+    System.arraycopy(values, 0, grownValues, firstPart, count - firstPart);
+    times = grownTimes;
+    values = grownValues;
+    head = 0;
+    minimums.grow(capacity);
+    maximums.grow(capacity);
+  }
+
+  /**
+   * Ring buffer deque of sample sequence numbers
+   */
+  private static final class SequenceDeque {
+
+    private long[] items;
+    private int head;
+    private int size;
+
+    SequenceDeque(int capacity) {
+      items = new long[capacity];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    long first() {
+      return items[head];
+    }
+
+    long last() {
+      int index = head + size - 1;
+      return items[index >= items.length ? index - items.length : index];
+    }
+
+    void addLast(long sequence) {
+      int index = head + size;
+      items[index >= items.length ? index - items.length : index] = sequence;
+      size++;
+    }
+
+    void removeFirst() {
+      if (++head == items.length) {
+        head = 0;
+      }
+      size--;
+    }
+
+    void removeLast() {
+      size--;
+    }
+
+    void clear() {
+      head = 0;
+      size = 0;
+    }
+
+    void grow(int capacity) {
+      long[] grown = new long[capacity];
+      int firstPart = Math.min(size, items.length - head);
+      System.arraycopy(items, head, grown, 0, firstPart);
+      System.arraycopy(items, 0, grown, firstPart, size - firstPart);
+      items = grown;
+      head = 0;
+    }
+  }
+
+  public static class Builder {
+
+    private final long windowMs;
+    private int maxSamples = 1024;
+    private NanoClock clock = SystemNanoClock.INSTANCE;
+
+    /**
+     * @param windowMs length of the window, in milliseconds. Must be greater than zero
+     */
+    public Builder(long windowMs) {
+      if (windowMs <= 0) {
+        throw new IllegalArgumentException("windowMs must be greater than zero");
+      }
+      this.windowMs = windowMs;
+    }
+
+    /**
+     * Caps the memory of the aggregator, the oldest samples are dropped early when the window holds more.
+     * Defaults to 1024.
+     *
+     * @param maxSamples largest number of samples kept, must be greater than zero
+     */
+    public Builder maxSamples(int maxSamples) {
+      if (maxSamples < 1) {
+        throw new IllegalArgumentException("maxSamples must be greater than zero");
+      }
+      this.maxSamples = maxSamples;
+      return this;
+    }
+
+    /**
+     * Clock of {@link TimeWindowAggregator#average(float)}. Defaults to {@link NanoClock.Builder#systemClock()}
+     */
+    public Builder clock(NanoClock clock) {
+      if (clock == null) {
+        throw new IllegalArgumentException("clock must not be null");
+      }
+      this.clock = clock;
+      return this;
+    }
+
+    public TimeWindowAggregator build() {
+      return new TimeWindowAggregator(windowMs * MotionlessAverage.Builder.NANO, maxSamples, clock);
+    }
+  }
+}
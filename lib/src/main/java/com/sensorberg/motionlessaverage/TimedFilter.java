@@ -1,32 +1,39 @@
 package com.sensorberg.motionlessaverage;
 
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
 import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
 import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
 import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
 
-class TimedFilter implements MotionlessAverage {
+class TimedFilter implements TimestampedAverage {
 
-  private final float angle;
-  private final float constant;
-  private final long minTime;
-  private final long maxTime;
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
 
   private long lastSeen = 0;
   private float value = Float.NaN;
 
   TimedFilter(float angle, float constant, long minTime, long maxTime) {
+    this(angle, constant, minTime, maxTime, SystemNanoClock.INSTANCE);
+  }
+
+  TimedFilter(float angle, float constant, long minTime, long maxTime, NanoClock clock) {
     this.angle = angle;
     this.constant = constant;
     this.minTime = minTime;
     this.maxTime = maxTime;
+    this.clock = clock;
   }
 
   @Override public float average(float newValue) {
-    return averageForTime(newValue, System.nanoTime());
+    return average(newValue, clock.nanoTime());
   }
 
-  float averageForTime(float newValue, long now) {
-    if (lastSeen == 0) {
+  @Override public float average(float newValue, long now) {
+    if (Float.isNaN(value)) {
       value = newValue;
     } else {
       long diff = calculateDiff(now, lastSeen, minTime, maxTime);
@@ -36,4 +43,29 @@ class TimedFilter implements MotionlessAverage {
     lastSeen = now;
     return value;
   }
-}
\ No newline at end of file
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    float value = this.value;
+    long lastSeen = this.lastSeen;
+    for (int i = off, end = off + len; i < end; i++) {
+      long now = timestampsNanos[i];
+      if (Float.isNaN(value)) {
+        value = values[i];
+      } else {
+        long diff = calculateDiff(now, lastSeen, minTime, maxTime);
+        float filter = calculateY(angle, constant, diff);
+        value = calculateAverage(value, values[i], filter);
+      }
+      lastSeen = now;
+      out[i] = value;
+    }
+    this.value = value;
+    this.lastSeen = lastSeen;
+  }
+
+  @Override public void reset() {
+    value = Float.NaN;
+    lastSeen = 0;
+  }
+}
@@ -0,0 +1,74 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.countInitialized;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+class TimedFilterBank extends MotionlessAverageBank {
+
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
+
+  final long[] lastSeen;
+  final float[] values;
+
+  TimedFilterBank(int size, float angle, float constant, long minTime, long maxTime) {
+    this(size, angle, constant, minTime, maxTime, SystemNanoClock.INSTANCE);
+  }
+
+  TimedFilterBank(int size, float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    super(size);
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+    this.lastSeen = new long[size];
+    this.values = new float[size];
+    Arrays.fill(values, Float.NaN);
+  }
+
+  @Override public int initializedChannels() {
+    return countInitialized(values);
+  }
+
+  @Override public float average(int channel, float newValue) {
+    return average(channel, newValue, clock.nanoTime());
+  }
+
+  @Override public void average(int[] channels, float[] newValues, float[] out) {
+    checkBatch(channels, newValues, out);
+    long now = clock.nanoTime();
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i], now);
+    }
+  }
+
+  @Override public float average(int channel, float newValue, long now) {
+    float value = values[channel];
+    if (Float.isNaN(value)) {
+      value = newValue;
+    } else {
+      long diff = calculateDiff(now, lastSeen[channel], minTime, maxTime);
+      float filter = calculateY(angle, constant, diff);
+      value = calculateAverage(value, newValue, filter);
+    }
+    values[channel] = value;
+    lastSeen[channel] = now;
+    markChanged(channel);
+    return value;
+  }
+
+  @Override public void average(int[] channels, float[] newValues, long[] timestampsNanos, float[] out) {
+    checkBatch(channels, newValues, timestampsNanos, out);
+    for (int i = 0; i < channels.length; i++) {
+      out[i] = average(channels[i], newValues[i], timestampsNanos[i]);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.ArrayHelpers.checkRange;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateVariance;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+class TimedFilterStatistics implements MotionlessStatistics {
+
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
+
+  private long lastSeen = 0;
+  private float value = Float.NaN;
+  private float variance = Float.NaN;
+
+  TimedFilterStatistics(float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+  }
+
+  @Override public float average(float newValue) {
+    return average(newValue, clock.nanoTime());
+  }
+
+  @Override public float average(float newValue, long now) {
+    if (Float.isNaN(value)) {
+      value = newValue;
+      variance = 0;
+    } else {
+      long diff = calculateDiff(now, lastSeen, minTime, maxTime);
+      float filter = calculateY(angle, constant, diff);
+      variance = calculateVariance(variance, value, newValue, filter);
+      value = calculateAverage(value, newValue, filter);
+    }
+    lastSeen = now;
+    return value;
+  }
+
+  @Override public void average(float[] values, long[] timestampsNanos, float[] out, int off, int len) {
+    checkRange(values, timestampsNanos, out, off, len);
+    for (int i = off, end = off + len; i < end; i++) {
+      out[i] = average(values[i], timestampsNanos[i]);
+    }
+  }
+
+  @Override public void reset() {
+    value = Float.NaN;
+    variance = Float.NaN;
+    lastSeen = 0;
+  }
+
+  @Override public float mean() {
+    return value;
+  }
+
+  @Override public float variance() {
+    return variance;
+  }
+
+  @Override public float standardDeviation() {
+    return (float) Math.sqrt(variance);
+  }
+}
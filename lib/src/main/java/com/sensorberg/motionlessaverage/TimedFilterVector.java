@@ -0,0 +1,43 @@
+package com.sensorberg.motionlessaverage;
+
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateAverage;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateDiff;
+import static com.sensorberg.motionlessaverage.MathHelpers.calculateY;
+
+class TimedFilterVector extends VectorAverage {
+
+  final float angle;
+  final float constant;
+  final long minTime;
+  final long maxTime;
+  final NanoClock clock;
+
+  private long lastSeen = 0;
+
+  TimedFilterVector(int dimensions, float angle, float constant, long minTime, long maxTime, NanoClock clock) {
+    super(dimensions);
+    this.angle = angle;
+    this.constant = constant;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.clock = clock;
+  }
+
+  @Override public void average(float[] values) {
+    average(values, clock.nanoTime());
+  }
+
+  @Override public void average(float[] values, long now) {
+    if (!initialize(values)) {
+      long diff = calculateDiff(now, lastSeen, minTime, maxTime);
+      float filter = calculateY(angle, constant, diff);
+      float[] state = this.state;
+      for (int i = 0; i < state.length; i++) {
+        float value = calculateAverage(state[i], values[i], filter);
+        state[i] = value;
+        values[i] = value;
+      }
+    }
+    lastSeen = now;
+  }
+}
@@ -0,0 +1,112 @@
+package com.sensorberg.motionlessaverage;
+
+/**
+ * A {@link MotionlessAverage} that accepts the time at which each value was measured,
+ * instead of reading the clock on every call.
+ * This allows to replay recorded values at full speed with their real timestamps.
+ * <p>
+ * Timestamps are in nanoseconds and must come from the same clock for the whole life of the average.
+ * Mixing them with {@link #average(float)} is only meaningful if that clock is the one the average reads,
+ * {@link System#nanoTime()} unless the average was created with another {@link NanoClock}.
+ * Averages that don't depend on time ignore the timestamps.
+ */
+public interface TimestampedAverage extends MotionlessAverage {
+
+  /**
+   * @param newValue       newly received value
+   * @param timestampNanos time at which the value was measured, in nanoseconds
+   * @return the averaged value
+   */
+  float average(float newValue, long timestampNanos);
+
+  /**
+   * Averages {@code len} values starting at {@code off}, in order.
+   * The averaged value for {@code values[i]} is written to {@code out[i]}.
+   *
+   * @param values          newly received values
+   * @param timestampsNanos time at which each value was measured, in nanoseconds
+   * @param out             receives the averaged values, can be the same array as {@code values}
+   * @param off             index of the first value to average
+   * @param len             number of values to average
+   */
+  void average(float[] values, long[] timestampsNanos, float[] out, int off, int len);
+
+  /**
+   * Forgets every value, the average continues as if it was just created.
+   * Lets averages be reused instead of created again, see {@link MotionlessAveragePool}.
+   */
+  void reset();
+
+  class Builder {
+
+    /**
+     * @see MotionlessAverage.Builder#createConstantFilterAverage(float)
+     */
+    public static TimestampedAverage createConstantFilterAverage(float filter) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createConstantFilterAverage(filter);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long)
+     */
+    public static TimestampedAverage createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createTimeDependentAverage(float, float, long, long, NanoClock)
+     */
+    public static TimestampedAverage createTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createExponentialDecayAverage(long)
+     */
+    public static TimestampedAverage createExponentialDecayAverage(long timeConstantMs) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createExponentialDecayAverage(timeConstantMs);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createExponentialDecayAverage(long, NanoClock)
+     */
+    public static TimestampedAverage createExponentialDecayAverage(long timeConstantMs, NanoClock clock) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createExponentialDecayAverage(timeConstantMs, clock);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createConcurrentConstantFilterAverage(float)
+     */
+    public static TimestampedAverage createConcurrentConstantFilterAverage(float filter) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createConcurrentConstantFilterAverage(filter);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createConcurrentTimeDependentAverage(float, float, long, long)
+     */
+    public static TimestampedAverage createConcurrentTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createConcurrentTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createConcurrentTimeDependentAverage(float, float, long, long, NanoClock)
+     */
+    public static TimestampedAverage createConcurrentTimeDependentAverage(float minFilter, float maxFilter, long minTimeMs, long maxTimeMs, NanoClock clock) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createConcurrentTimeDependentAverage(minFilter, maxFilter, minTimeMs, maxTimeMs, clock);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createSimplifiedKalmanFilter(float, float)
+     */
+    public static TimestampedAverage createSimplifiedKalmanFilter(float r, float q) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createSimplifiedKalmanFilter(r, q);
+    }
+
+    /**
+     * @see MotionlessAverage.Builder#createSlidingWindowAverage(int)
+     */
+    public static TimestampedAverage createSlidingWindowAverage(int window) {
+      return (TimestampedAverage) MotionlessAverage.Builder.createSlidingWindowAverage(window);
+    }
+  }
+}
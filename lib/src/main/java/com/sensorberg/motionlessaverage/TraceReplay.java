@@ -0,0 +1,106 @@
+package com.sensorberg.motionlessaverage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays recorded traces through banks and tables, for tuning filter parameters offline.
+ * <p>
+ * A trace is a flat file of fixed size little endian records, without header:
+ * the channel as long, the timestamp in nanoseconds as long and the value as float, {@value #RECORD_SIZE} bytes.
+ * Each record is averaged into the filter of its channel with its own timestamp,
+ * and written to the output file in the same layout with the averaged value.
+ * Both files are accessed through memory mappings, one window at a time, so nothing is parsed or copied per line.
+ */
+public class TraceReplay {
+
+  public static final int RECORD_SIZE = 20;
+
+  static final int CHANNEL_OFFSET = 0;
+  static final int TIMESTAMP_OFFSET = 8;
+  static final int VALUE_OFFSET = 16;
+
+  private static final int WINDOW_RECORDS = (1 << 26) / RECORD_SIZE;
+
+  /**
+   * Replays a trace through a table, using the channels of the records as keys
+   *
+   * @param input  trace to read
+   * @param output file to write the averaged trace to, replaced if it exists
+   * @param table  table to average the records with
+   * @return number of records replayed
+   * @throws IOException if a file can't be read or written, or the input isn't a trace
+   */
+  public static long replay(Path input, Path output, LongMotionlessAverageTable table) throws IOException {
+    return replay(input, output, table, null);
+  }
+
+  /**
+   * Replays a trace through a bank, using the channels of the records as channel indexes
+   *
+   * @param input  trace to read
+   * @param output file to write the averaged trace to, replaced if it exists
+   * @param bank   bank to average the records with
+   * @return number of records replayed
+   * @throws IOException if a file can't be read or written, the input isn't a trace
+   *                     or a channel is not in the bank
+   */
+  public static long replay(Path input, Path output, MotionlessAverageBank bank) throws IOException {
+    return replay(input, output, null, bank);
+  }
+
+  private static long replay(Path input, Path output, LongMotionlessAverageTable table, MotionlessAverageBank bank) throws IOException {
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long size = in.size();
+      if (size % RECORD_SIZE != 0) {
+        throw new IOException("trace size " + size + " is not a multiple of " + RECORD_SIZE);
+      }
+      long records = size / RECORD_SIZE;
+      for (long first = 0; first < records; first += WINDOW_RECORDS) {
+        int count = (int) Math.min(WINDOW_RECORDS, records - first);
+        long position = first * RECORD_SIZE;
+        long length = (long) count * RECORD_SIZE;
+        ByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, position, length).order(ByteOrder.LITTLE_ENDIAN);
+        if (table != null) {
+          replayWindow(source, target, count, table);
+        } else {
+          replayWindow(source, target, count, bank, first);
+        }
+      }
+      return records;
+    }
+  }
+
+  private static void replayWindow(ByteBuffer source, ByteBuffer target, int count, LongMotionlessAverageTable table) {
+    for (int i = 0, at = 0; i < count; i++, at += RECORD_SIZE) {
+      long channel = source.getLong(at + CHANNEL_OFFSET);
+      long timestamp = source.getLong(at + TIMESTAMP_OFFSET);
+      float value = table.average(channel, source.getFloat(at + VALUE_OFFSET), timestamp);
+      target.putLong(at + CHANNEL_OFFSET, channel);
+      target.putLong(at + TIMESTAMP_OFFSET, timestamp);
+      target.putFloat(at + VALUE_OFFSET, value);
+    }
+  }
+
+  private static void replayWindow(ByteBuffer source, ByteBuffer target, int count, MotionlessAverageBank bank, long first) throws IOException {
+    int size = bank.size();
+    for (int i = 0, at = 0; i < count; i++, at += RECORD_SIZE) {
+      long channel = source.getLong(at + CHANNEL_OFFSET);
+      if (channel < 0 || channel >= size) {
+        throw new IOException("channel " + channel + " of record " + (first + i) + " is not in the bank");
+      }
+      long timestamp = source.getLong(at + TIMESTAMP_OFFSET);
+      float value = bank.average((int) channel, source.getFloat(at + VALUE_OFFSET), timestamp);
+      target.putLong(at + CHANNEL_OFFSET, channel);
+      target.putLong(at + TIMESTAMP_OFFSET, timestamp);
+      target.putFloat(at + VALUE_OFFSET, value);
+    }
+  }
+}
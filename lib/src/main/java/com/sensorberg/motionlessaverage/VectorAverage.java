@@ -0,0 +1,42 @@
+package com.sensorberg.motionlessaverage;
+
+import java.util.Arrays;
+
+/**
+ * State shared by the vector averages: the averaged components, NaN before the first update
+ */
+abstract class VectorAverage implements MotionlessVectorAverage {
+
+  final float[] state;
+
+  VectorAverage(int dimensions) {
+    state = new float[dimensions];
+    Arrays.fill(state, Float.NaN);
+  }
+
+  @Override public void average(float[] values) {
+    average(values, System.nanoTime());
+  }
+
+  @Override public float magnitude() {
+    return MathHelpers.calculateMagnitude(state);
+  }
+
+  @Override public int dimensions() {
+    return state.length;
+  }
+
+  /**
+   * @return true if this is the first update, after copying the values into the state
+   */
+  final boolean initialize(float[] values) {
+    if (values.length != state.length) {
+      throw new IllegalArgumentException("expected " + state.length + " values, got " + values.length);
+    }
+    if (Float.isNaN(state[0])) {
+      System.arraycopy(values, 0, state, 0, state.length);
+      return true;
+    }
+    return false;
+  }
+}
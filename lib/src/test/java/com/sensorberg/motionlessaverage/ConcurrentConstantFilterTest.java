@@ -0,0 +1,69 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class ConcurrentConstantFilterTest {
+
+  static final int THREADS = 4;
+  static final int UPDATES_PER_THREAD = 100000;
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    MotionlessAverage.Builder.createConcurrentConstantFilterAverage(0.9999f);
+  }
+
+  @Test public void filter_test() throws Exception {
+    MotionlessAverage avg = MotionlessAverage.Builder.createConcurrentConstantFilterAverage(2);
+    for (int i = 0; i < test_values.length; i++) {
+      float average = avg.average(test_values[i]);
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], average, ACCEPTABLE_VARIANCE);
+    }
+  }
+
+  @Test public void many_writers_stay_within_input_range() throws Exception {
+    final MotionlessAverage avg = MotionlessAverage.Builder.createConcurrentConstantFilterAverage(3);
+    final AtomicReference<String> failure = new AtomicReference<>();
+    runConcurrently(new Runnable() {
+      @Override public void run() {
+        for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+          float average = avg.average(i % 2 == 0 ? 10f : 20f);
+          if (average < 10f || average > 20f) {
+            failure.compareAndSet(null, "Average outside of input range: " + average);
+          }
+        }
+      }
+    });
+    assertNull(failure.get());
+  }
+
+  static void runConcurrently(final Runnable runnable) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          runnable.run();
+        }
+      });
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+}
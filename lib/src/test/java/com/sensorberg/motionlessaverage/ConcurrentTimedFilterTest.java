@@ -0,0 +1,56 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.sensorberg.motionlessaverage.ConcurrentConstantFilterTest.UPDATES_PER_THREAD;
+import static com.sensorberg.motionlessaverage.ConcurrentConstantFilterTest.runConcurrently;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class ConcurrentTimedFilterTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_max_min_time_direction() throws Exception {
+    MotionlessAverage.Builder.createConcurrentTimeDependentAverage(1, 2, 10, 5);
+  }
+
+  @Test public void filter_test() throws Exception {
+    TimestampedAverage avg = TimestampedAverage.Builder.createConcurrentTimeDependentAverage(1, 3, 100, 1100);
+    float firstValue = avg.average(20, 200 * NANO);
+    assertEquals("First value equals inputs", 20.0f, firstValue);
+    float secondValue = avg.average(25, 800 * NANO); // 600ms have passed
+    assertEquals("Second value as expected", 22.5f, secondValue);
+  }
+
+  @Test public void single_writer_matches_sequential_filter() throws Exception {
+    TimestampedAverage concurrent = TimestampedAverage.Builder.createConcurrentTimeDependentAverage(2, 20, 100, 1000);
+    TimestampedAverage sequential = TimestampedAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    long now = 0;
+    for (int i = 0; i < 100; i++) {
+      now += (i * 37 % 1500) * NANO;
+      float value = (i * 17) % 40 - 80;
+      assertEquals(sequential.average(value, now), concurrent.average(value, now));
+    }
+  }
+
+  @Test public void many_writers_stay_within_input_range() throws Exception {
+    final TimestampedAverage avg = TimestampedAverage.Builder.createConcurrentTimeDependentAverage(2, 20, 1, 10);
+    final AtomicLong clock = new AtomicLong();
+    final AtomicReference<String> failure = new AtomicReference<>();
+    runConcurrently(new Runnable() {
+      @Override public void run() {
+        for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+          float average = avg.average(i % 2 == 0 ? -60f : -90f, clock.addAndGet(NANO));
+          if (average < -90f || average > -60f) {
+            failure.compareAndSet(null, "Average outside of input range: " + average);
+          }
+        }
+      }
+    });
+    assertNull(failure.get());
+  }
+}
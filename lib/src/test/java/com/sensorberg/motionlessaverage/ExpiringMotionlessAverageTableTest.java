@@ -0,0 +1,151 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class ExpiringMotionlessAverageTableTest {
+
+  private final List<Long> expiredKeys = new ArrayList<>();
+  private final List<Float> expiredValues = new ArrayList<>();
+  private final List<Long> expiredLastSeen = new ArrayList<>();
+
+  private final ExpiringMotionlessAverageTable.Listener listener = new ExpiringMotionlessAverageTable.Listener() {
+    @Override public void onExpired(long key, float value, long lastSeenNanos) {
+      expiredKeys.add(key);
+      expiredValues.add(value);
+      expiredLastSeen.add(lastSeenNanos);
+    }
+  };
+
+  @Test public void expires_idle_keys_with_their_last_value() {
+    ExpiringMotionlessAverageTable table = table(100, 10);
+    table.average(1, 10, 0);
+    table.average(1, 20, 10 * NANO);
+    table.average(2, 5, 20 * NANO);
+
+    assertEquals(0, table.expire(109 * NANO));
+    assertEquals(1, table.expire(110 * NANO));
+    assertEquals(1L, expiredKeys.get(0).longValue());
+    assertEquals(15f, expiredValues.get(0));
+    assertEquals(10 * NANO, expiredLastSeen.get(0).longValue());
+    assertFalse(table.contains(1));
+    assertEquals(1, table.size());
+
+    assertEquals(1, table.expire(120 * NANO));
+    assertEquals(0, table.size());
+    assertEquals(0, table.scheduled());
+  }
+
+  @Test public void updates_keep_keys_alive() {
+    ExpiringMotionlessAverageTable table = table(100, 10);
+    for (long t = 0; t <= 1000; t += 50) {
+      table.average(7, 1, t * NANO);
+      assertEquals(0, table.expire(t * NANO));
+    }
+    assertTrue(table.contains(7));
+    assertEquals(1, table.scheduled());
+    assertEquals(1, table.expire(1100 * NANO));
+  }
+
+  @Test public void expires_in_bounded_steps() {
+    ExpiringMotionlessAverageTable table = table(100, 10);
+    for (long key = 0; key < 100; key++) {
+      table.average(key, 1, 0);
+    }
+    int expired = 0;
+    int calls = 0;
+    while (table.size() > 0) {
+      int step = table.expire(100 * NANO, 8);
+      assertTrue(step <= 8);
+      expired += step;
+      calls++;
+    }
+    assertEquals(100, expired);
+    assertTrue(calls >= 100 / 8);
+  }
+
+  @Test public void removed_keys_are_not_scheduled_twice() {
+    ExpiringMotionlessAverageTable table = table(100, 10);
+    table.average(3, 1, 0);
+    assertTrue(table.remove(3));
+    assertFalse(table.remove(3));
+    table.average(3, 2, 50 * NANO);
+    assertEquals(1, table.scheduled());
+    assertEquals(0, table.expire(100 * NANO));
+    assertEquals(2f, table.get(3));
+    assertEquals(1, table.expire(150 * NANO));
+    assertEquals(2f, expiredValues.get(0));
+
+    table.average(4, 1, 200 * NANO);
+    table.remove(4);
+    assertEquals(0, table.expire(400 * NANO));
+    assertTrue(expiredKeys.size() == 1);
+    assertEquals(0, table.scheduled());
+  }
+
+  @Test public void matches_full_scan_over_many_levels() {
+    // one millisecond ticks and a ten second timeout need three levels
+    long timeoutMs = 10000;
+    ExpiringMotionlessAverageTable table = new ExpiringMotionlessAverageTable.Builder(
+        LongMotionlessAverageTable.Builder.createConstantFilterTable(0, 2), timeoutMs).tickMs(1).listener(listener).build();
+    Random random = new Random(42);
+    Map<Long, Long> lastSeen = new HashMap<>();
+    long now = 1234567;
+    for (int round = 0; round < 400; round++) {
+      for (int i = 0; i < 50; i++) {
+        long key = random.nextInt(2000);
+        table.average(key, random.nextFloat(), now);
+        lastSeen.put(key, now);
+      }
+      now += random.nextInt(300) * NANO + random.nextInt(1000);
+      int budget = random.nextBoolean() ? Integer.MAX_VALUE : 1 + random.nextInt(64);
+      table.expire(now, budget);
+      if (budget == Integer.MAX_VALUE) {
+        long nowTick = (now - 1234567) / NANO;
+        for (Map.Entry<Long, Long> entry : new ArrayList<>(lastSeen.entrySet())) {
+          long deadline = (entry.getValue() - 1234567 + timeoutMs * NANO - 1) / NANO + 1;
+          if (deadline <= nowTick) {
+            lastSeen.remove(entry.getKey());
+          }
+        }
+        assertEquals(lastSeen.size(), table.size());
+        for (Long key : lastSeen.keySet()) {
+          assertTrue(table.contains(key));
+        }
+      }
+    }
+    for (int i = 0; i < expiredKeys.size(); i++) {
+      assertTrue(expiredLastSeen.get(i) + timeoutMs * NANO <= now);
+    }
+    assertEquals(table.size(), table.scheduled());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_non_empty_table() {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createConstantFilterTable(4, 2);
+    table.average(1, 1);
+    new ExpiringMotionlessAverageTable.Builder(table, 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_zero_steps() {
+    table(100, 10).expire(0, 0);
+  }
+
+  private ExpiringMotionlessAverageTable table(long timeoutMs, long tickMs) {
+    return new ExpiringMotionlessAverageTable.Builder(LongMotionlessAverageTable.Builder.createConstantFilterTable(4, 2), timeoutMs)
+        .tickMs(tickMs)
+        .listener(listener)
+        .build();
+  }
+}
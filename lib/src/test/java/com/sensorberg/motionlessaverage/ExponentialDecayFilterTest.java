@@ -0,0 +1,81 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+
+public class ExponentialDecayFilterTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_zero_time_constant() throws Exception {
+    MotionlessAverage.Builder.createExponentialDecayAverage(0);
+  }
+
+  @Test public void decay_table_is_within_its_bound() throws Exception {
+    float maxError = 0;
+    for (int i = 0; i <= 2000000; i++) {
+      float x = i * 1e-5f;
+      maxError = Math.max(maxError, Math.abs(MathHelpers.calculateDecay(x) - (float) Math.exp(-x)));
+    }
+    assertEquals(0f, maxError, 8e-6f);
+    assertEquals(1f, MathHelpers.calculateDecay(0));
+    assertEquals(0f, MathHelpers.calculateDecay(16));
+    assertEquals(0f, MathHelpers.calculateDecay(Float.POSITIVE_INFINITY));
+  }
+
+  @Test public void matches_exact_exponential_decay() throws Exception {
+    long tau = 500;
+    TimestampedAverage filter = TimestampedAverage.Builder.createExponentialDecayAverage(tau);
+    Random random = new Random(9);
+    double expected = Double.NaN;
+    long now = 0;
+    for (int i = 0; i < 10000; i++) {
+      long gap = (1 + random.nextInt(3000)) * NANO;
+      now += gap;
+      float value = -70f + (float) random.nextGaussian() * 6f;
+      if (Double.isNaN(expected)) {
+        expected = value;
+      } else {
+        double decay = Math.exp(-(double) gap / (tau * NANO));
+        expected = value + decay * (expected - value);
+      }
+      // the weight error of 8e-6 times a difference of at most about 50
+      assertEquals(expected, filter.average(value, now), 5e-4);
+    }
+  }
+
+  @Test public void same_result_however_samples_are_spaced() throws Exception {
+    TimestampedAverage once = TimestampedAverage.Builder.createExponentialDecayAverage(1000);
+    TimestampedAverage split = TimestampedAverage.Builder.createExponentialDecayAverage(1000);
+    once.average(0, 0);
+    split.average(0, 0);
+    // a constant input over two half gaps decays the old value like one full gap
+    split.average(10, 500 * NANO);
+    assertEquals(once.average(10, 1000 * NANO), split.average(10, 1000 * NANO), 1e-4f);
+  }
+
+  @Test public void same_timestamp_keeps_the_average() throws Exception {
+    TimestampedAverage filter = TimestampedAverage.Builder.createExponentialDecayAverage(1000);
+    filter.average(-70, 5 * NANO);
+    assertEquals(-70f, filter.average(-50, 5 * NANO));
+    assertEquals(-70f, filter.average(-50, 4 * NANO));
+  }
+
+  @Test public void bulk_matches_single_updates() throws Exception {
+    TimestampedAverage single = TimestampedAverage.Builder.createExponentialDecayAverage(300);
+    TimestampedAverage bulk = MotionlessAverageFactory.Builder.createExponentialDecayAverage(300).create();
+    long[] timestamps = new long[test_values.length];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = i * i * 11 * NANO;
+    }
+    float[] out = new float[test_values.length];
+    bulk.average(test_values, timestamps, out, 0, out.length);
+    for (int i = 0; i < out.length; i++) {
+      assertEquals(single.average(test_values[i], timestamps[i]), out[i]);
+    }
+  }
+}
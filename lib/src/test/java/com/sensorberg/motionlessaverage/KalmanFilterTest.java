@@ -107,4 +107,57 @@ public class KalmanFilterTest {
 
     Assert.assertEquals(6.14f, result, 0.01f);
   }
+
+  @Test
+  public void reset_starts_over() {
+    KalmanFilter kalmanFilter = new KalmanFilter.Builder(0.01f, 3f).steadyStateTolerance(0.01f).build();
+    for (float value : AverageTest.test_values) {
+      kalmanFilter.average(value);
+    }
+    kalmanFilter.reset();
+    KalmanFilter expected = new KalmanFilter.Builder(0.01f, 3f).steadyStateTolerance(0.01f).build();
+    for (float value : AverageTest.test_values) {
+      Assert.assertEquals(expected.average(value), kalmanFilter.average(value), 0f);
+    }
+  }
+
+  @Test
+  public void reconfigure_matches_a_new_filter() {
+    KalmanFilter kalmanFilter = new KalmanFilter.Builder(0.01f, 3f).build();
+    kalmanFilter.average(5f);
+    kalmanFilter.reconfigure(0.5f, 1f, 1f, 0.5f, 1f);
+    kalmanFilter.reset();
+    KalmanFilter expected = new KalmanFilter.Builder(0.5f, 1f).motionVector(0.5f).build();
+    for (float value : AverageTest.test_values) {
+      Assert.assertEquals(expected.filter(value, 1f), kalmanFilter.filter(value, 1f), 0f);
+    }
+  }
+
+  @Test
+  public void reconfigure_matches_a_new_filter_in_steady_state() {
+    KalmanFilter kalmanFilter = new KalmanFilter.Builder(0.01f, 3f).steadyStateTolerance(0.01f).build();
+    for (float value : AverageTest.test_values) {
+      kalmanFilter.average(value);
+    }
+    kalmanFilter.reconfigure(0.5f, 1f, 1f, 0f, 1f);
+    kalmanFilter.reset();
+    KalmanFilter expected = new KalmanFilter.Builder(0.5f, 1f).steadyStateTolerance(0.01f).build();
+    for (float value : AverageTest.test_values) {
+      Assert.assertEquals(expected.average(value), kalmanFilter.average(value), 0f);
+    }
+    Assert.assertTrue(kalmanFilter.isSteadyState());
+  }
+
+  @Test
+  public void reconfigure_keeps_the_estimate() {
+    KalmanFilter kalmanFilter = new KalmanFilter.Builder(0.01f, 3f).build();
+    kalmanFilter.average(5f);
+    kalmanFilter.reconfigure(0.01f, 1000f, 1f, 0f, 1f);
+    Assert.assertEquals(5f, kalmanFilter.average(100f), 0.5f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void reconfigure_rejects_nan() {
+    new KalmanFilter.Builder(0.01f, 3f).build().reconfigure(0.01f, Float.NaN, 1f, 0f, 1f);
+  }
 }
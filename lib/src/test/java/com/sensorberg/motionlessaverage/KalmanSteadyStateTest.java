@@ -0,0 +1,81 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class KalmanSteadyStateTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builder_should_throw_Exception_when_tolerance_is_negative() {
+    new KalmanFilter.Builder(1f, 1f).steadyStateTolerance(-1f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builder_should_throw_Exception_when_tolerance_is_NAN() {
+    new KalmanFilter.Builder(1f, 1f).steadyStateTolerance(Float.NaN);
+  }
+
+  @Test
+  public void default_tolerance_matches_full_update_exactly() {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(0.01f, 3f).motionVector(0.5f);
+    KalmanFilter filter = builder.build();
+    KalmanFilterBank fullUpdate = MotionlessAverageBank.Builder.createKalmanFilterBank(1, builder);
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      float signal = -70f + (float) random.nextGaussian() * 6f;
+      float u = random.nextFloat();
+      Assert.assertEquals(fullUpdate.filter(0, signal, u), filter.filter(signal, u), 0f);
+    }
+  }
+
+  @Test
+  public void tolerance_bounds_the_difference_to_full_update() {
+    float tolerance = 1e-3f;
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(0.01f, 3f);
+    KalmanFilter filter = builder.steadyStateTolerance(tolerance).build();
+    KalmanFilterBank fullUpdate = MotionlessAverageBank.Builder.createKalmanFilterBank(1, builder);
+    Random random = new Random(42);
+    float previous = Float.NaN;
+    float maxInnovation = 0;
+    for (int i = 0; i < 10000; i++) {
+      float signal = -70f + (float) random.nextGaussian() * 6f;
+      if (!Float.isNaN(previous)) {
+        maxInnovation = Math.max(maxInnovation, Math.abs(signal - previous));
+      }
+      float exact = fullUpdate.filter(0, signal, 0f);
+      float fast = filter.filter(signal, 0f);
+      // plus a few float ulps of rounding
+      Assert.assertEquals(exact, fast, tolerance * maxInnovation + 1e-4f);
+      previous = exact;
+    }
+    Assert.assertTrue(filter.isSteadyState());
+  }
+
+  @Test
+  public void closed_form_matches_iterated_covariance() {
+    float[][] parameters = {{0.01f, 3f, 1f, 1f}, {1f, 1f, 1f, 1f}, {0.5f, 10f, 0.8f, 1f}, {0.01f, 3f, 1f, 0.5f}, {0.2f, 1f, 0f, 0.5f}, {0.01f, 3f, 1.2f, 1f}};
+    for (float[] p : parameters) {
+      float r = p[0], q = p[1], a = p[2], c = p[3];
+      float cov = MathHelpers.calculateKalmanInitialCovariance(c, q);
+      for (int i = 0; i < 100000; i++) {
+        float uncertainty = MathHelpers.calculateKalmanUncertainty(cov, a, r);
+        cov = MathHelpers.calculateKalmanCovariance(uncertainty, MathHelpers.calculateKalmanGain(uncertainty, c, q), c);
+      }
+      Assert.assertEquals(cov, MathHelpers.calculateKalmanSteadyStateCovariance(r, q, a, c), cov * 1e-4f);
+    }
+  }
+
+  @Test
+  public void no_steady_state_without_process_noise() {
+    Assert.assertTrue(Float.isNaN(MathHelpers.calculateKalmanSteadyStateCovariance(0f, 3f, 1f, 1f)));
+    // diverges
+    Assert.assertTrue(Float.isNaN(MathHelpers.calculateKalmanSteadyStateCovariance(0.01f, 3f, 1f, 2f)));
+    KalmanFilter filter = new KalmanFilter.Builder(0f, 3f).steadyStateTolerance(0.01f).build();
+    for (int i = 0; i < 1000; i++) {
+      filter.average(i % 7);
+    }
+    Assert.assertFalse(filter.isSteadyState());
+  }
+}
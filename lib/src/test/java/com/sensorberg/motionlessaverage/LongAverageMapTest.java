@@ -0,0 +1,60 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class LongAverageMapTest {
+
+  @Test public void put_get_remove() throws Exception {
+    LongAverageMap map = new LongAverageMap(0);
+    TimestampedAverage average = TimestampedAverage.Builder.createConstantFilterAverage(2);
+    map.put(0L, average);
+    map.put(Long.MIN_VALUE, average);
+    assertSame(average, map.get(0L));
+    assertSame(average, map.get(Long.MIN_VALUE));
+    assertNull(map.get(1L));
+    assertEquals(2, map.size());
+    assertTrue(map.remove(0L));
+    assertFalse(map.remove(0L));
+    assertNull(map.get(0L));
+    assertEquals(1, map.size());
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(Long.MIN_VALUE));
+  }
+
+  @Test public void behaves_like_a_hash_map_under_churn() throws Exception {
+    LongAverageMap map = new LongAverageMap(4);
+    Map<Long, TimestampedAverage> reference = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      // small key space, so inserts and removes keep colliding and shifting entries back
+      long key = random.nextInt(2000) * 0x100000000L;
+      if (random.nextInt(3) == 0) {
+        assertEquals(reference.remove(key) != null, map.remove(key));
+      } else {
+        TimestampedAverage average = TimestampedAverage.Builder.createConstantFilterAverage(2);
+        reference.put(key, average);
+        map.put(key, average);
+      }
+      assertEquals(reference.size(), map.size());
+    }
+    for (long key = 0; key < 2000; key++) {
+      assertSame(reference.get(key * 0x100000000L), map.get(key * 0x100000000L));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_negative_expected_size() throws Exception {
+    new LongAverageMap(-1);
+  }
+}
@@ -0,0 +1,137 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.ConcurrentConstantFilterTest.runConcurrently;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class LongMotionlessAverageRegistryTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_null_factory() throws Exception {
+    new LongMotionlessAverageRegistry(null);
+  }
+
+  @Test public void keys_have_independent_averages() throws Exception {
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2), 1);
+    for (int i = 0; i < test_values.length; i++) {
+      registry.average(0L, 100f);
+      assertEquals(expected_results_filter_2[i], registry.average(0xAABBCCDDEEFFL, test_values[i]), ACCEPTABLE_VARIANCE);
+    }
+    assertEquals(2, registry.size());
+    assertTrue(registry.contains(0L));
+    assertTrue(registry.remove(0L));
+    assertFalse(registry.contains(0L));
+    assertEquals(5f, registry.average(0L, 5f));
+    registry.clear();
+    assertEquals(0, registry.size());
+  }
+
+  @Test public void timestamps_reach_the_averages() throws Exception {
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry(
+        MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100));
+    assertEquals(20.0f, registry.average(42L, 20, 200 * NANO));
+    assertEquals(22.5f, registry.average(42L, 25, 800 * NANO));
+  }
+
+  @Test public void concurrent_updates_and_removals() throws Exception {
+    final LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(4), 2);
+    final AtomicReference<String> failure = new AtomicReference<>();
+    runConcurrently(new Runnable() {
+      @Override public void run() {
+        for (int i = 0; i < 100000; i++) {
+          long key = i % 5000;
+          if (i % 7 == 0) {
+            registry.remove(key);
+          } else if (registry.average(key, 3f) != 3f) {
+            failure.compareAndSet(null, "Wrong average for key " + key);
+          }
+        }
+      }
+    });
+    assertNull(failure.get());
+    assertTrue(registry.size() <= 5000);
+  }
+
+  @Test public void idle_keys_expire_with_their_last_value() throws Exception {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(0);
+    MotionlessAverageFactory factory = MotionlessAverageFactory.Builder.createConstantFilterAverage(2);
+    MotionlessAveragePool pool = new MotionlessAveragePool(4);
+    final long[] expired = new long[2];
+    final float[] value = new float[1];
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry.Builder(factory)
+        .stripes(2)
+        .pool(pool)
+        .idleTimeoutMs(100)
+        .tickMs(10)
+        .clock(clock)
+        .listener(new ExpiringMotionlessAverageTable.Listener() {
+          @Override public void onExpired(long key, float lastValue, long lastSeenNanos) {
+            expired[0] = key;
+            expired[1] = lastSeenNanos;
+            value[0] = lastValue;
+          }
+        })
+        .build();
+    registry.average(1L, 10f);
+    registry.average(1L, 20f);
+    clock.advanceMs(50);
+    registry.average(2L, 5f);
+    assertEquals(0, registry.expire(clock.nanoTime()));
+    clock.advanceMs(60);
+    assertEquals(1, registry.expire(clock.nanoTime()));
+    assertEquals(1L, expired[0]);
+    assertEquals(0L, expired[1]);
+    assertEquals(15f, value[0]);
+    assertFalse(registry.contains(1L));
+    assertTrue(registry.contains(2L));
+    assertEquals(1, pool.idle(factory));
+    clock.advanceMs(50);
+    assertEquals(1, registry.expire(clock.nanoTime()));
+    assertEquals(0, registry.size());
+    assertEquals(2, pool.idle(factory));
+  }
+
+  @Test public void updated_and_removed_keys_dont_expire() throws Exception {
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry.Builder(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2))
+        .idleTimeoutMs(100)
+        .build();
+    registry.average(1L, 1f, 0);
+    registry.average(2L, 1f, 0);
+    registry.average(1L, 1f, 90 * NANO);
+    assertTrue(registry.remove(2L));
+    assertEquals(0, registry.expire(150 * NANO));
+    assertTrue(registry.contains(1L));
+    registry.average(2L, 1f, 150 * NANO);
+    assertEquals(1, registry.expire(200 * NANO));
+    assertFalse(registry.contains(1L));
+    registry.clear();
+    assertEquals(0, registry.expire(1000 * NANO));
+  }
+
+  @Test public void without_idle_timeout_nothing_expires() throws Exception {
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2), 1);
+    registry.average(1L, 1f, 0);
+    assertEquals(0, registry.expire(Long.MAX_VALUE));
+    assertEquals(1, registry.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_zero_idle_timeout() throws Exception {
+    new LongMotionlessAverageRegistry.Builder(MotionlessAverageFactory.Builder.createConstantFilterAverage(2))
+        .idleTimeoutMs(0);
+  }
+}
@@ -0,0 +1,96 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class LongMotionlessAverageTableTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    LongMotionlessAverageTable.Builder.createConstantFilterTable(10, 0.9999f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_negative_expected_size() throws Exception {
+    LongMotionlessAverageTable.Builder.createConstantFilterTable(-1, 2);
+  }
+
+  @Test public void constant_filter_keys_are_independent() throws Exception {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createConstantFilterTable(0, 2);
+    for (int i = 0; i < test_values.length; i++) {
+      table.average(-1L, 100f);
+      float average = table.average(0xAABBCCDDEEFFL, test_values[i]);
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], average, ACCEPTABLE_VARIANCE);
+    }
+    assertEquals(100f, table.get(-1L));
+    assertTrue(Float.isNaN(table.get(1L)));
+    assertEquals(2, table.size());
+    assertTrue(table.remove(-1L));
+    assertFalse(table.contains(-1L));
+    assertEquals(7f, table.average(-1L, 7f));
+  }
+
+  @Test public void timed_table_matches_filters_under_churn() throws Exception {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createTimeDependentTable(4, 2, 20, 100, 1000);
+    Map<Long, TimestampedAverage> filters = new HashMap<>();
+    Random random = new Random(42);
+    long now = 0;
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(3000) * 31L;
+      now += random.nextInt(10) * NANO;
+      if (random.nextInt(10) == 0) {
+        assertEquals(filters.remove(key) != null, table.remove(key));
+        continue;
+      }
+      TimestampedAverage filter = filters.get(key);
+      if (filter == null) {
+        filter = TimestampedAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+        filters.put(key, filter);
+      }
+      float value = random.nextInt(40) - 90;
+      assertEquals(filter.average(value, now), table.average(key, value, now));
+    }
+    assertEquals(filters.size(), table.size());
+  }
+
+  @Test public void kalman_table_matches_filters_while_growing() throws Exception {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(2f, 3f).motionVector(1f);
+    LongKalmanFilterTable table = LongMotionlessAverageTable.Builder.createKalmanFilterTable(1, builder);
+    KalmanFilter[] filters = new KalmanFilter[500];
+    for (int i = 0; i < filters.length; i++) {
+      filters[i] = builder.build();
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < filters.length; i++) {
+        float signal = (i * 7 + round * 13) % 50;
+        assertEquals(filters[i].filter(signal, round), table.filter(i, signal, round));
+      }
+    }
+    assertEquals(filters.length, table.size());
+  }
+
+  @Test public void batch_matches_single_updates() throws Exception {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createSimplifiedKalmanFilterTable(16, 0.01f, 3f);
+    MotionlessAverage filter = MotionlessAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    long[] keys = new long[test_values.length];
+    long[] timestamps = new long[test_values.length];
+    float[] out = new float[test_values.length];
+    table.average(keys, test_values, timestamps, out, 0, test_values.length);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(filter.average(test_values[i]), out[i]);
+    }
+    table.clear();
+    assertEquals(0, table.size());
+  }
+}
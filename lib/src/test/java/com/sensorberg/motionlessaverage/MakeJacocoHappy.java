@@ -7,5 +7,19 @@ public class MakeJacocoHappy {
   public void make_jacoco_happy() throws Exception {
     new MotionlessAverage.Builder();
     new MathHelpers();
+    new MotionlessAverageBank.Builder();
+    new TimestampedAverage.Builder();
+    new MotionlessAverageFactory.Builder();
+    new ArrayHelpers();
+    new LongMotionlessAverageTable.Builder();
+    new OffHeapMotionlessAverageBank.Builder();
+    new MotionlessAverageSnapshot();
+    new TraceReplay();
+    new ParameterSweep.Grid();
+    new MotionlessVectorAverage.Builder();
+    new MotionlessVectorAverage.Helper();
+    new MotionlessAverageMetrics();
+    new NanoClock.Builder();
+    new MotionlessAverageSegment.Builder();
   }
 }
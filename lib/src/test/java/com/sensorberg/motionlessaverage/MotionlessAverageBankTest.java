@@ -0,0 +1,102 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+
+public class MotionlessAverageBankTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_empty_bank() throws Exception {
+    MotionlessAverageBank.Builder.createConstantFilterBank(0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    MotionlessAverageBank.Builder.createConstantFilterBank(10, 0.9999f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_max_min_time_direction() throws Exception {
+    MotionlessAverageBank.Builder.createTimeDependentBank(10, 1, 2, 10, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_batch_length_mismatch() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(10, 2);
+    bank.average(new int[2], new float[3], new float[3]);
+  }
+
+  @Test public void constant_filter_channels_are_independent() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(3, 2);
+    for (int i = 0; i < test_values.length; i++) {
+      bank.average(0, 100f);
+      float average = bank.average(1, test_values[i]);
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], average, ACCEPTABLE_VARIANCE);
+    }
+    assertEquals(100f, bank.average(0, 100f));
+    assertEquals(7f, bank.average(2, 7f));
+  }
+
+  @Test public void constant_filter_batch_matches_single_updates() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(2, 2);
+    int[] channels = new int[test_values.length];
+    float[] out = new float[test_values.length];
+    bank.average(channels, test_values, out);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], out[i], ACCEPTABLE_VARIANCE);
+    }
+  }
+
+  @Test public void timed_filter_matches_single_filter() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder
+        .createTimeDependentBank(4, 1, 3, 100, 1100);
+    TimedFilter filter = (TimedFilter) MotionlessAverage.Builder
+        .createTimeDependentAverage(1, 3, 100, 1100);
+    long now = 200 * NANO;
+    for (int i = 0; i < test_values.length; i++) {
+      now += (50 + 100 * i) * NANO;
+      assertEquals(filter.average(test_values[i], now), bank.average(3, test_values[i], now));
+    }
+  }
+
+  @Test public void kalman_filter_matches_single_filter() throws Exception {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(2f, 3f).measurementVector(2f).motionVector(1f);
+    KalmanFilterBank bank = MotionlessAverageBank.Builder.createKalmanFilterBank(2, builder);
+    KalmanFilter filter = builder.build();
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(filter.filter(test_values[i], i), bank.filter(1, test_values[i], i));
+    }
+  }
+
+  @Test public void simplified_kalman_batch_matches_single_filter() throws Exception {
+    KalmanFilterBank bank = MotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(2, 0.01f, 3f);
+    MotionlessAverage filter = MotionlessAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    int[] channels = new int[test_values.length];
+    float[] out = new float[test_values.length];
+    bank.average(channels, test_values, out);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(filter.average(test_values[i]), out[i]);
+    }
+    assertEquals(2, bank.size());
+  }
+
+  @Test public void timestamped_batch_matches_single_filter() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createTimeDependentBank(1, 1, 3, 100, 1100);
+    TimestampedAverage filter = TimestampedAverage.Builder.createTimeDependentAverage(1, 3, 100, 1100);
+    int[] channels = new int[test_values.length];
+    long[] timestamps = new long[test_values.length];
+    float[] out = new float[test_values.length];
+    for (int i = 0; i < test_values.length; i++) {
+      timestamps[i] = i * 300 * NANO;
+    }
+    bank.average(channels, test_values, timestamps, out);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(filter.average(test_values[i], timestamps[i]), out[i]);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageEmitterTest {
+
+  @Test public void reports_first_value_and_changes_above_delta() {
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(2))
+        .delta(1)
+        .build();
+    assertEquals(Float.NaN, emitter.emittedValue());
+    assertTrue(emitter.average(10, 0));
+    assertEquals(10f, emitter.emittedValue());
+    assertFalse(emitter.average(11, 1)); // 10.5
+    assertEquals(10.5f, emitter.value());
+    assertEquals(10f, emitter.emittedValue());
+    assertTrue(emitter.average(12, 2)); // 11.25
+    assertEquals(11.25f, emitter.emittedValue());
+    assertFalse(emitter.average(11.25f, 3));
+  }
+
+  @Test public void holds_back_changes_until_min_interval() {
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(1.0001f))
+        .minIntervalMs(10)
+        .build();
+    assertTrue(emitter.average(1, 0));
+    assertFalse(emitter.average(2, 5 * NANO));
+    assertTrue(emitter.average(3, 10 * NANO));
+    assertFalse(emitter.average(3, 15 * NANO));
+  }
+
+  @Test public void sends_heartbeat_after_max_interval() {
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(2))
+        .delta(100)
+        .maxIntervalMs(50)
+        .build();
+    assertTrue(emitter.average(1, 0));
+    assertFalse(emitter.average(1, 49 * NANO));
+    assertTrue(emitter.average(1, 50 * NANO));
+    assertFalse(emitter.average(1, 99 * NANO));
+    assertTrue(emitter.average(1, 100 * NANO));
+  }
+
+  @Test public void reports_values_after_nan() {
+    MotionlessAverage passThrough = new MotionlessAverage() {
+      @Override public float average(float newValue) {
+        return newValue;
+      }
+    };
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(passThrough).delta(1).build();
+    assertTrue(emitter.average(Float.NaN, 0));
+    assertEquals(Float.NaN, emitter.emittedValue());
+    assertTrue(emitter.average(1, 1));
+  }
+
+  @Test public void passes_timestamps_to_timestamped_averages() {
+    TimestampedAverage expected = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100);
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(
+        TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100)).build();
+    for (int i = 0; i < AverageTest.test_values.length; i++) {
+      emitter.average(AverageTest.test_values[i], i * 30 * NANO);
+      assertEquals(expected.average(AverageTest.test_values[i], i * 30 * NANO), emitter.value());
+    }
+  }
+
+  @Test public void batch_matches_single_values() {
+    float[] values = AverageTest.test_values;
+    long[] timestamps = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      timestamps[i] = i * 7 * NANO;
+    }
+    MotionlessAverageEmitter single = emitter();
+    MotionlessAverageEmitter batch = emitter();
+    float[] emittedValues = new float[values.length];
+    long[] emittedTimestamps = new long[values.length];
+    int count = batch.average(values, timestamps, 1, values.length - 1, emittedValues, emittedTimestamps);
+
+    int expected = 0;
+    for (int i = 1; i < values.length; i++) {
+      if (single.average(values[i], timestamps[i])) {
+        assertEquals(single.emittedValue(), emittedValues[expected]);
+        assertEquals(timestamps[i], emittedTimestamps[expected]);
+        expected++;
+      }
+    }
+    assertEquals(expected, count);
+    assertTrue(count > 1 && count < values.length - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_negative_delta() {
+    new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(2)).delta(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_max_interval_below_min_interval() {
+    new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(2)).minIntervalMs(10).maxIntervalMs(5).build();
+  }
+
+  private static MotionlessAverageEmitter emitter() {
+    return new MotionlessAverageEmitter.Builder(MotionlessAverage.Builder.createConstantFilterAverage(3))
+        .delta(2)
+        .minIntervalMs(10)
+        .maxIntervalMs(40)
+        .build();
+  }
+}
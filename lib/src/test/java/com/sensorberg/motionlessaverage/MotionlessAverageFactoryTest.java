@@ -0,0 +1,65 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageFactoryTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    MotionlessAverageFactory.Builder.createConstantFilterAverage(0.9999f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_max_min_time_direction() throws Exception {
+    MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 2, 10, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_kalman_r_NAN() throws Exception {
+    MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(Float.NaN, 1f);
+  }
+
+  @Test public void creates_independent_averages() throws Exception {
+    MotionlessAverageFactory factory = MotionlessAverageFactory.Builder.createConstantFilterAverage(2);
+    MotionlessAverage first = factory.create();
+    MotionlessAverage second = factory.create();
+    assertNotSame(first, second);
+    first.average(100f);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(expected_results_filter_2[i], second.average(test_values[i]), ACCEPTABLE_VARIANCE);
+    }
+  }
+
+  @Test public void kalman_factory_matches_builder() throws Exception {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(2f, 3f).measurementVector(2f);
+    MotionlessAverage created = MotionlessAverageFactory.Builder.createKalmanFilter(builder).create();
+    MotionlessAverage built = builder.build();
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(built.average(test_values[i]), created.average(test_values[i]));
+    }
+  }
+
+  @Test public void factories_with_same_configuration_are_equal() throws Exception {
+    assertEquals(MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100),
+        MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100));
+    assertEquals(MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100).hashCode(),
+        MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100).hashCode());
+    assertEquals(MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(1f, 2f),
+        MotionlessAverageFactory.Builder.createKalmanFilter(new KalmanFilter.Builder(1f, 2f)));
+    assertFalse(MotionlessAverageFactory.Builder.createConstantFilterAverage(2)
+        .equals(MotionlessAverageFactory.Builder.createConstantFilterAverage(3)));
+    assertTrue(MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100).toString().contains("maxTimeMs=1100"));
+    assertEquals(MotionlessAverageFactory.Builder.createSlidingWindowAverage(10),
+        MotionlessAverageFactory.Builder.createSlidingWindowAverage(10));
+    assertFalse(MotionlessAverageFactory.Builder.createSlidingWindowAverage(10)
+        .equals(MotionlessAverageFactory.Builder.createSlidingWindowAverage(11)));
+  }
+}
@@ -0,0 +1,150 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class MotionlessAverageMetricsTest {
+
+  private final RecordingSink sink = new RecordingSink();
+
+  @Before public void setup() {
+    // the gradle metricsTest task enables the metrics, the counters are global so other tests may have updated them
+    assumeTrue(MotionlessAverageMetrics.ENABLED);
+    MotionlessAverageMetrics.reset();
+  }
+
+  @Test public void counts_clamped_elapsed_time() {
+    TimestampedAverage average = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100);
+    average.average(1, 0);
+    average.average(1, 5 * NANO);
+    average.average(1, 10 * NANO);
+    average.average(1, 60 * NANO);
+    average.average(1, 500 * NANO);
+    average.average(1, 900 * NANO);
+    MotionlessAverageMetrics.report(sink);
+    assertEquals(2L, sink.counters.get(MotionlessAverageMetrics.MIN_TIME_CLAMPS).longValue());
+    assertEquals(2L, sink.counters.get(MotionlessAverageMetrics.MAX_TIME_CLAMPS).longValue());
+  }
+
+  @Test public void counts_nan_inputs_and_kalman_initializations() {
+    MotionlessAverage constant = MotionlessAverage.Builder.createConstantFilterAverage(2);
+    constant.average(1);
+    constant.average(Float.NaN);
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(3, 0.01f, 3);
+    bank.average(0, 1);
+    bank.average(2, 1);
+    bank.average(2, Float.NaN);
+    MotionlessAverageMetrics.report(sink);
+    assertEquals(2L, sink.counters.get(MotionlessAverageMetrics.NAN_INPUTS).longValue());
+    assertEquals(2L, sink.counters.get(MotionlessAverageMetrics.KALMAN_INITIALIZATIONS).longValue());
+  }
+
+  @Test public void instrumented_average_counts_updates_and_samples_latency() {
+    TimestampedAverage average = MotionlessAverageMetrics.instrument(TimestampedAverage.Builder.createConstantFilterAverage(2));
+    TimestampedAverage expected = TimestampedAverage.Builder.createConstantFilterAverage(2);
+    for (int i = 0; i < 2 * MotionlessAverageMetrics.LATENCY_SAMPLING; i++) {
+      assertEquals(expected.average(i), average.average(i));
+    }
+    float[] values = {1, 2, 3};
+    average.average(values, new long[3], values, 0, 3);
+    MotionlessAverageMetrics.report(sink);
+    assertEquals(2L * MotionlessAverageMetrics.LATENCY_SAMPLING + 3, sink.counters.get(MotionlessAverageMetrics.UPDATES).longValue());
+    long[] counts = sink.histograms.get(MotionlessAverageMetrics.UPDATE_LATENCY);
+    long sampled = 0;
+    for (long count : counts) {
+      sampled += count;
+    }
+    assertEquals(3L, sampled);
+  }
+
+  @Test public void reports_gauges() {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(10, 2);
+    bank.average(3, 1);
+    bank.average(7, 1);
+    OffHeapMotionlessAverageBank offHeap = OffHeapMotionlessAverageBank.Builder.createTimeDependentBank(5, 1.1f, 5, 10, 100);
+    offHeap.average(4, 1);
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createConstantFilterTable(4, 2);
+    table.average(42L, 1);
+    MotionlessAverageMetrics.registerBank("bank", bank);
+    MotionlessAverageMetrics.registerBank("offheap", offHeap);
+    MotionlessAverageMetrics.registerTable("table", table);
+    try {
+      MotionlessAverageMetrics.report(sink);
+      assertEquals(10L, sink.gauges.get("bank.size").longValue());
+      assertEquals(2L, sink.gauges.get("bank.initialized").longValue());
+      assertEquals(1L, sink.gauges.get("offheap.initialized").longValue());
+      assertEquals(1L, sink.gauges.get("table.size").longValue());
+    } finally {
+      assertTrue(MotionlessAverageMetrics.unregisterGauge("bank.size"));
+      MotionlessAverageMetrics.unregisterGauge("bank.initialized");
+      MotionlessAverageMetrics.unregisterGauge("offheap.size");
+      MotionlessAverageMetrics.unregisterGauge("offheap.initialized");
+      MotionlessAverageMetrics.unregisterGauge("table.size");
+    }
+    assertFalse(MotionlessAverageMetrics.unregisterGauge("bank.size"));
+  }
+
+  @Test public void striped_counter_sums_all_threads() throws Exception {
+    final StripedCounter counter = new StripedCounter();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(new Runnable() {
+        @Override public void run() {
+          for (int i = 0; i < 10000; i++) {
+            counter.increment();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000L, counter.sum());
+    counter.reset();
+    assertEquals(0L, counter.sum());
+  }
+
+  @Test public void histogram_buckets_by_power_of_two() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(0);
+    histogram.record(1);
+    histogram.record(1000);
+    histogram.record(Long.MAX_VALUE);
+    long[] counts = histogram.counts();
+    long[] bounds = histogram.upperBounds();
+    assertEquals(1L, counts[0]);
+    assertEquals(1L, counts[1]);
+    assertEquals(1L, counts[10]);
+    assertEquals(1024L, bounds[10]);
+    assertEquals(1L, counts[LatencyHistogram.BUCKETS - 1]);
+  }
+
+  private static class RecordingSink implements MetricsSink {
+
+    final Map<String, Long> counters = new HashMap<>();
+    final Map<String, Long> gauges = new HashMap<>();
+    final Map<String, long[]> histograms = new HashMap<>();
+
+    @Override public void counter(String name, long count) {
+      counters.put(name, count);
+    }
+
+    @Override public void gauge(String name, long value) {
+      gauges.put(name, value);
+    }
+
+    @Override public void histogram(String name, long[] upperBounds, long[] counts) {
+      histograms.put(name, counts);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAveragePipelineTest {
+
+  @Test public void averages_every_key_like_a_single_table() throws Exception {
+    final int producers = 4;
+    final int keysPerProducer = 50;
+    final int samples = 200;
+    final ConcurrentMap<Long, Float> last = new ConcurrentHashMap<>();
+    MotionlessAveragePipeline pipeline = new MotionlessAveragePipeline.Builder(new MotionlessAveragePipeline.Listener() {
+      @Override public void onAverages(int shard, long[] keys, float[] averages, long[] timestampsNanos, int count) {
+        for (int i = 0; i < count; i++) {
+          last.put(keys[i], averages[i]);
+        }
+      }
+    }, tables(3)).capacity(64).batchSize(16).build();
+
+    final MotionlessAveragePipeline target = pipeline;
+    Thread[] threads = new Thread[producers];
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      threads[p] = new Thread(new Runnable() {
+        @Override public void run() {
+          for (int s = 0; s < samples; s++) {
+            for (int k = 0; k < keysPerProducer; k++) {
+              long key = producer * keysPerProducer + k;
+              while (!target.offer(key, value(key, s), s * 20 * NANO)) {
+                Thread.yield();
+              }
+            }
+          }
+        }
+      });
+      threads[p].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    pipeline.close();
+
+    assertEquals(0, pipeline.queueDepth());
+    assertEquals(producers * keysPerProducer, last.size());
+    for (long key = 0; key < producers * keysPerProducer; key++) {
+      TimestampedAverage expected = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100);
+      float value = Float.NaN;
+      for (int s = 0; s < samples; s++) {
+        value = expected.average(value(key, s), s * 20 * NANO);
+      }
+      assertEquals(value, last.get(key));
+    }
+  }
+
+  @Test public void drops_and_counts_when_a_shard_is_full() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    MotionlessAveragePipeline pipeline = new MotionlessAveragePipeline.Builder(new MotionlessAveragePipeline.Listener() {
+      @Override public void onAverages(int shard, long[] keys, float[] averages, long[] timestampsNanos, int count) {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, tables(1)).capacity(4).batchSize(1).build();
+
+    assertTrue(pipeline.offer(1, 1, 0));
+    blocked.await();
+    int accepted = 0;
+    for (int i = 0; i < 10; i++) {
+      if (pipeline.offer(1, i, 0)) {
+        accepted++;
+      }
+    }
+    assertEquals(4, accepted);
+    assertEquals(4, pipeline.queueDepth());
+    assertEquals(4, pipeline.queueDepth(0));
+    assertEquals(6L, pipeline.dropped());
+    release.countDown();
+    pipeline.close();
+    assertEquals(0, pipeline.queueDepth());
+    assertFalse(pipeline.offer(1, 1, 0));
+    assertEquals(7L, pipeline.dropped());
+  }
+
+  @Test public void spreads_keys_over_all_shards() {
+    MotionlessAveragePipeline pipeline = new MotionlessAveragePipeline.Builder(new NoListener(), tables(3)).build();
+    int[] counts = new int[pipeline.shards()];
+    for (long key = 0; key < 3000; key++) {
+      counts[pipeline.shardOf(key)]++;
+    }
+    pipeline.close();
+    for (int count : counts) {
+      assertTrue(count > 900 && count < 1100);
+    }
+  }
+
+  @Test public void ring_keeps_order_and_wraps() {
+    RecordRing ring = new RecordRing(4);
+    long[] keys = new long[4];
+    float[] values = new float[4];
+    long[] timestamps = new long[4];
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(ring.offer(i, i + lap, i * 10));
+      }
+      assertFalse(ring.offer(9, 9, 9));
+      assertEquals(4, ring.size());
+      assertEquals(3, ring.drain(keys, values, timestamps, 3));
+      assertEquals(1, ring.size());
+      assertEquals(2L, keys[2]);
+      assertEquals(2f + lap, values[2]);
+      assertEquals(20L, timestamps[2]);
+      assertEquals(1, ring.drain(keys, values, timestamps, 4));
+      assertEquals(3L, keys[0]);
+      assertEquals(0, ring.drain(keys, values, timestamps, 4));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_shared_tables() {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createConstantFilterTable(4, 2);
+    new MotionlessAveragePipeline.Builder(new NoListener(), table, table);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_no_tables() {
+    new MotionlessAveragePipeline.Builder(new NoListener());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_small_capacity() {
+    new MotionlessAveragePipeline.Builder(new NoListener(), tables(1)).capacity(1);
+  }
+
+  private static float value(long key, int sample) {
+    return (key * 31 + sample * 7) % 50;
+  }
+
+  private static LongMotionlessAverageTable[] tables(int shards) {
+    LongMotionlessAverageTable[] tables = new LongMotionlessAverageTable[shards];
+    for (int i = 0; i < shards; i++) {
+      tables[i] = LongMotionlessAverageTable.Builder.createTimeDependentTable(16, 1.1f, 5, 10, 100);
+    }
+    return tables;
+  }
+
+  private static class NoListener implements MotionlessAveragePipeline.Listener {
+    @Override public void onAverages(int shard, long[] keys, float[] averages, long[] timestampsNanos, int count) {
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAveragePoolTest {
+
+  private static final MotionlessAverageFactory timed = MotionlessAverageFactory.Builder.createTimeDependentAverage(2, 20, 10, 500);
+
+  @Test public void reset_averages_behave_like_new_ones() {
+    MotionlessAverageFactory[] factories = {
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2),
+        timed,
+        MotionlessAverageFactory.Builder.createExponentialDecayAverage(100),
+        MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(0.01f, 3),
+        MotionlessAverageFactory.Builder.createSlidingWindowAverage(4),
+    };
+    for (MotionlessAverageFactory factory : factories) {
+      TimestampedAverage average = factory.create();
+      feed(average);
+      average.reset();
+      assert_behaves_like_new(factory.create(), average);
+    }
+    assert_behaves_like_new(concurrent(), reset(concurrent()));
+    assert_behaves_like_new(concurrentTimed(), reset(concurrentTimed()));
+    assert_behaves_like_new(new TimeWindowAggregator.Builder(300).build(), reset(new TimeWindowAggregator.Builder(300).build()));
+    assert_behaves_like_new(cascade(), reset(cascade()));
+    assert_behaves_like_new(MotionlessStatistics.Builder.createTimeDependentStatistics(2, 20, 10, 500),
+        reset(MotionlessStatistics.Builder.createTimeDependentStatistics(2, 20, 10, 500)));
+    assert_behaves_like_new(MotionlessStatistics.Builder.createConstantFilterStatistics(2),
+        reset(MotionlessStatistics.Builder.createConstantFilterStatistics(2)));
+    assert_behaves_like_new(MotionlessAverageMetrics.instrument(timed.create()), reset(MotionlessAverageMetrics.instrument(timed.create())));
+    assert_behaves_like_new(MotionlessAverageSegment.Builder.create(timed), reset(MotionlessAverageSegment.Builder.create(timed)));
+  }
+
+  @Test public void reuses_released_averages() {
+    MotionlessAveragePool pool = new MotionlessAveragePool(2);
+    TimestampedAverage first = pool.acquire(timed);
+    feed(first);
+    assertTrue(pool.release(timed, first));
+    assertEquals(1, pool.idle(timed));
+    TimestampedAverage second = pool.acquire(timed);
+    assertSame(first, second);
+    assertEquals(0, pool.idle(timed));
+    assertEquals(1, pool.created());
+    assert_behaves_like_new(timed.create(), second);
+  }
+
+  @Test public void equal_factories_share_averages() {
+    MotionlessAveragePool pool = new MotionlessAveragePool(2);
+    TimestampedAverage average = pool.acquire(timed);
+    pool.release(MotionlessAverageFactory.Builder.createTimeDependentAverage(2, 20, 10, 500), average);
+    assertSame(average, pool.acquire(timed));
+    pool.release(timed, average);
+    assertNotSame(average, pool.acquire(MotionlessAverageFactory.Builder.createTimeDependentAverage(2, 30, 10, 500)));
+  }
+
+  @Test public void keeps_at_most_max_idle() {
+    MotionlessAveragePool pool = new MotionlessAveragePool(20);
+    TimestampedAverage[] averages = new TimestampedAverage[25];
+    for (int i = 0; i < averages.length; i++) {
+      averages[i] = pool.acquire(timed);
+    }
+    for (int i = 0; i < averages.length; i++) {
+      assertEquals(i < 20, pool.release(timed, averages[i]));
+    }
+    assertEquals(20, pool.idle(timed));
+    pool.clear();
+    assertEquals(0, pool.idle(timed));
+  }
+
+  @Test public void registry_reuses_averages_of_removed_keys() {
+    MotionlessAveragePool pool = new MotionlessAveragePool(100);
+    LongMotionlessAverageRegistry registry = new LongMotionlessAverageRegistry(timed, 4, pool);
+    long now = 0;
+    for (int round = 0; round < 10; round++) {
+      for (long key = round * 50; key < round * 50 + 50; key++) {
+        now += 10 * NANO;
+        assertEquals(5f, registry.average(key, 5f, now));
+      }
+      for (long key = round * 50; key < round * 50 + 50; key++) {
+        assertTrue(registry.remove(key));
+      }
+      assertFalse(registry.remove(round * 50));
+    }
+    assertEquals(50, pool.created());
+    assertEquals(50, pool.idle(timed));
+    registry.average(1, 1f, now);
+    registry.average(2, 1f, now);
+    registry.clear();
+    assertEquals(0, registry.size());
+    assertEquals(50, pool.idle(timed));
+    assertEquals(50, pool.created());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_no_idle_averages() {
+    new MotionlessAveragePool(0);
+  }
+
+  private static TimestampedAverage concurrent() {
+    return (TimestampedAverage) MotionlessAverage.Builder.createConcurrentConstantFilterAverage(2);
+  }
+
+  private static TimestampedAverage concurrentTimed() {
+    return (TimestampedAverage) MotionlessAverage.Builder.createConcurrentTimeDependentAverage(2, 20, 10, 500);
+  }
+
+  private static MotionlessCascadeAverage cascade() {
+    return new MotionlessCascadeAverage.Builder(10, 500).level(2, 20).level(5, 50).build();
+  }
+
+  private static TimestampedAverage reset(TimestampedAverage average) {
+    feed(average);
+    average.reset();
+    return average;
+  }
+
+  private static void feed(TimestampedAverage average) {
+    for (int i = 0; i < 10; i++) {
+      average.average(100 + i, (1000 + i * 50) * NANO);
+    }
+  }
+
+  private static void assert_behaves_like_new(TimestampedAverage expected, TimestampedAverage actual) {
+    for (int i = 0; i < test_values.length; i++) {
+      long now = i * 70 * NANO;
+      assertEquals(expected.average(test_values[i], now), actual.average(test_values[i], now));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.ConcurrentConstantFilterTest.runConcurrently;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageRegistryTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_zero_stripes() throws Exception {
+    new MotionlessAverageRegistry<String>(MotionlessAverageFactory.Builder.createConstantFilterAverage(2), 0);
+  }
+
+  @Test public void keys_have_independent_averages() throws Exception {
+    MotionlessAverageRegistry<String> registry = new MotionlessAverageRegistry<>(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2), 1);
+    for (int i = 0; i < test_values.length; i++) {
+      registry.average("other", 100f);
+      assertEquals(expected_results_filter_2[i], registry.average("beacon", test_values[i]), ACCEPTABLE_VARIANCE);
+    }
+    assertEquals(2, registry.size());
+    assertTrue(registry.contains("beacon"));
+    assertTrue(registry.remove("beacon"));
+    assertFalse(registry.contains("beacon"));
+    assertEquals(5f, registry.average("beacon", 5f));
+    registry.clear();
+    assertEquals(0, registry.size());
+  }
+
+  @Test public void timestamps_reach_the_averages() throws Exception {
+    MotionlessAverageRegistry<String> registry = new MotionlessAverageRegistry<>(
+        MotionlessAverageFactory.Builder.createTimeDependentAverage(1, 3, 100, 1100));
+    assertEquals(20.0f, registry.average("beacon", 20, 200 * NANO));
+    assertEquals(22.5f, registry.average("beacon", 25, 800 * NANO));
+  }
+
+  @Test public void concurrent_updates_of_many_keys() throws Exception {
+    final MotionlessAverageRegistry<Integer> registry = new MotionlessAverageRegistry<>(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(4), 4);
+    runConcurrently(new Runnable() {
+      @Override public void run() {
+        for (int i = 0; i < 100000; i++) {
+          registry.average(i % 1000, 7f);
+        }
+      }
+    });
+    assertEquals(1000, registry.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(7f, registry.average(i, 7f));
+    }
+  }
+
+  @Test public void idle_keys_expire_with_their_last_value() throws Exception {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(0);
+    final List<String> expired = new ArrayList<>();
+    final float[] value = new float[1];
+    MotionlessAverageRegistry<String> registry = new MotionlessAverageRegistry.Builder<String>(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2))
+        .stripes(1)
+        .idleTimeoutMs(100)
+        .clock(clock)
+        .listener(new MotionlessAverageRegistry.Listener<String>() {
+          @Override public void onExpired(String key, float lastValue, long lastSeenNanos) {
+            expired.add(key);
+            value[0] = lastValue;
+          }
+        })
+        .build();
+    registry.average("a", 10f);
+    registry.average("b", 1f);
+    clock.advanceMs(50);
+    registry.average("a", 20f);
+    clock.advanceMs(50);
+    assertEquals(1, registry.expire(clock.nanoTime()));
+    assertEquals(Collections.singletonList("b"), expired);
+    assertEquals(1f, value[0]);
+    assertTrue(registry.contains("a"));
+    clock.advanceMs(50);
+    assertEquals(1, registry.expire(clock.nanoTime()));
+    assertEquals(15f, value[0]);
+    assertEquals(0, registry.size());
+  }
+
+  @Test public void expiry_is_bounded_per_stripe() throws Exception {
+    MotionlessAverageRegistry<Integer> registry = new MotionlessAverageRegistry.Builder<Integer>(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2))
+        .stripes(1)
+        .idleTimeoutMs(100)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      registry.average(i, 1f, i * NANO);
+    }
+    assertEquals(4, registry.expire(1000 * NANO, 4));
+    assertEquals(6, registry.expire(1000 * NANO, 4) + registry.expire(1000 * NANO, 4));
+    assertEquals(0, registry.size());
+  }
+
+  @Test public void without_idle_timeout_nothing_expires() throws Exception {
+    MotionlessAverageRegistry<String> registry = new MotionlessAverageRegistry<>(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2), 1);
+    registry.average("a", 1f, 0);
+    assertEquals(0, registry.expire(Long.MAX_VALUE));
+    assertEquals(1, registry.size());
+  }
+}
@@ -0,0 +1,159 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageSegmentTest {
+
+  private static final float TOLERANCE = 1e-3f;
+
+  private static final MotionlessAverageFactory constant = MotionlessAverageFactory.Builder.createConstantFilterAverage(4);
+  private static final MotionlessAverageFactory timed = MotionlessAverageFactory.Builder.createTimeDependentAverage(1.5f, 20, 10, 500);
+  private static final MotionlessAverageFactory decay = MotionlessAverageFactory.Builder.createExponentialDecayAverage(200);
+
+  private final Random random = new Random(42);
+  private final float[] values = new float[200];
+  private final long[] timestamps = new long[200];
+
+  public MotionlessAverageSegmentTest() {
+    long now = 1000 * NANO;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = -70 + random.nextFloat() * 20;
+      now += (1 + random.nextInt(700)) * NANO;
+      timestamps[i] = now;
+    }
+  }
+
+  @Test public void constant_filter_splits_anywhere() {
+    splits_anywhere(constant);
+  }
+
+  @Test public void time_dependent_average_splits_anywhere() {
+    splits_anywhere(timed);
+  }
+
+  @Test public void exponential_decay_splits_anywhere() {
+    splits_anywhere(decay);
+  }
+
+  @Test public void nan_values_start_over_across_segments() {
+    values[49] = Float.NaN;
+    values[100] = Float.NaN;
+    values[150] = Float.NaN;
+    values[151] = Float.NaN;
+    splits_anywhere(timed);
+    splits_anywhere(constant);
+  }
+
+  @Test public void ending_with_nan_gives_nan() {
+    values[values.length - 1] = Float.NaN;
+    MotionlessAverageSegment merged = segment(timed, 0, 100).merge(segment(timed, 100, values.length));
+    assertTrue(Float.isNaN(merged.value()));
+  }
+
+  @Test public void merging_is_associative() {
+    for (MotionlessAverageFactory factory : new MotionlessAverageFactory[]{constant, timed, decay, kalman(0.01f)}) {
+      float left = segment(factory, 0, 30).merge(segment(factory, 30, 120)).merge(segment(factory, 120, 200)).value();
+      float right = segment(factory, 0, 30).merge(segment(factory, 30, 120).merge(segment(factory, 120, 200))).value();
+      assertEquals(left, right, TOLERANCE);
+    }
+  }
+
+  @Test public void kalman_filter_of_motionless_signal_merges_exactly() {
+    MotionlessAverageFactory factory = kalman(0);
+    float expected = sequential(factory, 0, values.length);
+    MotionlessAverageSegment merged = segment(factory, 0, 0);
+    for (int start = 0; start < values.length; start += 37) {
+      merged.merge(segment(factory, start, Math.min(start + 37, values.length)));
+    }
+    assertEquals(expected, merged.value(), TOLERANCE);
+    assertEquals(values.length, merged.count());
+  }
+
+  @Test public void kalman_segment_after_nan_replaces_the_previous_ones() {
+    MotionlessAverageFactory factory = kalman(0);
+    values[120] = Float.NaN;
+    float expected = sequential(factory, 0, values.length);
+    MotionlessAverageSegment merged = segment(factory, 0, 100).merge(segment(factory, 100, 150).merge(segment(factory, 150, 200)));
+    assertEquals(expected, merged.value(), TOLERANCE);
+  }
+
+  @Test public void created_average_continues_the_stream() {
+    TimestampedAverage expected = timed.create();
+    for (int i = 0; i < 150; i++) {
+      expected.average(values[i], timestamps[i]);
+    }
+    TimestampedAverage average = segment(timed, 0, 60).merge(segment(timed, 60, 150)).createAverage();
+    for (int i = 150; i < values.length; i++) {
+      assertEquals(expected.average(values[i], timestamps[i]), average.average(values[i], timestamps[i]), TOLERANCE);
+    }
+  }
+
+  @Test public void empty_segments_change_nothing() {
+    MotionlessAverageSegment empty = MotionlessAverageSegment.Builder.create(timed);
+    assertTrue(Float.isNaN(empty.value()));
+    assertTrue(Float.isNaN(empty.createAverage().average(Float.NaN)));
+    float expected = segment(timed, 0, 100).value();
+    assertEquals(expected, MotionlessAverageSegment.Builder.create(timed).merge(segment(timed, 0, 100)).merge(empty).value());
+  }
+
+  @Test public void written_segment_merges_on_another_node() {
+    for (MotionlessAverageFactory factory : new MotionlessAverageFactory[]{timed, kalman(0)}) {
+      MotionlessAverageSegment local = segment(factory, 80, 200);
+      ByteBuffer buffer = ByteBuffer.allocate(local.bytes());
+      local.write(buffer);
+      assertEquals(0, buffer.remaining());
+      buffer.flip();
+      MotionlessAverageSegment remote = MotionlessAverageSegment.Builder.create(factory);
+      remote.read(buffer);
+      assertEquals(local.value(), remote.value());
+      assertEquals(local.count(), remote.count());
+      assertEquals(segment(factory, 0, 80).merge(local).value(), segment(factory, 0, 80).merge(remote).value());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_different_factories() {
+    MotionlessAverageSegment.Builder.create(timed).merge(MotionlessAverageSegment.Builder.create(constant));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_sliding_window() {
+    MotionlessAverageSegment.Builder.create(MotionlessAverageFactory.Builder.createSlidingWindowAverage(5));
+  }
+
+  private void splits_anywhere(MotionlessAverageFactory factory) {
+    float expected = sequential(factory, 0, values.length);
+    for (int split = 0; split <= values.length; split += 7) {
+      MotionlessAverageSegment merged = segment(factory, 0, split).merge(segment(factory, split, values.length));
+      assertEquals("split at " + split, expected, merged.value(), TOLERANCE);
+      assertEquals(values.length, merged.count());
+    }
+  }
+
+  private float sequential(MotionlessAverageFactory factory, int from, int to) {
+    TimestampedAverage average = factory.create();
+    float value = Float.NaN;
+    for (int i = from; i < to; i++) {
+      value = average.average(values[i], timestamps[i]);
+    }
+    return value;
+  }
+
+  private MotionlessAverageSegment segment(MotionlessAverageFactory factory, int from, int to) {
+    MotionlessAverageSegment segment = MotionlessAverageSegment.Builder.create(factory);
+    float[] out = new float[values.length];
+    segment.average(values, timestamps, out, from, to - from);
+    return segment;
+  }
+
+  private static MotionlessAverageFactory kalman(float r) {
+    return MotionlessAverageFactory.Builder.createSimplifiedKalmanFilter(r, 3);
+  }
+}
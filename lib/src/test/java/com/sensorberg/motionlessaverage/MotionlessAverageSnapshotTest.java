@@ -0,0 +1,210 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessAverageSnapshotTest {
+
+  private static final int CHANNELS = 1000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test public void constant_filter_bank_continues_after_restore() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 2);
+    feed(bank, 1);
+    Path path = file();
+    MotionlessAverageSnapshot.write(bank, path);
+    MotionlessAverageBank restored = MotionlessAverageSnapshot.readBank(path);
+    assertEquals(CHANNELS, restored.size());
+    assertContinuesLike(bank, restored);
+  }
+
+  @Test public void kalman_filter_bank_continues_after_restore() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createKalmanFilterBank(CHANNELS,
+        new KalmanFilter.Builder(0.01f, 3).stateVector(1.1f).motionVector(0.5f).measurementVector(0.9f));
+    feed(bank, 2);
+    Path path = file();
+    MotionlessAverageSnapshot.write(bank, path);
+    KalmanFilterBank restored = (KalmanFilterBank) MotionlessAverageSnapshot.readBank(path);
+    assertEquals(1.1f, restored.a);
+    assertEquals(0.5f, restored.b);
+    assertContinuesLike(bank, restored);
+  }
+
+  @Test public void timed_filter_bank_keeps_time_since_last_update() throws Exception {
+    TimedFilterBank bank = (TimedFilterBank) MotionlessAverageBank.Builder.createTimeDependentBank(CHANNELS, 1.1f, 5, 10, 1000);
+    long now = System.nanoTime();
+    for (int i = 0; i < CHANNELS; i++) {
+      bank.average(i, test_values[i % test_values.length], now - i * NANO);
+    }
+    Path path = file();
+    MotionlessAverageSnapshot.write(bank, path);
+    TimedFilterBank restored = (TimedFilterBank) MotionlessAverageSnapshot.readBank(path);
+    assertEquals(bank.minTime, restored.minTime);
+    assertEquals(bank.maxTime, restored.maxTime);
+    assertTrue(Arrays.equals(bank.values, restored.values));
+    for (int i = 0; i < CHANNELS; i++) {
+      // same process, so only the wall clock rounding moves the timestamps
+      assertEquals(bank.lastSeen[i], restored.lastSeen[i], 1000 * NANO);
+    }
+  }
+
+  @Test public void delta_snapshot_contains_only_changed_channels() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createKalmanFilterBank(CHANNELS,
+        new KalmanFilter.Builder(0.01f, 3));
+    bank.enableChangeTracking();
+    feed(bank, 3);
+    Path base = file();
+    MotionlessAverageSnapshot.write(bank, base);
+    MotionlessAverageBank restored = MotionlessAverageSnapshot.readBank(base);
+
+    bank.average(0, 12);
+    bank.average(63, 13);
+    bank.average(64, 14);
+    bank.average(CHANNELS - 1, 15);
+    bank.average(63, 16);
+    Path delta = file();
+    assertEquals(4, MotionlessAverageSnapshot.writeDelta(bank, delta));
+    assertEquals(4, MotionlessAverageSnapshot.applyDelta(delta, restored));
+    assertEquals(0, MotionlessAverageSnapshot.writeDelta(bank, file()));
+    assertContinuesLike(bank, restored);
+  }
+
+  @Test public void timed_delta_snapshot_restores_state() throws Exception {
+    TimedFilterBank bank = (TimedFilterBank) MotionlessAverageBank.Builder.createTimeDependentBank(CHANNELS, 1.1f, 5, 10, 1000);
+    bank.enableChangeTracking();
+    Path base = file();
+    MotionlessAverageSnapshot.write(bank, base);
+    TimedFilterBank restored = (TimedFilterBank) MotionlessAverageSnapshot.readBank(base);
+    long now = System.nanoTime();
+    bank.average(7, 3, now);
+    bank.average(700, 4, now);
+    Path delta = file();
+    MotionlessAverageSnapshot.writeDelta(bank, delta);
+    MotionlessAverageSnapshot.applyDelta(delta, restored);
+    assertTrue(Arrays.equals(bank.values, restored.values));
+    assertEquals(now, restored.lastSeen[7], 1000 * NANO);
+    assertEquals(0, restored.lastSeen[8]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_delta_without_change_tracking() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 2);
+    MotionlessAverageSnapshot.writeDelta(bank, file());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_delta_of_different_bank() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 2);
+    bank.enableChangeTracking();
+    bank.average(1, 1);
+    Path delta = file();
+    MotionlessAverageSnapshot.writeDelta(bank, delta);
+    MotionlessAverageSnapshot.applyDelta(delta, MotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_off_heap_banks() throws Exception {
+    MotionlessAverageSnapshot.write(OffHeapMotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 2), file());
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_other_files() throws Exception {
+    Path path = file();
+    Files.write(path, new byte[128]);
+    MotionlessAverageSnapshot.readBank(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_truncated_snapshot() throws Exception {
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createConstantFilterBank(CHANNELS, 2);
+    Path path = file();
+    MotionlessAverageSnapshot.write(bank, path);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+    MotionlessAverageSnapshot.readBank(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_table_snapshot_as_bank() throws Exception {
+    Path path = file();
+    MotionlessAverageSnapshot.write(LongMotionlessAverageTable.Builder.createConstantFilterTable(10, 2), path);
+    MotionlessAverageSnapshot.readBank(path);
+  }
+
+  @Test public void table_keeps_keys_and_state() throws Exception {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createSimplifiedKalmanFilterTable(0, 0.01f, 3);
+    Random random = new Random(4);
+    long[] keys = new long[CHANNELS];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextLong();
+      for (int j = 0; j < 5; j++) {
+        table.average(keys[i], random.nextFloat() * 100);
+      }
+    }
+    table.remove(keys[0]);
+    Path path = file();
+    MotionlessAverageSnapshot.write(table, path);
+    LongMotionlessAverageTable restored = MotionlessAverageSnapshot.readTable(path);
+    assertEquals(table.size(), restored.size());
+    assertTrue(!restored.contains(keys[0]));
+    for (int i = 1; i < keys.length; i++) {
+      assertEquals(table.get(keys[i]), restored.get(keys[i]));
+      float value = random.nextFloat() * 100;
+      assertEquals(table.average(keys[i], value), restored.average(keys[i], value));
+    }
+    assertTrue(restored.remove(keys[1]));
+    assertEquals(-1f, restored.average(-1L, -1f));
+    assertEquals(CHANNELS - 1, restored.size());
+  }
+
+  @Test public void timed_table_keeps_keys_and_state() throws Exception {
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createTimeDependentTable(0, 1.1f, 5, 10, 1000);
+    long now = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      table.average(i * 31L, i, now);
+    }
+    Path path = file();
+    MotionlessAverageSnapshot.write(table, path);
+    LongTimedFilterTable restored = (LongTimedFilterTable) MotionlessAverageSnapshot.readTable(path);
+    for (int i = 0; i < 100; i++) {
+      assertEquals((float) i, restored.get(i * 31L));
+      assertEquals(now, restored.lastSeen[restored.find(i * 31L)], 1000 * NANO);
+    }
+  }
+
+  private Path file() throws IOException {
+    return folder.newFile().toPath();
+  }
+
+  private static void feed(MotionlessAverageBank bank, long seed) {
+    Random random = new Random(seed);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < bank.size(); i++) {
+        bank.average(i, random.nextFloat() * 100);
+      }
+    }
+  }
+
+  private static void assertContinuesLike(MotionlessAverageBank expected, MotionlessAverageBank actual) {
+    Random random = new Random(42);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < expected.size(); i++) {
+        float value = random.nextFloat() * 100;
+        assertEquals(expected.average(i, value), actual.average(i, value));
+      }
+    }
+  }
+}
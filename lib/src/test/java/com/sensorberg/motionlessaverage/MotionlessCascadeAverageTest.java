@@ -0,0 +1,111 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+
+public class MotionlessCascadeAverageTest {
+
+  @Test public void levels_match_separate_time_dependent_averages() {
+    MotionlessCascadeAverage cascade = new MotionlessCascadeAverage.Builder(10, 100)
+        .level(1.1f, 3)
+        .level(2, 10)
+        .level(5, 50)
+        .build();
+    TimestampedAverage fast = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 3, 10, 100);
+    TimestampedAverage medium = TimestampedAverage.Builder.createTimeDependentAverage(2, 10, 10, 100);
+    TimestampedAverage slow = TimestampedAverage.Builder.createTimeDependentAverage(5, 50, 10, 100);
+    assertEquals(3, cascade.levels());
+    assertEquals(Float.NaN, cascade.value(1));
+    float[] values = new float[3];
+    for (int i = 0; i < test_values.length; i++) {
+      long now = i * (i % 5 + 1) * 17 * NANO;
+      assertEquals(fast.average(test_values[i], now), cascade.average(test_values[i], now));
+      cascade.values(values);
+      assertEquals(medium.average(test_values[i], now), values[1]);
+      assertEquals(slow.average(test_values[i], now), cascade.value(2));
+      assertEquals(values[0] - values[2], cascade.difference(0, 2));
+    }
+  }
+
+  @Test public void levels_start_over_after_nan_like_time_dependent_averages() {
+    MotionlessCascadeAverage cascade = cascade();
+    TimestampedAverage fast = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 2, 10, 100);
+    TimestampedAverage slow = TimestampedAverage.Builder.createTimeDependentAverage(10, 40, 10, 100);
+    float[] values = {1, Float.NaN, 1, 2, 3, Float.NaN, Float.NaN, 5, 4};
+    for (int i = 0; i < values.length; i++) {
+      long now = (i + 1) * 40 * NANO;
+      assertEquals(fast.average(values[i], now), cascade.average(values[i], now));
+      assertEquals(slow.average(values[i], now), cascade.value(1));
+    }
+    assertEquals(4.5f, cascade.value(0), 0.5f);
+  }
+
+  @Test public void batch_matches_single_values() {
+    long[] timestamps = new long[test_values.length];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = i * 33 * NANO;
+    }
+    MotionlessCascadeAverage single = cascade();
+    MotionlessCascadeAverage batch = cascade();
+    float[] out = new float[test_values.length];
+    batch.average(test_values, timestamps, out, 0, test_values.length);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(single.average(test_values[i], timestamps[i]), out[i]);
+    }
+    assertEquals(single.value(1), batch.value(1));
+  }
+
+  @Test public void detects_fast_level_crossing_slow_level() {
+    MotionlessCascadeAverage cascade = cascade();
+    long now = 0;
+    cascade.average(0, now);
+    assertEquals(0, cascade.crossover(0, 1));
+    for (int i = 0; i < 10; i++) {
+      cascade.average(0, now += 50 * NANO);
+      assertEquals(0, cascade.crossover(0, 1));
+    }
+    cascade.average(10, now += 50 * NANO);
+    assertEquals(1, cascade.crossover(0, 1));
+    assertEquals(-1, cascade.crossover(1, 0));
+    cascade.average(10, now += 50 * NANO);
+    assertEquals(0, cascade.crossover(0, 1));
+    int crossings = 0;
+    for (int i = 0; i < 100 && crossings == 0; i++) {
+      cascade.average(-10, now += 50 * NANO);
+      crossings = cascade.crossover(0, 1);
+    }
+    assertEquals(-1, crossings);
+  }
+
+  @Test public void reads_the_clock() {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(0);
+    MotionlessCascadeAverage cascade = new MotionlessCascadeAverage.Builder(10, 100).level(1.1f, 3).clock(clock).build();
+    TimestampedAverage expected = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 3, 10, 100);
+    for (int i = 0; i < test_values.length; i++) {
+      clock.advanceMs(25);
+      assertEquals(expected.average(test_values[i], clock.nanoTime()), cascade.average(test_values[i]));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_no_levels() {
+    new MotionlessCascadeAverage.Builder(10, 100).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_invalid_times() {
+    new MotionlessCascadeAverage.Builder(100, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_invalid_level() {
+    new MotionlessCascadeAverage.Builder(10, 100).level(5, 2);
+  }
+
+  private static MotionlessCascadeAverage cascade() {
+    return new MotionlessCascadeAverage.Builder(10, 100).level(1.1f, 2).level(10, 40).build();
+  }
+}
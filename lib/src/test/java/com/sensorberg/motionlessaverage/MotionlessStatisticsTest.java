@@ -0,0 +1,85 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessStatisticsTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    MotionlessStatistics.Builder.createConstantFilterStatistics(0.9999f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_max_min_time_direction() throws Exception {
+    MotionlessStatistics.Builder.createTimeDependentStatistics(1, 2, 10, 5);
+  }
+
+  @Test public void nan_before_first_value() throws Exception {
+    MotionlessStatistics statistics = MotionlessStatistics.Builder.createConstantFilterStatistics(2);
+    assertTrue(Float.isNaN(statistics.mean()));
+    assertTrue(Float.isNaN(statistics.variance()));
+    statistics.average(-70);
+    assertEquals(-70f, statistics.mean());
+    assertEquals(0f, statistics.variance());
+  }
+
+  @Test public void constant_mean_matches_constant_filter() throws Exception {
+    MotionlessStatistics statistics = MotionlessStatistics.Builder.createConstantFilterStatistics(5);
+    MotionlessAverage average = MotionlessAverage.Builder.createConstantFilterAverage(5);
+    for (float value : test_values) {
+      assertEquals(average.average(value), statistics.average(value));
+    }
+  }
+
+  @Test public void timed_mean_matches_timed_filter() throws Exception {
+    MotionlessStatistics statistics = MotionlessStatistics.Builder.createTimeDependentStatistics(1.1f, 5, 10, 1000);
+    TimestampedAverage average = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 1000);
+    float[] out = new float[test_values.length];
+    long[] timestamps = new long[test_values.length];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = i * i * 7 * NANO;
+    }
+    statistics.average(test_values, timestamps, out, 0, out.length);
+    for (int i = 0; i < out.length; i++) {
+      assertEquals(average.average(test_values[i], timestamps[i]), out[i]);
+    }
+  }
+
+  @Test public void variance_matches_double_precision_reference() throws Exception {
+    float filter = 8;
+    MotionlessStatistics statistics = MotionlessStatistics.Builder.createConstantFilterStatistics(filter);
+    Random random = new Random(8);
+    double mean = Double.NaN;
+    double variance = 0;
+    for (int i = 0; i < 10000; i++) {
+      float value = -70f + (float) random.nextGaussian() * 6f;
+      statistics.average(value);
+      if (Double.isNaN(mean)) {
+        mean = value;
+      } else {
+        double alpha = 1.0 / filter;
+        double diff = value - mean;
+        mean += alpha * diff;
+        variance = (1 - alpha) * (variance + alpha * diff * diff);
+      }
+      assertEquals(variance, statistics.variance(), 1e-3 * (1 + variance));
+    }
+    // the long run variance of the noise
+    assertEquals(6f, statistics.standardDeviation(), 2f);
+  }
+
+  @Test public void constant_values_have_no_variance() throws Exception {
+    MotionlessStatistics statistics = MotionlessStatistics.Builder.createTimeDependentStatistics(1.1f, 5, 10, 1000);
+    for (int i = 0; i < 100; i++) {
+      statistics.average(-60, i * 100 * NANO);
+    }
+    assertEquals(0f, statistics.variance());
+  }
+}
@@ -0,0 +1,82 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MotionlessVectorAverageTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_no_dimensions() throws Exception {
+    MotionlessVectorAverage.Builder.createConstantFilterAverage(0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_filter_less_than_one() throws Exception {
+    MotionlessVectorAverage.Builder.createConstantFilterAverage(3, 0.9999f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_wrong_length() throws Exception {
+    MotionlessVectorAverage.Builder.createSimplifiedKalmanFilter(3, 0.01f, 3).average(new float[2]);
+  }
+
+  @Test public void constant_filter_matches_scalar_filters() throws Exception {
+    MotionlessVectorAverage vector = MotionlessVectorAverage.Builder.createConstantFilterAverage(3, 5);
+    MotionlessAverage[] scalars = new MotionlessAverage[3];
+    for (int i = 0; i < scalars.length; i++) {
+      scalars[i] = MotionlessAverage.Builder.createConstantFilterAverage(5);
+    }
+    assertMatches(vector, scalars, null);
+  }
+
+  @Test public void timed_filter_matches_scalar_filters() throws Exception {
+    MotionlessVectorAverage vector = MotionlessVectorAverage.Builder.createTimeDependentAverage(3, 1.1f, 5, 10, 1000);
+    TimestampedAverage[] scalars = new TimestampedAverage[3];
+    for (int i = 0; i < scalars.length; i++) {
+      scalars[i] = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 1000);
+    }
+    assertMatches(vector, scalars, scalars);
+  }
+
+  @Test public void kalman_filter_matches_scalar_filters() throws Exception {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(0.01f, 3).stateVector(1.01f).measurementVector(0.9f);
+    MotionlessVectorAverage vector = MotionlessVectorAverage.Builder.createKalmanFilter(4, builder);
+    MotionlessAverage[] scalars = new MotionlessAverage[4];
+    for (int i = 0; i < scalars.length; i++) {
+      scalars[i] = builder.build();
+    }
+    assertMatches(vector, scalars, null);
+  }
+
+  @Test public void magnitude_of_averaged_vector() throws Exception {
+    MotionlessVectorAverage vector = MotionlessVectorAverage.Builder.createConstantFilterAverage(3, 2);
+    assertTrue(Float.isNaN(vector.magnitude()));
+    vector.average(new float[]{3, 4, 12});
+    assertEquals(13f, vector.magnitude());
+    assertEquals(13f, MotionlessVectorAverage.Helper.magnitude(new float[]{-3, 4, -12}));
+    assertEquals(0f, MotionlessVectorAverage.Helper.magnitude(new float[0]));
+  }
+
+  private static void assertMatches(MotionlessVectorAverage vector, MotionlessAverage[] scalars, TimestampedAverage[] timed) {
+    assertEquals(scalars.length, vector.dimensions());
+    Random random = new Random(10);
+    float[] values = new float[scalars.length];
+    for (int n = 0; n < 1000; n++) {
+      long now = n * (1 + random.nextInt(1000)) * NANO;
+      float[] expected = new float[values.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (float) random.nextGaussian() * 30f;
+        expected[i] = timed != null ? timed[i].average(values[i], now) : scalars[i].average(values[i]);
+      }
+      vector.average(values, now);
+      for (int i = 0; i < values.length; i++) {
+        assertEquals(expected[i], values[i]);
+      }
+    }
+  }
+}
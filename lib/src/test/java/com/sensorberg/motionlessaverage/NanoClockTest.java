@@ -0,0 +1,137 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class NanoClockTest {
+
+  @Test public void manual_clock_drives_time_dependent_average() {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(1000);
+    MotionlessAverage average = MotionlessAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, clock);
+    TimestampedAverage expected = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100);
+    for (int i = 0; i < test_values.length; i++) {
+      clock.advanceMs(i % 7 * 20);
+      assertEquals(expected.average(test_values[i], clock.nanoTime()), average.average(test_values[i]));
+    }
+  }
+
+  @Test public void factory_averages_share_the_clock() {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(0);
+    MotionlessAverageFactory factory = MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, clock);
+    TimestampedAverage first = factory.create();
+    TimestampedAverage second = factory.create();
+    first.average(0);
+    second.average(0);
+    clock.advanceMs(100);
+    assertEquals(first.average(10), second.average(10));
+    assertEquals(factory, MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, clock));
+    assertEquals(factory.hashCode(), MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, clock).hashCode());
+    assertFalse(factory.equals(MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100)));
+    assertEquals(MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100),
+        MotionlessAverageFactory.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, NanoClock.Builder.systemClock()));
+  }
+
+  @Test public void time_dependent_builders_read_the_clock() {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(1000);
+    TimestampedAverage[] averages = {
+        TimestampedAverage.Builder.createExponentialDecayAverage(50, clock),
+        TimestampedAverage.Builder.createConcurrentTimeDependentAverage(1.1f, 5, 10, 100, clock),
+        MotionlessAverageFactory.Builder.createExponentialDecayAverage(50, clock).create(),
+        MotionlessStatistics.Builder.createTimeDependentStatistics(1.1f, 5, 10, 100, clock),
+        new TimeWindowAggregator.Builder(100).clock(clock).build()};
+    TimestampedAverage[] expected = {
+        TimestampedAverage.Builder.createExponentialDecayAverage(50),
+        TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100),
+        TimestampedAverage.Builder.createExponentialDecayAverage(50),
+        MotionlessStatistics.Builder.createTimeDependentStatistics(1.1f, 5, 10, 100),
+        new TimeWindowAggregator.Builder(100).build()};
+    MotionlessAverageBank bank = MotionlessAverageBank.Builder.createTimeDependentBank(1, 1.1f, 5, 10, 100, clock);
+    MotionlessAverageBank offHeap = OffHeapMotionlessAverageBank.Builder.createTimeDependentBank(1, 1.1f, 5, 10, 100, clock);
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createTimeDependentTable(4, 1.1f, 5, 10, 100, clock);
+    ExpiringMotionlessAverageTable expiring = new ExpiringMotionlessAverageTable.Builder(
+        LongMotionlessAverageTable.Builder.createTimeDependentTable(4, 1.1f, 5, 10, 100), 1000).clock(clock).build();
+    MotionlessVectorAverage vector = MotionlessVectorAverage.Builder.createTimeDependentAverage(1, 1.1f, 5, 10, 100, clock);
+    MotionlessAverageEmitter emitter = new MotionlessAverageEmitter.Builder(
+        TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100)).clock(clock).minIntervalMs(50).build();
+    TimestampedAverage timed = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100);
+    float[] vectorValue = new float[1];
+    boolean emitted = false;
+    for (int i = 0; i < test_values.length; i++) {
+      clock.advanceMs(i % 7 * 20);
+      long now = clock.nanoTime();
+      float value = test_values[i];
+      for (int k = 0; k < averages.length; k++) {
+        assertEquals(expected[k].average(value, now), averages[k].average(value));
+      }
+      float expectedTimed = timed.average(value, now);
+      assertEquals(expectedTimed, bank.average(0, value));
+      assertEquals(expectedTimed, offHeap.average(0, value));
+      assertEquals(expectedTimed, table.average(7, value));
+      assertEquals(expectedTimed, expiring.average(7, value));
+      vectorValue[0] = value;
+      vector.average(vectorValue);
+      assertEquals(Math.abs(expectedTimed), vector.magnitude(), Math.abs(expectedTimed) * 1e-6f);
+      emitted |= emitter.average(value) && i > 0;
+    }
+    // the system clock would not pass the 50ms minimum interval during the test, the manual one does
+    assertTrue(emitted);
+  }
+
+  @Test public void manual_clock_moves_only_forward() {
+    ManualNanoClock clock = NanoClock.Builder.createManualClock(5);
+    clock.set(10);
+    clock.advance(5);
+    assertEquals(15L, clock.nanoTime());
+    try {
+      clock.set(14);
+      throw new AssertionError();
+    } catch (IllegalArgumentException expected) {
+      assertEquals(15L, clock.nanoTime());
+    }
+  }
+
+  @Test public void coarse_clock_follows_system_clock() throws Exception {
+    CoarseNanoClock clock = NanoClock.Builder.createCoarseClock(1);
+    try {
+      long first = clock.nanoTime();
+      assertTrue(first <= System.nanoTime());
+      long deadline = System.nanoTime() + 5000 * NANO;
+      while (clock.nanoTime() == first && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertTrue(clock.nanoTime() > first);
+    } finally {
+      clock.close();
+    }
+    long closed = clock.nanoTime();
+    Thread.sleep(2);
+    assertTrue(clock.nanoTime() > closed);
+  }
+
+  @Test public void system_clock_is_shared() {
+    assertSame(NanoClock.Builder.systemClock(), NanoClock.Builder.systemClock());
+    long before = System.nanoTime();
+    assertTrue(NanoClock.Builder.systemClock().nanoTime() >= before);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_null_clock() {
+    MotionlessAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 100, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_zero_resolution() {
+    NanoClock.Builder.createCoarseClock(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_reject_negative_advance() {
+    NanoClock.Builder.createManualClock(0).advance(-1);
+  }
+}
@@ -0,0 +1,106 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+
+public class OffHeapMotionlessAverageBankTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_empty_bank() throws Exception {
+    OffHeapMotionlessAverageBank.Builder.createConstantFilterBank(0, 2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void should_block_channel_outside_bank() throws Exception {
+    OffHeapMotionlessAverageBank bank = OffHeapMotionlessAverageBank.Builder.createConstantFilterBank(10, 2);
+    bank.average(10, 1f);
+  }
+
+  @Test public void constant_filter_test() throws Exception {
+    OffHeapMotionlessAverageBank bank = OffHeapMotionlessAverageBank.Builder.createConstantFilterBank(3, 2);
+    for (int i = 0; i < test_values.length; i++) {
+      bank.average(0, 100f);
+      float average = bank.average(2, test_values[i]);
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], average, ACCEPTABLE_VARIANCE);
+    }
+  }
+
+  @Test public void timed_filter_matches_heap_bank() throws Exception {
+    int channels = OffHeapMotionlessAverageBank.CHUNK_SLOTS + 10;
+    MotionlessAverageBank heap = MotionlessAverageBank.Builder.createTimeDependentBank(channels, 2, 20, 100, 1000);
+    OffHeapMotionlessAverageBank offHeap = OffHeapMotionlessAverageBank.Builder.createTimeDependentBank(channels, 2, 20, 100, 1000);
+    Random random = new Random(42);
+    long now = 0;
+    for (int i = 0; i < 100000; i++) {
+      int channel = random.nextInt(channels);
+      float value = random.nextInt(40) - 90;
+      now += random.nextInt(20) * NANO;
+      assertEquals(heap.average(channel, value, now), offHeap.average(channel, value, now));
+    }
+  }
+
+  @Test public void kalman_filter_matches_heap_bank() throws Exception {
+    KalmanFilter.Builder builder = new KalmanFilter.Builder(2f, 3f).measurementVector(2f);
+    MotionlessAverageBank heap = MotionlessAverageBank.Builder.createKalmanFilterBank(100, builder);
+    OffHeapMotionlessAverageBank offHeap = OffHeapMotionlessAverageBank.Builder.createKalmanFilterBank(100, builder);
+    int[] channels = new int[1000];
+    float[] values = new float[1000];
+    Random random = new Random(42);
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = random.nextInt(100);
+      values[i] = random.nextFloat() * 50;
+    }
+    float[] expected = new float[1000];
+    float[] out = new float[1000];
+    heap.average(channels, values, expected);
+    offHeap.average(channels, values, out);
+    for (int i = 0; i < out.length; i++) {
+      assertEquals(expected[i], out[i]);
+    }
+  }
+
+  @Test public void grow_keeps_state_and_clear_resets_it() throws Exception {
+    OffHeapMotionlessAverageBank bank = OffHeapMotionlessAverageBank.Builder.createSimplifiedKalmanFilterBank(1, 0.01f, 3f);
+    bank.average(0, 50f);
+    bank.ensureCapacity(3 * OffHeapMotionlessAverageBank.CHUNK_SLOTS);
+    assertEquals(3 * OffHeapMotionlessAverageBank.CHUNK_SLOTS, bank.size());
+    assertEquals(3L * OffHeapMotionlessAverageBank.CHUNK_SLOTS * 8, bank.directMemory());
+    assertEquals(45f, bank.average(bank.size() - 1, 45f));
+    assertEquals(true, bank.average(0, 40f) < 50f);
+    bank.clear(0);
+    assertEquals(40f, bank.average(0, 40f));
+    bank.clear();
+    assertEquals(30f, bank.average(0, 30f));
+    assertEquals(20f, bank.average(bank.size() - 1, 20f));
+  }
+
+  @Test public void change_tracking_follows_updates_and_growth() throws Exception {
+    OffHeapMotionlessAverageBank bank = OffHeapMotionlessAverageBank.Builder.createTimeDependentBank(100, 2, 20, 100, 1000);
+    bank.enableChangeTracking();
+    bank.average(3, 1f, NANO);
+    bank.ensureCapacity(OffHeapMotionlessAverageBank.CHUNK_SLOTS + 1);
+    assertEquals((OffHeapMotionlessAverageBank.CHUNK_SLOTS + 64) >>> 6, bank.changed.length);
+    bank.average(new int[]{64, OffHeapMotionlessAverageBank.CHUNK_SLOTS}, new float[]{2f, 3f}, new float[2]);
+    bank.clear(70);
+    assertEquals(4, changedChannels(bank));
+    assertEquals(1L << 3, bank.changed[0]);
+    assertEquals(1L | 1L << 6, bank.changed[1]);
+    bank.clear();
+    assertEquals(bank.size(), changedChannels(bank));
+  }
+
+  private static int changedChannels(MotionlessAverageBank bank) {
+    int count = 0;
+    for (long word : bank.changed) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+}
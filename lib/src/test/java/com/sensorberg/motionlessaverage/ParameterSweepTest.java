@@ -0,0 +1,103 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class ParameterSweepTest {
+
+  private static final int SAMPLES = 2000;
+
+  private final float[] values = new float[SAMPLES];
+  private final long[] timestamps = new long[SAMPLES];
+  private final float[] reference = new float[SAMPLES];
+
+  public ParameterSweepTest() {
+    Random random = new Random(5);
+    for (int i = 0; i < SAMPLES; i++) {
+      // a slow square wave with gaussian noise
+      reference[i] = (i / 500) % 2 == 0 ? -70 : -50;
+      values[i] = reference[i] + (float) random.nextGaussian() * 4;
+      timestamps[i] = i * 100 * NANO;
+    }
+  }
+
+  @Test public void grid_skips_invalid_combinations() throws Exception {
+    List<MotionlessAverageFactory> grid = ParameterSweep.Grid.timeDependent(
+        new float[]{1, 2}, new float[]{2, 10}, new long[]{10}, new long[]{5, 100});
+    // minFilter 1 with maxFilter 2 and 10, minFilter 2 with maxFilter 10, each with only maxTime 100
+    assertEquals(3, grid.size());
+    assertEquals(6, ParameterSweep.Grid.simplifiedKalman(new float[]{0.01f, 0.1f}, new float[]{1, 2, 3}).size());
+  }
+
+  @Test public void log_space_includes_bounds() throws Exception {
+    float[] steps = ParameterSweep.Grid.logSpace(0.01f, 100, 5);
+    assertEquals(0.01f, steps[0], 1e-7f);
+    assertEquals(0.1f, steps[1], 1e-6f);
+    assertEquals(100f, steps[4]);
+  }
+
+  @Test public void sample_has_no_repetitions() throws Exception {
+    List<MotionlessAverageFactory> grid = ParameterSweep.Grid.simplifiedKalman(
+        ParameterSweep.Grid.logSpace(0.001f, 1, 10), ParameterSweep.Grid.logSpace(0.1f, 10, 10));
+    List<MotionlessAverageFactory> sample = ParameterSweep.Grid.sample(grid, 20, new Random(1));
+    assertEquals(20, sample.size());
+    assertEquals(20, new HashSet<>(sample).size());
+    assertEquals(100, ParameterSweep.Grid.sample(grid, 1000, new Random(1)).size());
+  }
+
+  @Test public void results_are_sorted_and_match_a_sequential_run() throws Exception {
+    List<MotionlessAverageFactory> grid = ParameterSweep.Grid.simplifiedKalman(
+        ParameterSweep.Grid.logSpace(0.001f, 1, 8), ParameterSweep.Grid.logSpace(0.1f, 10, 8));
+    ParameterSweep sweep = new ParameterSweep(values, timestamps, reference, 50);
+    List<ParameterSweep.Result> results = sweep.run(grid, new ForkJoinPool(4));
+    assertEquals(grid.size(), results.size());
+    for (int i = 1; i < results.size(); i++) {
+      assertTrue(results.get(i - 1).compareTo(results.get(i)) <= 0);
+    }
+    for (ParameterSweep.Result result : results) {
+      ParameterSweep.Result expected = sweep.score(result.configuration, new float[SAMPLES]);
+      assertEquals(expected.error, result.error);
+      assertEquals(expected.lag, result.lag);
+    }
+  }
+
+  @Test public void stronger_filters_lag_more() throws Exception {
+    ParameterSweep sweep = new ParameterSweep(values, timestamps, reference, 100);
+    List<ParameterSweep.Result> results = sweep.run(Arrays.asList(
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(2),
+        MotionlessAverageFactory.Builder.createConstantFilterAverage(40)));
+    ParameterSweep.Result weak = find(results, 2);
+    ParameterSweep.Result strong = find(results, 40);
+    assertTrue(strong.lag > weak.lag);
+    // the noise is averaged out: the best configuration is closer to the reference than the raw values
+    assertTrue(results.get(0).error < 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_mismatched_lengths() throws Exception {
+    new ParameterSweep(values, new long[1], reference, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_lag_longer_than_trace() throws Exception {
+    new ParameterSweep(values, timestamps, reference, SAMPLES);
+  }
+
+  private static ParameterSweep.Result find(List<ParameterSweep.Result> results, float filter) {
+    for (ParameterSweep.Result result : results) {
+      if (result.configuration.equals(MotionlessAverageFactory.Builder.createConstantFilterAverage(filter))) {
+        return result;
+      }
+    }
+    throw new AssertionError();
+  }
+}
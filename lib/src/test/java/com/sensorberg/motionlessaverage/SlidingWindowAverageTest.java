@@ -0,0 +1,84 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static junit.framework.TestCase.assertEquals;
+
+public class SlidingWindowAverageTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_empty_window() throws Exception {
+    MotionlessAverage.Builder.createSlidingWindowAverage(0);
+  }
+
+  @Test public void averages_partial_and_full_window() throws Exception {
+    MotionlessAverage avg = MotionlessAverage.Builder.createSlidingWindowAverage(3);
+    assertEquals(3f, avg.average(3));
+    assertEquals(4f, avg.average(5));
+    assertEquals(5f, avg.average(7));
+    assertEquals(7f, avg.average(9));
+    assertEquals(9f, avg.average(11));
+  }
+
+  @Test public void window_of_one_returns_the_value() throws Exception {
+    MotionlessAverage avg = MotionlessAverage.Builder.createSlidingWindowAverage(1);
+    for (float value : test_values) {
+      assertEquals(value, avg.average(value));
+    }
+  }
+
+  @Test public void matches_the_exact_window_average() throws Exception {
+    int window = 150;
+    MotionlessAverage avg = MotionlessAverage.Builder.createSlidingWindowAverage(window);
+    float[] values = new float[100000];
+    Random random = new Random(6);
+    for (int i = 0; i < values.length; i++) {
+      values[i] = -70f + (float) random.nextGaussian() * 6f;
+      float average = avg.average(values[i]);
+      if (i % 997 == 0) {
+        assertEquals(exact(values, Math.max(0, i - window + 1), i + 1), average, 1e-4f);
+      }
+    }
+  }
+
+  @Test public void does_not_drift_after_large_values() throws Exception {
+    MotionlessAverage avg = MotionlessAverage.Builder.createSlidingWindowAverage(4);
+    avg.average(1e20f);
+    for (int i = 0; i < 1000; i++) {
+      avg.average(1f);
+    }
+    assertEquals(1f, avg.average(1f));
+  }
+
+  @Test public void recovers_once_nan_leaves_the_window() throws Exception {
+    MotionlessAverage avg = MotionlessAverage.Builder.createSlidingWindowAverage(3);
+    avg.average(1);
+    assertEquals(Float.NaN, avg.average(Float.NaN));
+    assertEquals(Float.NaN, avg.average(Float.POSITIVE_INFINITY));
+    assertEquals(Float.NaN, avg.average(2));
+    assertEquals(Float.POSITIVE_INFINITY, avg.average(4));
+    assertEquals(3f, avg.average(3));
+    assertEquals(4f, avg.average(5));
+  }
+
+  @Test public void bulk_matches_single_updates() throws Exception {
+    TimestampedAverage single = TimestampedAverage.Builder.createSlidingWindowAverage(5);
+    TimestampedAverage bulk = MotionlessAverageFactory.Builder.createSlidingWindowAverage(5).create();
+    float[] out = new float[test_values.length];
+    bulk.average(test_values, new long[test_values.length], out, 0, test_values.length);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(single.average(test_values[i]), out[i]);
+    }
+  }
+
+  private static float exact(float[] values, int from, int to) {
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
+    }
+    return (float) (sum / (to - from));
+  }
+}
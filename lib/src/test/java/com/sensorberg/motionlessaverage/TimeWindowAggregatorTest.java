@@ -0,0 +1,141 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TimeWindowAggregatorTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_empty_window() throws Exception {
+    new TimeWindowAggregator.Builder(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_block_no_samples() throws Exception {
+    new TimeWindowAggregator.Builder(1000).maxSamples(0);
+  }
+
+  @Test public void empty_window_is_nan() throws Exception {
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(1000).build();
+    assertTrue(Float.isNaN(aggregator.mean()));
+    assertTrue(Float.isNaN(aggregator.min()));
+    assertTrue(Float.isNaN(aggregator.max()));
+    aggregator.add(5, 0);
+    aggregator.expire(1000 * NANO);
+    assertEquals(0, aggregator.count());
+    assertTrue(Float.isNaN(aggregator.mean()));
+  }
+
+  @Test public void mean_recovers_once_nan_expired() throws Exception {
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(100).build();
+    aggregator.add(Float.NaN, 10 * NANO);
+    for (long ms = 20; ms <= 100; ms += 10) {
+      assertTrue(Float.isNaN(aggregator.average(1, ms * NANO)));
+    }
+    for (long ms = 110; ms <= 590; ms += 10) {
+      assertEquals(1f, aggregator.average(1, ms * NANO));
+    }
+    aggregator.add(Float.NEGATIVE_INFINITY, 600 * NANO);
+    assertEquals(Float.NEGATIVE_INFINITY, aggregator.mean());
+    aggregator.expire(700 * NANO);
+    assertEquals(3f, aggregator.average(3, 700 * NANO));
+  }
+
+  @Test public void min_and_max_recover_once_nan_expired() throws Exception {
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(1000).build();
+    aggregator.add(5, 0);
+    aggregator.add(Float.NaN, 100 * NANO);
+    aggregator.add(3, 200 * NANO);
+    aggregator.add(9, 300 * NANO);
+    assertTrue(Float.isNaN(aggregator.min()));
+    assertTrue(Float.isNaN(aggregator.max()));
+    aggregator.expire(1000 * NANO);
+    assertTrue(Float.isNaN(aggregator.min()));
+    aggregator.expire(1100 * NANO);
+    assertEquals(2, aggregator.count());
+    assertEquals(3f, aggregator.min());
+    assertEquals(9f, aggregator.max());
+    aggregator.add(Float.POSITIVE_INFINITY, 1200 * NANO);
+    aggregator.add(1, 1300 * NANO);
+    assertEquals(Float.POSITIVE_INFINITY, aggregator.max());
+    aggregator.expire(2200 * NANO);
+    assertEquals(1f, aggregator.min());
+    assertEquals(1f, aggregator.max());
+  }
+
+  @Test public void expires_samples_older_than_the_window() throws Exception {
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(1000).build();
+    assertEquals(-70f, aggregator.average(-70, 0));
+    assertEquals(-60f, aggregator.average(-50, 500 * NANO));
+    assertEquals(-70f, aggregator.min());
+    assertEquals(-50f, aggregator.max());
+    assertEquals(-55f, aggregator.average(-60, 1000 * NANO));
+    assertEquals(-60f, aggregator.min());
+    assertEquals(2, aggregator.count());
+  }
+
+  @Test public void matches_brute_force_with_irregular_timing() throws Exception {
+    long window = 2000;
+    int maxSamples = 100;
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(window).maxSamples(maxSamples).build();
+    Random random = new Random(7);
+    int samples = 20000;
+    float[] values = new float[samples];
+    long[] times = new long[samples];
+    long now = 0;
+    for (int i = 0; i < samples; i++) {
+      // bursts of fast scans and long pauses
+      now += (i / 500) % 2 == 0 ? random.nextInt(10) * NANO : random.nextInt(1500) * NANO;
+      values[i] = -70f + (float) random.nextGaussian() * 6f;
+      times[i] = now;
+      aggregator.add(values[i], now);
+
+      int from = i;
+      while (from > 0 && i - from + 1 < maxSamples && times[from - 1] > now - window * NANO) {
+        from--;
+      }
+      float min = Float.MAX_VALUE;
+      float max = -Float.MAX_VALUE;
+      double sum = 0;
+      for (int j = from; j <= i; j++) {
+        min = Math.min(min, values[j]);
+        max = Math.max(max, values[j]);
+        sum += values[j];
+      }
+      assertEquals(i - from + 1, aggregator.count());
+      assertEquals(min, aggregator.min());
+      assertEquals(max, aggregator.max());
+      assertEquals((float) (sum / (i - from + 1)), aggregator.mean(), 1e-4f);
+    }
+  }
+
+  @Test public void older_timestamps_count_as_newest() throws Exception {
+    TimeWindowAggregator aggregator = new TimeWindowAggregator.Builder(1000).build();
+    aggregator.add(1, 5000 * NANO);
+    aggregator.add(3, 100 * NANO);
+    aggregator.expire(5999 * NANO);
+    assertEquals(2, aggregator.count());
+    aggregator.expire(6000 * NANO);
+    assertEquals(0, aggregator.count());
+  }
+
+  @Test public void bulk_matches_single_updates() throws Exception {
+    TimeWindowAggregator single = new TimeWindowAggregator.Builder(100).build();
+    TimeWindowAggregator bulk = new TimeWindowAggregator.Builder(100).build();
+    float[] values = AverageTest.test_values;
+    long[] times = new long[values.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = i * 30 * NANO;
+    }
+    float[] out = new float[values.length];
+    bulk.average(values, times, out, 0, values.length);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(single.average(values[i], times[i]), out[i]);
+    }
+  }
+}
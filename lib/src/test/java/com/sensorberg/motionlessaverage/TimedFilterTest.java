@@ -30,10 +30,39 @@ public class TimedFilterTest {
   @Test public void filter_test() throws Exception {
     TimedFilter avg = (TimedFilter) MotionlessAverage.Builder
         .createTimeDependentAverage(1, 3, 100, 1100);
-    float firstValue = avg.averageForTime(20, 200 * NANO);
+    float firstValue = avg.average(20, 200 * NANO);
     assertEquals("First value equals inputs", 20.0f, firstValue);
-    float secondValue = avg.averageForTime(25, 800 * NANO); // 600ms have passed
+    float secondValue = avg.average(25, 800 * NANO); // 600ms have passed
     assertEquals("Second value as expected", 22.5f, secondValue);
   }
 
+  @Test public void first_timestamp_can_be_zero() throws Exception {
+    TimestampedAverage avg = TimestampedAverage.Builder
+        .createTimeDependentAverage(1, 3, 100, 1100);
+    assertEquals("First value equals inputs", 20.0f, avg.average(20, 0));
+    assertEquals("Second value as expected", 22.5f, avg.average(25, 600 * NANO));
+  }
+
+  @Test public void bulk_matches_single_updates() throws Exception {
+    TimestampedAverage single = TimestampedAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    TimestampedAverage bulk = TimestampedAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    float[] values = new float[20];
+    long[] timestamps = new long[20];
+    float[] out = new float[20];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i % 3 == 0 ? -60 : -80;
+      timestamps[i] = 1000 * NANO + i * i * 20 * NANO;
+    }
+    bulk.average(values, timestamps, out, 0, 5);
+    bulk.average(values, timestamps, out, 5, 15);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(single.average(values[i], timestamps[i]), out[i]);
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void bulk_should_block_range_outside_arrays() throws Exception {
+    TimestampedAverage avg = TimestampedAverage.Builder.createTimeDependentAverage(2, 20, 100, 1000);
+    avg.average(new float[10], new long[10], new float[10], 5, 6);
+  }
 }
@@ -0,0 +1,33 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Test;
+
+import static com.sensorberg.motionlessaverage.AverageTest.ACCEPTABLE_VARIANCE;
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static junit.framework.TestCase.assertEquals;
+
+public class TimestampedAverageTest {
+
+  @Test public void constant_filter_ignores_timestamps() throws Exception {
+    TimestampedAverage avg = TimestampedAverage.Builder.createConstantFilterAverage(2);
+    long[] timestamps = new long[test_values.length];
+    float[] out = new float[test_values.length];
+    avg.average(test_values, timestamps, out, 0, test_values.length);
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals("Values do not match for filter 2", expected_results_filter_2[i], out[i], ACCEPTABLE_VARIANCE);
+    }
+  }
+
+  @Test public void kalman_filter_ignores_timestamps() throws Exception {
+    TimestampedAverage avg = TimestampedAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    MotionlessAverage reference = MotionlessAverage.Builder.createSimplifiedKalmanFilter(0.01f, 3f);
+    long[] timestamps = new long[test_values.length];
+    float[] out = new float[test_values.length];
+    avg.average(test_values, timestamps, out, 1, test_values.length - 1);
+    assertEquals(0f, out[0]);
+    for (int i = 1; i < test_values.length; i++) {
+      assertEquals(reference.average(test_values[i]), out[i]);
+    }
+  }
+}
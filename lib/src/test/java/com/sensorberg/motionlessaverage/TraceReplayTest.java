@@ -0,0 +1,107 @@
+package com.sensorberg.motionlessaverage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.sensorberg.motionlessaverage.AverageTest.expected_results_filter_2;
+import static com.sensorberg.motionlessaverage.AverageTest.test_values;
+import static com.sensorberg.motionlessaverage.MotionlessAverage.Builder.NANO;
+import static junit.framework.TestCase.assertEquals;
+
+public class TraceReplayTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test public void replays_constant_filter_per_channel() throws Exception {
+    int records = test_values.length * 2;
+    ByteBuffer trace = trace(records);
+    for (int i = 0; i < test_values.length; i++) {
+      record(trace, 2 * i, 0xAABBCCDDL, i, test_values[i]);
+      record(trace, 2 * i + 1, 7L, i, 100f);
+    }
+    Path input = write(trace);
+    Path output = folder.newFile().toPath();
+
+    LongMotionlessAverageTable table = LongMotionlessAverageTable.Builder.createConstantFilterTable(2, 2);
+    assertEquals(records, TraceReplay.replay(input, output, table));
+
+    ByteBuffer result = read(output);
+    assertEquals(trace.capacity(), result.capacity());
+    for (int i = 0; i < test_values.length; i++) {
+      assertEquals(0xAABBCCDDL, result.getLong(2 * i * TraceReplay.RECORD_SIZE));
+      assertEquals((long) i, result.getLong(2 * i * TraceReplay.RECORD_SIZE + 8));
+      assertEquals(expected_results_filter_2[i], result.getFloat(2 * i * TraceReplay.RECORD_SIZE + 16), AverageTest.ACCEPTABLE_VARIANCE);
+      assertEquals(100f, result.getFloat((2 * i + 1) * TraceReplay.RECORD_SIZE + 16));
+    }
+  }
+
+  @Test public void replays_time_dependent_bank_with_record_timestamps() throws Exception {
+    int records = 50;
+    ByteBuffer trace = trace(records);
+    float[] values = new float[records];
+    long[] timestamps = new long[records];
+    for (int i = 0; i < records; i++) {
+      values[i] = test_values[i % test_values.length];
+      timestamps[i] = i * 37 * NANO;
+      record(trace, i, 3, timestamps[i], values[i]);
+    }
+    Path input = write(trace);
+    Path output = folder.newFile().toPath();
+    TraceReplay.replay(input, output, MotionlessAverageBank.Builder.createTimeDependentBank(4, 1.1f, 5, 10, 1000));
+
+    TimestampedAverage expected = TimestampedAverage.Builder.createTimeDependentAverage(1.1f, 5, 10, 1000);
+    ByteBuffer result = read(output);
+    for (int i = 0; i < records; i++) {
+      assertEquals(expected.average(values[i], timestamps[i]), result.getFloat(i * TraceReplay.RECORD_SIZE + 16));
+    }
+  }
+
+  @Test public void replays_empty_trace() throws Exception {
+    Path input = folder.newFile().toPath();
+    Path output = folder.newFile().toPath();
+    assertEquals(0, TraceReplay.replay(input, output, LongMotionlessAverageTable.Builder.createSimplifiedKalmanFilterTable(0, 0.01f, 3)));
+    assertEquals(0, Files.size(output));
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_partial_records() throws Exception {
+    Path input = folder.newFile().toPath();
+    Files.write(input, new byte[TraceReplay.RECORD_SIZE + 1]);
+    TraceReplay.replay(input, folder.newFile().toPath(), LongMotionlessAverageTable.Builder.createConstantFilterTable(0, 2));
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_channels_outside_of_the_bank() throws Exception {
+    ByteBuffer trace = trace(1);
+    record(trace, 0, 4, 0, 1f);
+    TraceReplay.replay(write(trace), folder.newFile().toPath(), MotionlessAverageBank.Builder.createConstantFilterBank(4, 2));
+  }
+
+  private static ByteBuffer trace(int records) {
+    return ByteBuffer.allocate(records * TraceReplay.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void record(ByteBuffer trace, int index, long channel, long timestamp, float value) {
+    int at = index * TraceReplay.RECORD_SIZE;
+    trace.putLong(at, channel);
+    trace.putLong(at + 8, timestamp);
+    trace.putFloat(at + 16, value);
+  }
+
+  private Path write(ByteBuffer trace) throws IOException {
+    Path path = folder.newFile().toPath();
+    Files.write(path, trace.array());
+    return path;
+  }
+
+  private static ByteBuffer read(Path path) throws IOException {
+    return ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}